@@ -1,5 +1,8 @@
 package org.eclipse.osc.modules.api;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.HeaderParam;
@@ -7,31 +10,137 @@ import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.karaf.minho.boot.Minho;
+import org.eclipse.osc.orchestrator.BulkItem;
+import org.eclipse.osc.orchestrator.ClusterMember;
+import org.eclipse.osc.orchestrator.MetricsRegistry;
+import org.eclipse.osc.orchestrator.Operation;
 import org.eclipse.osc.orchestrator.OrchestratorService;
+import org.eclipse.osc.orchestrator.ServiceState;
+import org.eclipse.osc.orchestrator.StateEvent;
+import org.eclipse.osc.orchestrator.StateEventBus;
 import org.eclipse.osc.modules.ocl.loader.Ocl;
 
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 @Slf4j
 @Path("/")
 public class OrchestratorApi {
 
+    private static final String SERVER_SENT_EVENTS = "text/event-stream";
+    private static final long KEEPALIVE_SECONDS = 15;
+
+    private static final String FORWARDED = ReplicaForwarder.FORWARDED_HEADER;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ReplicaForwarder FORWARDER = new ReplicaForwarder();
+
     @Path("/register")
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
-    public Response register(Ocl ocl) throws Exception {
-        getOrchestrator().registerManagedService(ocl);
-        return Response.ok().build();
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response register(Ocl ocl, @HeaderParam(FORWARDED) String forwardedBy) throws Exception {
+        OrchestratorService orchestratorService = getOrchestrator();
+        ClusterMember owner = getOwner(orchestratorService, ocl.getName(), forwardedBy);
+        if (owner != null) {
+            return forward(orchestratorService, owner, "POST", "register", Map.of(), MediaType.APPLICATION_JSON, MAPPER.writeValueAsString(ocl));
+        }
+        return accepted(orchestratorService.registerManagedServiceAsync(ocl));
     }
 
     @Path("/register/fetch")
     @POST
     @Consumes(MediaType.TEXT_PLAIN)
-    public Response fetch(@HeaderParam("ocl") String oclLocation) throws Exception {
-        getOrchestrator().registerManagedService(oclLocation);
-        return Response.ok().build();
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response fetch(@HeaderParam("ocl") String oclLocation, @HeaderParam(FORWARDED) String forwardedBy) throws Exception {
+        OrchestratorService orchestratorService = getOrchestrator();
+        if (orchestratorService.getCluster() != null && forwardedBy == null) {
+            // the owner is known once the descriptor is loaded
+            return register(orchestratorService.getOclLoader().getOcl(new URL(oclLocation)), null);
+        }
+        return accepted(orchestratorService.registerManagedServiceAsync(oclLocation));
+    }
+
+    @Path("/register/bulk")
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response registerBulk(List<Ocl> ocls, @QueryParam("start") boolean start, @HeaderParam(FORWARDED) String forwardedBy) throws Exception {
+        OrchestratorService orchestratorService = getOrchestrator();
+        if (orchestratorService.getCluster() == null || forwardedBy != null) {
+            return bulk(orchestratorService.registerManagedServicesAsync(ocls, start));
+        }
+        return bulk(sharded(orchestratorService, ocls, Ocl::getName,
+                local -> orchestratorService.registerManagedServicesAsync(local, start), "register/bulk?start=" + start));
+    }
+
+    @Path("/register/fetch/bulk")
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response fetchBulk(List<String> oclLocations, @QueryParam("start") boolean start, @HeaderParam(FORWARDED) String forwardedBy) throws Exception {
+        OrchestratorService orchestratorService = getOrchestrator();
+        if (orchestratorService.getCluster() == null || forwardedBy != null) {
+            return bulk(orchestratorService.fetchManagedServicesAsync(oclLocations, start));
+        }
+        // the owners are known once the descriptors are loaded
+        List<CompletableFuture<Ocl>> loading = oclLocations.stream().map(oclLocation -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return orchestratorService.getOclLoader().getOcl(new URL(oclLocation));
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, orchestratorService.getFetchExecutor())).collect(Collectors.toList());
+        List<Ocl> ocls = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        JsonNode[] results = new JsonNode[oclLocations.size()];
+        for (int i = 0; i < loading.size(); i++) {
+            try {
+                ocls.add(loading.get(i).join());
+                indexes.add(i);
+            } catch (CompletionException e) {
+                log.warn("Can't load OCL descriptor {}", oclLocations.get(i), e.getCause());
+                BulkItem item = new BulkItem(oclLocations.get(i));
+                item.rejected(e.getCause());
+                results[i] = MAPPER.valueToTree(item);
+            }
+        }
+        List<JsonNode> registered = sharded(orchestratorService, ocls, Ocl::getName,
+                local -> orchestratorService.registerManagedServicesAsync(local, start), "register/bulk?start=" + start);
+        for (int i = 0; i < indexes.size(); i++) {
+            JsonNode item = registered.get(i);
+            if (item instanceof ObjectNode) {
+                ((ObjectNode) item).put("source", oclLocations.get(indexes.get(i)));
+            }
+            results[indexes.get(i)] = item;
+        }
+        return bulk(Arrays.asList(results));
     }
 
     @Path("/health")
@@ -44,13 +153,65 @@ public class OrchestratorApi {
         return "ready";
     }
 
-    @Path("/services/state/{managedServiceName}")
+    @Path("/metrics")
     @GET
     @Produces(MediaType.TEXT_PLAIN)
-    public String state(@PathParam("managedServiceName") String managedServiceName)
-        throws Exception {
+    public String metrics() throws Exception {
+        StringWriter writer = new StringWriter();
+        MetricsRegistry.getDefault().write(writer);
+        return writer.toString();
+    }
+
+    @Path("/services/state/{managedServiceName}")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response state(@PathParam("managedServiceName") String managedServiceName,
+                          @HeaderParam("If-None-Match") String ifNoneMatch,
+                          @HeaderParam(FORWARDED) String forwardedBy) throws Exception {
         OrchestratorService orchestratorService = getOrchestrator();
-        return orchestratorService.getManagedServiceState(managedServiceName);
+        ClusterMember owner = getOwner(orchestratorService, managedServiceName, forwardedBy);
+        if (owner != null) {
+            return forward(orchestratorService, owner, "GET", "services/state/" + encode(managedServiceName),
+                    Collections.singletonMap("If-None-Match", ifNoneMatch), null, null);
+        }
+        ServiceState state = orchestratorService.getManagedServiceState(managedServiceName);
+        if (matches(ifNoneMatch, state.getEtag())) {
+            return Response.notModified().header("ETag", state.getEtag()).build();
+        }
+        return Response.ok(state).header("ETag", state.getEtag()).build();
+    }
+
+    @Path("/services/events")
+    @GET
+    @Produces(SERVER_SENT_EVENTS)
+    public Response events(@QueryParam("managedServiceName") String managedServiceName) throws Exception {
+        OrchestratorService orchestratorService = getOrchestrator();
+        ClusterMember owner = getOwner(orchestratorService, managedServiceName, null);
+        if (owner != null) {
+            // a long-lived stream is better served by the replica itself than relayed, event sources follow redirects
+            return Response.temporaryRedirect(ReplicaForwarder.resolve(owner, "services/events?managedServiceName=" + encode(managedServiceName))).build();
+        }
+        StateEventBus.Subscription subscription = orchestratorService.getStateEventBus().subscribe(managedServiceName);
+        StreamingOutput stream = output -> {
+            try (subscription) {
+                Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+                writer.write("retry: 5000\n\n");
+                writer.flush();
+                while (!subscription.isClosed()) {
+                    StateEvent event = subscription.poll(KEEPALIVE_SECONDS, TimeUnit.SECONDS);
+                    if (event == null) {
+                        // comment line, keeps proxies from closing an idle connection
+                        writer.write(": keepalive\n\n");
+                    } else {
+                        writer.write("id: " + event.getId() + "\nevent: state\ndata: " + MAPPER.writeValueAsString(event) + "\n\n");
+                    }
+                    writer.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        return Response.ok(stream).header("Cache-Control", "no-cache").build();
     }
 
     @Path("/services")
@@ -66,33 +227,188 @@ public class OrchestratorApi {
 
     @Path("/start")
     @POST
-    public Response start(@HeaderParam("managedServiceName") String managedServiceName) throws Exception {
-        getOrchestrator().startManagedService(managedServiceName);
-        return Response.ok().build();
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response start(@HeaderParam("managedServiceName") String managedServiceName, @HeaderParam(FORWARDED) String forwardedBy) throws Exception {
+        OrchestratorService orchestratorService = getOrchestrator();
+        ClusterMember owner = getOwner(orchestratorService, managedServiceName, forwardedBy);
+        if (owner != null) {
+            return forward(orchestratorService, owner, "POST", "start", Collections.singletonMap("managedServiceName", managedServiceName), null, null);
+        }
+        return accepted(orchestratorService.startManagedServiceAsync(managedServiceName));
+    }
+
+    @Path("/start/bulk")
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response startBulk(List<String> managedServiceNames, @HeaderParam(FORWARDED) String forwardedBy) throws Exception {
+        OrchestratorService orchestratorService = getOrchestrator();
+        if (orchestratorService.getCluster() == null || forwardedBy != null) {
+            return bulk(orchestratorService.startManagedServicesAsync(managedServiceNames));
+        }
+        return bulk(sharded(orchestratorService, managedServiceNames, Function.identity(),
+                orchestratorService::startManagedServicesAsync, "start/bulk"));
     }
 
     @Path("/stop")
     @POST
     @Consumes(MediaType.TEXT_PLAIN)
-    public Response stop(@HeaderParam("managedServiceName") String managedServiceName) throws Exception {
-        getOrchestrator().stopManagedService(managedServiceName);
-        return Response.ok().build();
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response stop(@HeaderParam("managedServiceName") String managedServiceName, @HeaderParam(FORWARDED) String forwardedBy) throws Exception {
+        OrchestratorService orchestratorService = getOrchestrator();
+        ClusterMember owner = getOwner(orchestratorService, managedServiceName, forwardedBy);
+        if (owner != null) {
+            return forward(orchestratorService, owner, "POST", "stop", Collections.singletonMap("managedServiceName", managedServiceName), null, null);
+        }
+        return accepted(orchestratorService.stopManagedServiceAsync(managedServiceName));
     }
 
     @Path("/update")
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
-    public Response update(@HeaderParam("managedServiceName") String managedServiceName, Ocl ocl) throws Exception {
-        getOrchestrator().updateManagedService(managedServiceName, ocl);
-        return Response.ok().build();
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response update(@HeaderParam("managedServiceName") String managedServiceName, Ocl ocl, @HeaderParam(FORWARDED) String forwardedBy) throws Exception {
+        OrchestratorService orchestratorService = getOrchestrator();
+        ClusterMember owner = getOwner(orchestratorService, managedServiceName, forwardedBy);
+        if (owner != null) {
+            return forward(orchestratorService, owner, "POST", "update", Collections.singletonMap("managedServiceName", managedServiceName),
+                    MediaType.APPLICATION_JSON, MAPPER.writeValueAsString(ocl));
+        }
+        return accepted(orchestratorService.updateManagedServiceAsync(managedServiceName, ocl));
     }
 
     @Path("/update/fetch")
     @POST
     @Consumes(MediaType.TEXT_PLAIN)
-    public Response update(@HeaderParam("managedServiceName") String managedServiceName, @HeaderParam("ocl") String oclLocation) throws Exception {
-        getOrchestrator().updateManagedService(managedServiceName, oclLocation);
-        return Response.ok().build();
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response update(@HeaderParam("managedServiceName") String managedServiceName, @HeaderParam("ocl") String oclLocation,
+                           @HeaderParam(FORWARDED) String forwardedBy) throws Exception {
+        OrchestratorService orchestratorService = getOrchestrator();
+        ClusterMember owner = getOwner(orchestratorService, managedServiceName, forwardedBy);
+        if (owner != null) {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("managedServiceName", managedServiceName);
+            headers.put("ocl", oclLocation);
+            return forward(orchestratorService, owner, "POST", "update/fetch", headers, null, null);
+        }
+        return accepted(orchestratorService.updateManagedServiceAsync(managedServiceName, oclLocation));
+    }
+
+    @Path("/operations")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Collection<Operation> operations() throws Exception {
+        return getOrchestrator().getOperations();
+    }
+
+    @Path("/operations/{id}")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response operation(@PathParam("id") String id) throws Exception {
+        Operation operation = getOrchestrator().getOperation(id);
+        if (operation == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(operation).build();
+    }
+
+    private Response accepted(Operation operation) {
+        return Response.accepted(operation).location(URI.create("operations/" + operation.getId())).build();
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Response bulk(List<?> items) {
+        return Response.accepted(items).build();
+    }
+
+    private static ClusterMember getOwner(OrchestratorService orchestratorService, String managedServiceName, String forwardedBy) {
+        // a forwarded request is handled here even if this replica view of the cluster differs, so it can't loop
+        return forwardedBy == null ? orchestratorService.getOwner(managedServiceName) : null;
+    }
+
+    private static Response forward(OrchestratorService orchestratorService, ClusterMember owner, String method, String path,
+                                    Map<String, String> headers, String contentType, String body) throws Exception {
+        return FORWARDER.forward(owner, orchestratorService.getCluster().getSelf().getId(), method, path, headers, contentType, body);
+    }
+
+    /**
+     * Split bulk items by replica: the local items are submitted here, the others are forwarded to their replica
+     * as one bulk request per replica, all replicas being called concurrently.
+     *
+     * @return the status of each item, in request order.
+     */
+    private static <T> List<JsonNode> sharded(OrchestratorService orchestratorService, List<T> items, Function<T, String> names,
+                                              Function<List<T>, List<BulkItem>> local, String path) throws Exception {
+        Map<String, ClusterMember> owners = new HashMap<>();
+        Map<String, List<Integer>> indexes = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            ClusterMember owner = orchestratorService.getOwner(names.apply(items.get(i)));
+            String id = owner == null ? null : owner.getId();
+            if (owner != null) {
+                owners.put(id, owner);
+            }
+            indexes.computeIfAbsent(id, key -> new ArrayList<>()).add(i);
+        }
+        String self = orchestratorService.getCluster().getSelf().getId();
+        Map<String, CompletableFuture<HttpResponse<String>>> responses = new HashMap<>();
+        for (Map.Entry<String, ClusterMember> owner : owners.entrySet()) {
+            List<T> forwarded = indexes.get(owner.getKey()).stream().map(items::get).collect(Collectors.toList());
+            responses.put(owner.getKey(), FORWARDER.send(owner.getValue(), self, "POST", path, Map.of(),
+                    MediaType.APPLICATION_JSON, MAPPER.writeValueAsString(forwarded)));
+        }
+        JsonNode[] results = new JsonNode[items.size()];
+        if (indexes.containsKey(null)) {
+            List<Integer> localIndexes = indexes.get(null);
+            List<BulkItem> submitted = local.apply(localIndexes.stream().map(items::get).collect(Collectors.toList()));
+            for (int i = 0; i < localIndexes.size(); i++) {
+                results[localIndexes.get(i)] = MAPPER.valueToTree(submitted.get(i));
+            }
+        }
+        for (Map.Entry<String, CompletableFuture<HttpResponse<String>>> response : responses.entrySet()) {
+            List<Integer> forwardedIndexes = indexes.get(response.getKey());
+            JsonNode forwarded = null;
+            Throwable error;
+            try {
+                HttpResponse<String> httpResponse = response.getValue().get();
+                if (httpResponse.statusCode() / 100 == 2) {
+                    forwarded = MAPPER.readTree(httpResponse.body());
+                }
+                error = new IllegalStateException("Replica " + response.getKey() + " answered " + httpResponse.statusCode());
+            } catch (ExecutionException e) {
+                error = e.getCause();
+            }
+            for (int i = 0; i < forwardedIndexes.size(); i++) {
+                if (forwarded != null && forwarded.has(i)) {
+                    results[forwardedIndexes.get(i)] = forwarded.get(i);
+                } else {
+                    String managedServiceName = names.apply(items.get(forwardedIndexes.get(i)));
+                    BulkItem item = new BulkItem(managedServiceName);
+                    item.setManagedServiceName(managedServiceName);
+                    item.rejected(error);
+                    results[forwardedIndexes.get(i)] = MAPPER.valueToTree(item);
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
     }
 
     private OrchestratorService getOrchestrator() throws Exception {
@@ -0,0 +1,24 @@
+package org.eclipse.osc.modules.api;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+import org.eclipse.osc.orchestrator.OrchestratorBusyException;
+
+/**
+ * Reject lifecycle requests with 429 Too Many Requests when the orchestrator doesn't admit more work.
+ */
+@Provider
+public class OrchestratorBusyExceptionMapper implements ExceptionMapper<OrchestratorBusyException> {
+
+    @Override
+    public Response toResponse(OrchestratorBusyException exception) {
+        return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                .header("Retry-After", exception.getRetryAfter())
+                .type(MediaType.TEXT_PLAIN)
+                .entity(exception.getMessage())
+                .build();
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.eclipse.osc.modules.api;
+
+import jakarta.ws.rs.core.Response;
+import org.eclipse.osc.orchestrator.ClusterMember;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Forward API requests to the orchestrator replica a managed service is assigned to.
+ */
+public class ReplicaForwarder {
+
+    /**
+     * Set on forwarded requests, so a replica with a different view of the cluster handles them instead of
+     * forwarding them again.
+     */
+    public static final String FORWARDED_HEADER = "X-OSC-Forwarded-By";
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final List<String> RESPONSE_HEADERS = List.of("ETag", "Retry-After", "Cache-Control");
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+
+    /**
+     * Send a request to a replica.
+     *
+     * @param owner the target replica.
+     * @param from the id of this replica.
+     * @param method the HTTP method.
+     * @param path the request path, with the query string, relative to the API root.
+     * @param headers the request headers to forward, null values are skipped.
+     * @param contentType the body content type.
+     * @param body the request body, null for none.
+     * @return the replica response.
+     */
+    public CompletableFuture<HttpResponse<String>> send(ClusterMember owner, String from, String method, String path,
+                                                       Map<String, String> headers, String contentType, String body) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(resolve(owner, path))
+                .timeout(REQUEST_TIMEOUT)
+                .header(FORWARDED_HEADER, from)
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (body != null) {
+            request.header("Content-Type", contentType);
+        }
+        headers.forEach((name, value) -> {
+            if (value != null) {
+                request.header(name, value);
+            }
+        });
+        return client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Forward a request to a replica, and relay its response.
+     *
+     * @param owner the target replica.
+     * @param from the id of this replica.
+     * @param method the HTTP method.
+     * @param path the request path, with the query string, relative to the API root.
+     * @param headers the request headers to forward, null values are skipped.
+     * @param contentType the body content type.
+     * @param body the request body, null for none.
+     * @return the response to relay to the client.
+     * @throws Exception if the replica can't be reached.
+     */
+    public Response forward(ClusterMember owner, String from, String method, String path,
+                            Map<String, String> headers, String contentType, String body) throws Exception {
+        HttpResponse<String> response = send(owner, from, method, path, headers, contentType, body).get();
+        Response.ResponseBuilder builder = Response.status(response.statusCode());
+        if (!response.body().isEmpty()) {
+            builder.entity(response.body());
+        }
+        response.headers().firstValue("Content-Type").ifPresent(builder::type);
+        for (String header : RESPONSE_HEADERS) {
+            response.headers().firstValue(header).ifPresent(value -> builder.header(header, value));
+        }
+        // operations are tracked by the replica running them, point the client there
+        response.headers().firstValue("Location").ifPresent(location -> builder.location(resolve(owner, location)));
+        return builder.build();
+    }
+
+    static URI resolve(ClusterMember owner, String path) {
+        String url = owner.getUrl();
+        return URI.create(url.endsWith("/") ? url : url + "/").resolve(path.startsWith("/") ? path.substring(1) : path);
+    }
+
+}
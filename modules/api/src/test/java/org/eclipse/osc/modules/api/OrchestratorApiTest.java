@@ -5,6 +5,7 @@ import org.apache.karaf.minho.boot.service.ConfigService;
 import org.apache.karaf.minho.boot.service.LifeCycleService;
 import org.apache.karaf.minho.rest.jersey.JerseyRestService;
 import org.apache.karaf.minho.web.jetty.JettyWebContainerService;
+import org.eclipse.osc.orchestrator.Operation;
 import org.eclipse.osc.orchestrator.OrchestratorService;
 import org.eclipse.osc.modules.ocl.loader.Ocl;
 import org.eclipse.osc.modules.ocl.loader.OclLoader;
@@ -36,6 +37,27 @@ public class OrchestratorApiTest {
         }
     }
 
+    @Test
+    public void metrics() throws Exception {
+        OrchestratorService orchestratorService = Minho.getInstance().getServiceRegistry().get(OrchestratorService.class);
+
+        Ocl ocl = new Ocl();
+        ocl.setName("test");
+        orchestratorService.registerManagedService(ocl);
+
+        URL url = new URL("http://localhost:8080/osc/metrics");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("GET");
+
+        Assertions.assertEquals(200, connection.getResponseCode());
+        StringBuilder metrics = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+            reader.lines().forEach(line -> metrics.append(line).append("\n"));
+        }
+        Assertions.assertTrue(metrics.toString().contains("osc_operations_total{type=\"REGISTER\",status=\"SUCCEEDED\"}"));
+        Assertions.assertTrue(metrics.toString().contains("# TYPE osc_storage_call_seconds histogram"));
+    }
+
     @Test
     public void register() throws Exception {
         URL url = new URL("http://localhost:8080/osc/register");
@@ -52,8 +74,8 @@ public class OrchestratorApiTest {
             writer.flush();
         }
 
-        Assertions.assertEquals("OK", connection.getResponseMessage());
-        Assertions.assertEquals(200, connection.getResponseCode());
+        Assertions.assertEquals("Accepted", connection.getResponseMessage());
+        Assertions.assertEquals(202, connection.getResponseCode());
     }
 
     @Test
@@ -64,8 +86,32 @@ public class OrchestratorApiTest {
         connection.setRequestProperty("ocl", new File("target/test-classes/test.json").toURI().toURL().toString());
         connection.setDoOutput(true);
 
-        Assertions.assertEquals("OK", connection.getResponseMessage());
-        Assertions.assertEquals(200, connection.getResponseCode());
+        Assertions.assertEquals("Accepted", connection.getResponseMessage());
+        Assertions.assertEquals(202, connection.getResponseCode());
+    }
+
+    @Test
+    public void registerBulk() throws Exception {
+        URL url = new URL("http://localhost:8080/osc/register/bulk?start=true");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+        connection.setDoInput(true);
+
+        String ocls = "[ { \"name\": \"test\" }, { \"name\": \"other\" } ]";
+
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream()))) {
+            writer.write(ocls);
+            writer.flush();
+        }
+
+        Assertions.assertEquals(202, connection.getResponseCode());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+            String response = reader.readLine();
+            Assertions.assertTrue(response.contains("\"managedServiceName\":\"test\""));
+            Assertions.assertTrue(response.contains("\"managedServiceName\":\"other\""));
+        }
     }
 
     @Test
@@ -81,8 +127,8 @@ public class OrchestratorApiTest {
         connection.setRequestMethod("POST");
         connection.setRequestProperty("managedServiceName", "test");
 
-        Assertions.assertEquals("OK", connection.getResponseMessage());
-        Assertions.assertEquals(200, connection.getResponseCode());
+        Assertions.assertEquals("Accepted", connection.getResponseMessage());
+        Assertions.assertEquals(202, connection.getResponseCode());
     }
 
     @Test
@@ -98,8 +144,8 @@ public class OrchestratorApiTest {
         connection.setRequestMethod("POST");
         connection.setRequestProperty("managedServiceName", "test");
 
-        Assertions.assertEquals("OK", connection.getResponseMessage());
-        Assertions.assertEquals(200, connection.getResponseCode());
+        Assertions.assertEquals("Accepted", connection.getResponseMessage());
+        Assertions.assertEquals(202, connection.getResponseCode());
     }
 
     @Test
@@ -117,6 +163,45 @@ public class OrchestratorApiTest {
 
         Assertions.assertEquals("OK", connection.getResponseMessage());
         Assertions.assertEquals(200, connection.getResponseCode());
+        String etag = connection.getHeaderField("ETag");
+        Assertions.assertNotNull(etag);
+
+        connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("If-None-Match", etag);
+        Assertions.assertEquals(304, connection.getResponseCode());
+    }
+
+    @Test
+    public void operation() throws Exception {
+        OrchestratorService orchestratorService = Minho.getInstance().getServiceRegistry().get(OrchestratorService.class);
+
+        Ocl ocl = new Ocl();
+        ocl.setName("test");
+        orchestratorService.registerManagedService(ocl);
+
+        URL url = new URL("http://localhost:8080/osc/start");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("managedServiceName", "test");
+
+        Assertions.assertEquals(202, connection.getResponseCode());
+        String location = connection.getHeaderField("Location");
+        Assertions.assertNotNull(location);
+        String id = location.substring(location.lastIndexOf('/') + 1);
+
+        Operation operation = orchestratorService.getOperation(id);
+        Assertions.assertNotNull(operation);
+        Assertions.assertEquals(Operation.Type.START, operation.getType());
+        Assertions.assertEquals("test", operation.getManagedServiceName());
+
+        connection = (HttpURLConnection) new URL(location).openConnection();
+        connection.setRequestMethod("GET");
+        Assertions.assertEquals(200, connection.getResponseCode());
+
+        connection = (HttpURLConnection) new URL("http://localhost:8080/osc/operations/unknown").openConnection();
+        connection.setRequestMethod("GET");
+        Assertions.assertEquals(404, connection.getResponseCode());
     }
 
     @BeforeEach
@@ -0,0 +1,695 @@
+package org.eclipse.osc.modules.file.storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.karaf.minho.boot.service.ConfigService;
+import org.apache.karaf.minho.boot.service.ServiceRegistry;
+import org.apache.karaf.minho.boot.spi.Service;
+import org.eclipse.osc.orchestrator.OrchestratorStorage;
+import org.eclipse.osc.orchestrator.VersionedValue;
+
+/**
+ * Orchestrator storage for single node deployments with many managed services, on memory-mapped segment files.
+ * <p>
+ * Each write appends a checksummed record to the active segment, and is forced to disk before returning. Values
+ * are never loaded on their own: the in-memory index only holds their position, and reads are slices of the
+ * mapped segments. The index is checkpointed (written to a temporary file, then renamed) every few records, so a
+ * cold start loads the checkpoint and only replays the records written after it. A record torn by a crash fails its
+ * checksum and ends the replay.
+ * <p>
+ * Not registered by default, a deployment registers it instead of {@link FileOrchestratorStorage}.
+ */
+@Slf4j
+public class MappedOrchestratorStorage implements OrchestratorStorage, Service, AutoCloseable {
+
+    public static final String DEFAULT_DIRECTORY = "orchestrator-store";
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1024;
+
+    private static final String SEPARATOR = "__";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final int CHECKPOINT_MAGIC = 0x4f534343;
+    private static final Pattern SEGMENT = Pattern.compile("segment-(\\d+)\\.dat");
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    /**
+     * checksum (int), key length (int), value length (int), type (byte), the checksum covering the bytes after it.
+     */
+    private static final int HEADER = 4 + 4 + 4 + 1;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    /**
+     * The managed service ids, stored as id=id among the plugin keys.
+     */
+    private final Set<String> services = ConcurrentHashMap.newKeySet();
+    /**
+     * All the stored keys, sorted so the keys of a managed service are listed by prefix.
+     */
+    private final NavigableSet<String> keys = new ConcurrentSkipListSet<>();
+    /**
+     * The version of the keys written since the start, the other keys having the initial version, guarded by the lock.
+     */
+    private final Map<String, Long> versions = new HashMap<>();
+    // seeded with the clock so versions keep increasing across restarts
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+    private final long initialVersion = clock.incrementAndGet();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object checkpointLock = new Object();
+    private final AtomicBoolean maintenance = new AtomicBoolean();
+    private ExecutorService maintainer;
+
+    private File directory;
+    private int segmentSize;
+    private int checkpointInterval;
+    private Segment active;
+    private int sinceCheckpoint;
+    private long live;
+    private long total;
+
+    public MappedOrchestratorStorage() {
+    }
+
+    /**
+     * @param directory the directory of the segments and checkpoint.
+     * @param segmentSize the size of a segment, larger for a larger record.
+     * @param checkpointInterval the number of records between two checkpoints.
+     */
+    public MappedOrchestratorStorage(File directory, int segmentSize, int checkpointInterval) {
+        open(directory, segmentSize, checkpointInterval);
+    }
+
+    @Override
+    public String name() {
+        return "mapped-orchestrator-storage";
+    }
+
+    @Override
+    public void onRegister(ServiceRegistry serviceRegistry) {
+        log.info("Registering mapped orchestrator storage service ...");
+        ConfigService configService = serviceRegistry.get(ConfigService.class);
+        open(new File(configService.getProperty("orchestrator.store.directory", DEFAULT_DIRECTORY)),
+                Integer.parseInt(configService.getProperty("orchestrator.store.segment-size", String.valueOf(DEFAULT_SEGMENT_SIZE))),
+                Integer.parseInt(configService.getProperty("orchestrator.store.checkpoint-interval", String.valueOf(DEFAULT_CHECKPOINT_INTERVAL))));
+    }
+
+    @Override
+    public int priority() {
+        return 900;
+    }
+
+    @Override
+    public void store(String sid) {
+        put(sid, sid);
+    }
+
+    @Override
+    public void store(String sid, String pluginName, String key, String value) {
+        put(sid + SEPARATOR + pluginName + SEPARATOR + key, value);
+    }
+
+    @Override
+    public String getKey(String sid, String pluginName, String key) {
+        ByteBuffer value = getValue(sid, pluginName, key);
+        return value == null ? "" : StandardCharsets.UTF_8.decode(value).toString();
+    }
+
+    /**
+     * Get a plugin level value without copying it.
+     *
+     * @param sid the managed service id.
+     * @param pluginName the name of the OrchestratorPlugin.
+     * @param key the property key.
+     * @return a read-only slice of the mapped segment holding the UTF-8 value, null if none.
+     */
+    public ByteBuffer getValue(String sid, String pluginName, String key) {
+        return get(sid + SEPARATOR + pluginName + SEPARATOR + key);
+    }
+
+    @Override
+    public VersionedValue getWithVersion(String sid, String pluginName, String key) {
+        String propertyKey = sid + SEPARATOR + pluginName + SEPARATOR + key;
+        lock.readLock().lock();
+        try {
+            ByteBuffer value = get(propertyKey);
+            if (value == null) {
+                return new VersionedValue("", null);
+            }
+            return new VersionedValue(StandardCharsets.UTF_8.decode(value).toString(), version(propertyKey));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean compareAndSet(String sid, String pluginName, String key, String expectedVersion, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Can't store a null value for " + key);
+        }
+        String propertyKey = sid + SEPARATOR + pluginName + SEPARATOR + key;
+        // held while appending, the write lock being reentrant
+        lock.writeLock().lock();
+        try {
+            if (!Objects.equals(version(propertyKey), expectedVersion)) {
+                return false;
+            }
+            append(Collections.singletonMap(propertyKey, value));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void storeAll(String sid, String pluginName, Map<String, String> values) {
+        Map<String, String> changes = new LinkedHashMap<>();
+        values.forEach((key, value) -> {
+            if (value == null) {
+                throw new IllegalArgumentException("Can't store a null value for " + key);
+            }
+            changes.put(sid + SEPARATOR + pluginName + SEPARATOR + key, value);
+        });
+        if (!changes.isEmpty()) {
+            append(changes);
+        }
+    }
+
+    @Override
+    public void removeAll(String sid, String pluginName, Collection<String> keys) {
+        Map<String, String> changes = new LinkedHashMap<>();
+        for (String key : keys) {
+            String propertyKey = sid + SEPARATOR + pluginName + SEPARATOR + key;
+            if (index.containsKey(propertyKey)) {
+                changes.put(propertyKey, null);
+            }
+        }
+        if (!changes.isEmpty()) {
+            append(changes);
+        }
+    }
+
+    @Override
+    public Set<String> listKeys(String sid, String pluginName) {
+        String prefix = sid + SEPARATOR + pluginName + SEPARATOR;
+        Set<String> listed = new HashSet<>();
+        for (String key : keys.subSet(prefix, prefix + Character.MAX_VALUE)) {
+            listed.add(key.substring(prefix.length()));
+        }
+        return listed;
+    }
+
+    /**
+     * Remove the managed service and its keys, forced to disk at once.
+     */
+    @Override
+    public void removeService(String sid) {
+        Map<String, String> changes = new LinkedHashMap<>();
+        for (String key : keys.subSet(sid + SEPARATOR, sid + SEPARATOR + Character.MAX_VALUE)) {
+            changes.put(key, null);
+        }
+        if (index.containsKey(sid)) {
+            changes.put(sid, null);
+        }
+        if (!changes.isEmpty()) {
+            append(changes);
+        }
+    }
+
+    @Override
+    public boolean exists(String sid) {
+        return index.containsKey(sid);
+    }
+
+    @Override
+    public Set<String> services() {
+        return Set.copyOf(services);
+    }
+
+    @Override
+    public void remove(String sid) {
+        if (index.containsKey(sid)) {
+            append(Collections.singletonMap(sid, null));
+        }
+    }
+
+    /**
+     * Write a checkpoint of the index, so the next start doesn't replay the records written so far.
+     */
+    public void checkpoint() {
+        synchronized (checkpointLock) {
+            Map<String, Location> snapshot;
+            long segment;
+            int position;
+            lock.writeLock().lock();
+            try {
+                snapshot = new HashMap<>(index);
+                segment = active.id;
+                position = active.position;
+                sinceCheckpoint = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Path path = new File(directory, CHECKPOINT).toPath();
+            Path temp = new File(directory, CHECKPOINT + ".tmp").toPath();
+            CRC32 crc = new CRC32();
+            try (DataOutputStream output = new DataOutputStream(new CheckedOutputStream(Files.newOutputStream(temp), crc))) {
+                output.writeInt(CHECKPOINT_MAGIC);
+                output.writeLong(segment);
+                output.writeInt(position);
+                output.writeInt(snapshot.size());
+                for (Map.Entry<String, Location> entry : snapshot.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    output.writeLong(entry.getValue().segment);
+                    output.writeInt(entry.getValue().offset);
+                    output.writeInt(entry.getValue().keyLength);
+                    output.writeInt(entry.getValue().valueLength);
+                }
+                output.flush();
+                // the checksum of the content, then the checksum itself
+                output.writeLong(crc.getValue());
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't write checkpoint " + temp, e);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't install checkpoint " + path, e);
+            }
+            log.debug("Checkpointed {} keys at segment {} position {}", snapshot.size(), segment, position);
+        }
+    }
+
+    /**
+     * Copy the live records to new segments and drop the previous ones, blocking reads and writes meanwhile.
+     */
+    public void compact() {
+        synchronized (checkpointLock) {
+            List<Segment> previous;
+            lock.writeLock().lock();
+            try {
+                previous = new ArrayList<>(segments.values());
+                active = createSegment(active.id + 1, segmentSize);
+                segments.put(active.id, active);
+                long before = total;
+                total = 0;
+                live = 0;
+                for (Map.Entry<String, Location> entry : index.entrySet()) {
+                    Location location = entry.getValue();
+                    ByteBuffer record = segments.get(location.segment).slice(location.offset, location.size());
+                    entry.setValue(write(record, location.keyLength, location.valueLength));
+                }
+                active.buffer.force();
+                for (Segment segment : previous) {
+                    segments.remove(segment.id);
+                }
+                log.info("Compacted mapped store {} from {} to {} bytes", directory, before, total);
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't create segment in " + directory, e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            // the records of the previous segments are not referenced by the new checkpoint
+            checkpoint();
+            for (Segment segment : previous) {
+                segment.close();
+                try {
+                    Files.deleteIfExists(segment.path);
+                } catch (IOException e) {
+                    log.warn("Can't delete compacted segment {}", segment.path, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (maintainer != null) {
+            maintainer.shutdownNow();
+        }
+        checkpoint();
+        lock.writeLock().lock();
+        try {
+            segments.values().forEach(Segment::close);
+            segments.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void open(File directory, int segmentSize, int checkpointInterval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.checkpointInterval = checkpointInterval;
+        this.maintainer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "osc-mapped-storage-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Files.createDirectories(directory.toPath());
+            recover();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't open mapped store " + directory, e);
+        }
+    }
+
+    private ByteBuffer get(String key) {
+        lock.readLock().lock();
+        try {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            return segments.get(location.segment).slice(location.offset + HEADER + location.keyLength, location.valueLength);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the version of the key, null if none, called while holding the lock.
+     */
+    private String version(String key) {
+        if (!index.containsKey(key)) {
+            return null;
+        }
+        return String.valueOf(versions.getOrDefault(key, initialVersion));
+    }
+
+    private void put(String key, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Can't store a null value for " + key);
+        }
+        append(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Append records, forced to disk at once.
+     *
+     * @param changes the new values by key, a null value removing the key.
+     */
+    private void append(Map<String, String> changes) {
+        List<ByteBuffer> records = new ArrayList<>(changes.size());
+        changes.forEach((key, value) -> {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            byte[] valueBytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = ByteBuffer.allocate(HEADER + keyBytes.length + valueBytes.length);
+            record.putInt(0).putInt(keyBytes.length).putInt(valueBytes.length).put(value == null ? DELETE : PUT).put(keyBytes).put(valueBytes);
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), 4, record.capacity() - 4);
+            record.putInt(0, (int) crc.getValue());
+            record.flip();
+            records.add(record);
+        });
+
+        boolean checkpoint;
+        boolean compact;
+        lock.writeLock().lock();
+        try {
+            int i = 0;
+            List<Location> locations = new ArrayList<>(records.size());
+            for (ByteBuffer record : records) {
+                locations.add(write(record, record.getInt(4), record.getInt(8)));
+            }
+            active.buffer.force();
+            for (Map.Entry<String, String> change : changes.entrySet()) {
+                apply(change.getValue() == null ? DELETE : PUT, change.getKey(), locations.get(i++));
+                if (change.getValue() == null) {
+                    services.remove(change.getKey());
+                    keys.remove(change.getKey());
+                    versions.remove(change.getKey());
+                } else {
+                    keys.add(change.getKey());
+                    versions.put(change.getKey(), clock.incrementAndGet());
+                    if (change.getKey().equals(change.getValue())) {
+                        services.add(change.getKey());
+                    }
+                }
+            }
+            sinceCheckpoint += records.size();
+            checkpoint = sinceCheckpoint >= checkpointInterval;
+            compact = total - live > segmentSize && total - live > live;
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't create segment in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if ((checkpoint || compact) && maintenance.compareAndSet(false, true)) {
+            maintainer.execute(() -> {
+                try {
+                    if (compact) {
+                        compact();
+                    } else {
+                        checkpoint();
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Mapped store {} maintenance failed", directory, e);
+                } finally {
+                    maintenance.set(false);
+                }
+            });
+        }
+    }
+
+    private Location write(ByteBuffer record, int keyLength, int valueLength) throws IOException {
+        if (active.position + record.remaining() > active.capacity) {
+            active.buffer.force();
+            active = createSegment(active.id + 1, Math.max(segmentSize, record.remaining()));
+            segments.put(active.id, active);
+        }
+        Location location = new Location(active.id, active.position, keyLength, valueLength);
+        active.buffer.position(active.position);
+        active.buffer.put(record);
+        active.position += location.size();
+        total += location.size();
+        return location;
+    }
+
+    private void apply(byte type, String key, Location location) {
+        Location previous = type == PUT ? index.put(key, location) : index.remove(key);
+        if (previous != null) {
+            live -= previous.size();
+        }
+        if (type == PUT) {
+            live += location.size();
+        }
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            Matcher matcher = SEGMENT.matcher(file.getName());
+            if (matcher.matches()) {
+                long id = Long.parseLong(matcher.group(1));
+                segments.put(id, openSegment(id, file.toPath()));
+            }
+        }
+        long fromSegment = segments.isEmpty() ? 0 : segments.firstKey();
+        int fromPosition = 0;
+        File checkpoint = new File(directory, CHECKPOINT);
+        if (checkpoint.exists()) {
+            long[] from = loadCheckpoint(checkpoint);
+            if (from != null) {
+                fromSegment = from[0];
+                fromPosition = (int) from[1];
+            }
+        }
+        int replayed = 0;
+        // segments sealed before the checkpoint are not scanned, accounted as full
+        segments.headMap(fromSegment, false).values().forEach(segment -> segment.position = segment.capacity);
+        for (Segment segment : segments.tailMap(fromSegment, true).values()) {
+            replayed += replay(segment, segment.id == fromSegment ? fromPosition : 0);
+        }
+        // live records, the checkpointed ones included
+        for (Location location : index.values()) {
+            live += location.size();
+        }
+        for (Segment segment : segments.values()) {
+            total += segment.position;
+        }
+        if (segments.isEmpty()) {
+            active = createSegment(1, segmentSize);
+            segments.put(active.id, active);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        // the only scan of the keys, the index is then maintained by the writes
+        for (String key : index.keySet()) {
+            keys.add(key);
+            if (StandardCharsets.UTF_8.encode(key).equals(get(key))) {
+                services.add(key);
+            }
+        }
+        log.info("Opened mapped store {} with {} keys in {} segments, {} records replayed", directory, index.size(), segments.size(), replayed);
+    }
+
+    /**
+     * @return the segment and position the checkpoint covers, null if the checkpoint is not valid.
+     */
+    private long[] loadCheckpoint(File file) {
+        CRC32 crc = new CRC32();
+        Map<String, Location> entries = new HashMap<>();
+        try (DataInputStream input = new DataInputStream(new CheckedInputStream(Files.newInputStream(file.toPath()), crc))) {
+            if (input.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException("Not a checkpoint");
+            }
+            long segment = input.readLong();
+            int position = input.readInt();
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = input.readUTF();
+                Location location = new Location(input.readLong(), input.readInt(), input.readInt(), input.readInt());
+                if (!segments.containsKey(location.segment)) {
+                    throw new IOException("Missing segment " + location.segment);
+                }
+                entries.put(key, location);
+            }
+            long expected = crc.getValue();
+            if (input.readLong() != expected) {
+                throw new IOException("Checksum mismatch");
+            }
+            index.putAll(entries);
+            return new long[] {segment, position};
+        } catch (IOException e) {
+            log.warn("Ignoring checkpoint {}, replaying all the segments", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Replay the records of a segment from a position, up to the first zeroed or torn record.
+     *
+     * @return the number of records replayed.
+     */
+    private int replay(Segment segment, int from) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int position = from;
+        int count = 0;
+        while (position + HEADER <= segment.capacity) {
+            int checksum = buffer.getInt(position);
+            int keyLength = buffer.getInt(position + 4);
+            int valueLength = buffer.getInt(position + 8);
+            byte type = buffer.get(position + 12);
+            if (keyLength <= 0 || valueLength < 0 || (type != PUT && type != DELETE)
+                    || (long) position + HEADER + keyLength + valueLength > segment.capacity) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(segment.slice(position + 4, HEADER - 4 + keyLength + valueLength));
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            String key = StandardCharsets.UTF_8.decode(segment.slice(position + HEADER, keyLength)).toString();
+            Location location = new Location(segment.id, position, keyLength, valueLength);
+            apply(type, key, location);
+            position += location.size();
+            count++;
+        }
+        segment.position = position;
+        if (position + HEADER <= segment.capacity && buffer.getInt(position + 4) != 0) {
+            // a torn record, cleared so its remains are not mistaken for a record once overwritten
+            log.warn("Clearing torn record in segment {} at {}", segment.path, position);
+            for (int i = position; i < segment.capacity; i++) {
+                buffer.put(i, (byte) 0);
+            }
+            segment.buffer.force();
+        }
+        return count;
+    }
+
+    private Segment createSegment(long id, int capacity) throws IOException {
+        Path path = new File(directory, String.format("segment-%08d.dat", id)).toPath();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the file is sparse, mapping it allocates it
+            return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        }
+    }
+
+    private static Segment openSegment(long id, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        }
+    }
+
+    private static class Segment {
+
+        private final long id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private int position;
+
+        Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+            this.capacity = buffer.capacity();
+        }
+
+        ByteBuffer slice(int offset, int length) {
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(offset).limit(offset + length);
+            return slice.slice().asReadOnlyBuffer();
+        }
+
+        void close() {
+            // unmapped once the buffer and its slices are garbage collected
+            buffer.force();
+        }
+    }
+
+    private static class Location {
+
+        private final long segment;
+        private final int offset;
+        private final int keyLength;
+        private final int valueLength;
+
+        Location(long segment, int offset, int keyLength, int valueLength) {
+            this.segment = segment;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+        }
+
+        int size() {
+            return HEADER + keyLength + valueLength;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.eclipse.osc.modules.file.storage;
+
+import org.eclipse.osc.orchestrator.VersionedValue;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class MappedOrchestratorStorageTest {
+
+    private static File directory(String name) {
+        File directory = new File("target/mapped-store-" + name);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        return directory;
+    }
+
+    @Test
+    public void storeTest() {
+        File directory = directory("store");
+        String state = "{\"version\": 4, \"resources\": \"" + "x".repeat(10000) + "\"}";
+        try (MappedOrchestratorStorage storage = new MappedOrchestratorStorage(directory, 64 * 1024, 1000)) {
+            storage.store("service");
+            storage.store("service", "plugin", "tfstate", state);
+            storage.store("other");
+            storage.remove("other");
+
+            Assertions.assertEquals(state, storage.getKey("service", "plugin", "tfstate"));
+            Assertions.assertEquals(state, StandardCharsets.UTF_8.decode(storage.getValue("service", "plugin", "tfstate")).toString());
+            Assertions.assertTrue(storage.getValue("service", "plugin", "tfstate").isReadOnly());
+            Assertions.assertEquals("", storage.getKey("service", "plugin", "unknown"));
+            Assertions.assertEquals(Set.of("service"), storage.services());
+            Assertions.assertFalse(storage.exists("other"));
+
+            // larger than a segment
+            String large = "y".repeat(100 * 1024);
+            storage.store("service", "plugin", "large", large);
+            Assertions.assertEquals(large, storage.getKey("service", "plugin", "large"));
+        }
+    }
+
+    @Test
+    public void batchTest() {
+        File directory = directory("batch");
+        try (MappedOrchestratorStorage storage = new MappedOrchestratorStorage(directory, 64 * 1024, 1000)) {
+            storage.store("service");
+            storage.storeAll("service", "plugin", Map.of("state", "active", "applied", "{}", "tfstate", "{}"));
+            storage.removeAll("service", "plugin", List.of("tfstate", "unknown"));
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> storage.storeAll("service", "plugin", Collections.singletonMap("state", null)));
+        }
+        try (MappedOrchestratorStorage storage = new MappedOrchestratorStorage(directory, 64 * 1024, 1000)) {
+            Map<String, String> values = storage.getAll("service", "plugin", List.of("state", "applied", "tfstate"));
+            Assertions.assertEquals("active", values.get("state"));
+            Assertions.assertEquals("{}", values.get("applied"));
+            Assertions.assertEquals("", values.get("tfstate"));
+            // the service index is rebuilt on start
+            Assertions.assertEquals(Set.of("service"), storage.services());
+        }
+    }
+
+    @Test
+    public void removeServiceTest() {
+        File directory = directory("remove-service");
+        try (MappedOrchestratorStorage storage = new MappedOrchestratorStorage(directory, 64 * 1024, 1000)) {
+            storage.store("service");
+            storage.storeAll("service", "plugin", Map.of("state", "active", "tfstate", "{}"));
+            storage.store("service", "other", "state", "active");
+            storage.store("service-2");
+            storage.store("service-2", "plugin", "state", "active");
+            Assertions.assertEquals(Set.of("state", "tfstate"), storage.listKeys("service", "plugin"));
+            Assertions.assertEquals(Set.of(), storage.listKeys("service", "unknown"));
+
+            storage.removeService("service");
+            Assertions.assertFalse(storage.exists("service"));
+            Assertions.assertEquals(Set.of(), storage.listKeys("service", "plugin"));
+            Assertions.assertEquals(Set.of(), storage.listKeys("service", "other"));
+        }
+        try (MappedOrchestratorStorage storage = new MappedOrchestratorStorage(directory, 64 * 1024, 1000)) {
+            Assertions.assertEquals(Set.of("service-2"), storage.services());
+            Assertions.assertEquals(Set.of("state"), storage.listKeys("service-2", "plugin"));
+            Assertions.assertEquals("", storage.getKey("service", "plugin", "tfstate"));
+        }
+    }
+
+    @Test
+    public void compareAndSetTest() {
+        File directory = directory("compare-and-set");
+        try (MappedOrchestratorStorage storage = new MappedOrchestratorStorage(directory, 64 * 1024, 1000)) {
+            Assertions.assertEquals(new VersionedValue("", null), storage.getWithVersion("service", "plugin", "state"));
+            Assertions.assertTrue(storage.compareAndSet("service", "plugin", "state", null, "deploying"));
+            Assertions.assertFalse(storage.compareAndSet("service", "plugin", "state", null, "deploying"));
+
+            VersionedValue deploying = storage.getWithVersion("service", "plugin", "state");
+            Assertions.assertEquals("deploying", deploying.getValue());
+            Assertions.assertTrue(storage.compareAndSet("service", "plugin", "state", deploying.getVersion(), "active"));
+            // a stale version is detected
+            Assertions.assertFalse(storage.compareAndSet("service", "plugin", "state", deploying.getVersion(), "failed"));
+            Assertions.assertEquals("active", storage.getKey("service", "plugin", "state"));
+        }
+        try (MappedOrchestratorStorage storage = new MappedOrchestratorStorage(directory, 64 * 1024, 1000)) {
+            VersionedValue active = storage.getWithVersion("service", "plugin", "state");
+            Assertions.assertEquals("active", active.getValue());
+            storage.store("service", "plugin", "state", "stopped");
+            Assertions.assertFalse(storage.compareAndSet("service", "plugin", "state", active.getVersion(), "failed"));
+        }
+    }
+
+    @Test
+    public void recoverTest() throws Exception {
+        File directory = directory("recover");
+        // not closed, as if the process crashed
+        MappedOrchestratorStorage crashed = new MappedOrchestratorStorage(directory, 64 * 1024, 1000);
+        crashed.store("service");
+        for (int i = 0; i < 10; i++) {
+            crashed.store("service", "plugin", "state", "state-" + i);
+        }
+        crashed.checkpoint();
+        // after the checkpoint, replayed on start
+        crashed.store("service", "plugin", "state", "state-10");
+        crashed.store("service", "plugin", "other", "other");
+
+        // tear the last record
+        File segment = new File(directory, "segment-00000001.dat");
+        byte[] content = new byte[(int) segment.length()];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.readFully(content);
+            int end = content.length;
+            while (content[end - 1] == 0) {
+                end--;
+            }
+            file.seek(end - 2);
+            file.write(new byte[] {1, 2});
+        }
+
+        try (MappedOrchestratorStorage storage = new MappedOrchestratorStorage(directory, 64 * 1024, 4)) {
+            Assertions.assertEquals("state-10", storage.getKey("service", "plugin", "state"));
+            Assertions.assertEquals("", storage.getKey("service", "plugin", "other"));
+            Assertions.assertEquals(Set.of("service"), storage.services());
+            storage.store("service", "plugin", "other", "again");
+        }
+        try (MappedOrchestratorStorage storage = new MappedOrchestratorStorage(directory, 64 * 1024, 4)) {
+            Assertions.assertEquals("again", storage.getKey("service", "plugin", "other"));
+        }
+
+        // a corrupted checkpoint is ignored, all the segments are replayed
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "checkpoint"), "rw")) {
+            file.seek(8);
+            file.write(42);
+        }
+        try (MappedOrchestratorStorage storage = new MappedOrchestratorStorage(directory, 64 * 1024, 4)) {
+            Assertions.assertEquals("state-10", storage.getKey("service", "plugin", "state"));
+            Assertions.assertEquals("again", storage.getKey("service", "plugin", "other"));
+        }
+    }
+
+    @Test
+    public void compactTest() {
+        File directory = directory("compact");
+        try (MappedOrchestratorStorage storage = new MappedOrchestratorStorage(directory, 16 * 1024, 1000)) {
+            storage.store("service");
+            for (int i = 0; i < 200; i++) {
+                storage.store("service", "plugin", "state", i + "-" + "z".repeat(500));
+            }
+            storage.compact();
+            // the live records fit in a single segment
+            Assertions.assertEquals(1, directory.list((dir, name) -> name.startsWith("segment-")).length);
+            Assertions.assertTrue(storage.getKey("service", "plugin", "state").startsWith("199-"));
+        }
+        try (MappedOrchestratorStorage storage = new MappedOrchestratorStorage(directory, 16 * 1024, 1000)) {
+            Assertions.assertTrue(storage.getKey("service", "plugin", "state").startsWith("199-"));
+            Assertions.assertEquals(Set.of("service"), storage.services());
+        }
+    }
+
+}
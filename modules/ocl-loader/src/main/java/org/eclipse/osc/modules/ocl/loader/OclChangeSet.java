@@ -0,0 +1,63 @@
+package org.eclipse.osc.modules.ocl.loader;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The changes between two versions of an OCL descriptor, by resource name, computed by {@link OclDiff}.
+ */
+@Data
+public class OclChangeSet {
+
+    private Changes vm = new Changes();
+    private Changes vpc = new Changes();
+    private Changes subnet = new Changes();
+    private Changes security = new Changes();
+    /**
+     * Security rules, named group/rule.
+     */
+    private Changes securityRules = new Changes();
+    private Changes storage = new Changes();
+    /**
+     * Image artifacts, modified as well when one of their base images or provisioners is modified.
+     */
+    private Changes artifacts = new Changes();
+
+    /**
+     * @return true if the two versions describe the same resources.
+     */
+    @JsonIgnore
+    public boolean isEmpty() {
+        return vm.isEmpty() && vpc.isEmpty() && subnet.isEmpty() && security.isEmpty()
+                && securityRules.isEmpty() && storage.isEmpty() && artifacts.isEmpty();
+    }
+
+    /**
+     * @return true if some images have to be built (again).
+     */
+    @JsonIgnore
+    public boolean isArtifactsChanged() {
+        return !artifacts.getAdded().isEmpty() || !artifacts.getModified().isEmpty();
+    }
+
+    /**
+     * The names of the resources added, removed and modified in a category.
+     */
+    @Data
+    public static class Changes {
+
+        private List<String> added = new ArrayList<>();
+        private List<String> removed = new ArrayList<>();
+        private List<String> modified = new ArrayList<>();
+
+        @JsonIgnore
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+        }
+
+    }
+
+}
@@ -0,0 +1,140 @@
+package org.eclipse.osc.modules.ocl.loader;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Structural diff of two OCL descriptors. Resources are matched by name, and compared on their descriptor only:
+ * the runtime fields (id, state) set while building are ignored.
+ */
+public class OclDiff {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private OclDiff() {
+    }
+
+    /**
+     * Compute the changes from a version of an OCL descriptor to another.
+     *
+     * @param before the current version, null if none.
+     * @param after the new version.
+     * @return the change set.
+     */
+    public static OclChangeSet diff(Ocl before, Ocl after) {
+        Ocl from = before == null ? new Ocl() : before;
+        Ocl to = after == null ? new Ocl() : after;
+        OclChangeSet changeSet = new OclChangeSet();
+        diff(changeSet.getVm(), vms(from), vms(to), VM::getName);
+        diff(changeSet.getVpc(), vpcs(from), vpcs(to), VPC::getName);
+        diff(changeSet.getSubnet(), subnets(from), subnets(to), Subnet::getName);
+        diff(changeSet.getSecurity(), securities(from), securities(to), Security::getName);
+        diff(changeSet.getSecurityRules(), securityRules(from), securityRules(to));
+        diff(changeSet.getStorage(), nonNull(from.getStorage()), nonNull(to.getStorage()), Storage::getName);
+        diff(changeSet.getArtifacts(), artifacts(from), artifacts(to));
+        return changeSet;
+    }
+
+    private static <T> void diff(OclChangeSet.Changes changes, List<T> before, List<T> after, Function<T, String> name) {
+        diff(changes, byName(before, name), byName(after, name));
+    }
+
+    private static void diff(OclChangeSet.Changes changes, Map<String, ?> before, Map<String, ?> after) {
+        for (Map.Entry<String, ?> entry : after.entrySet()) {
+            if (!before.containsKey(entry.getKey())) {
+                changes.getAdded().add(entry.getKey());
+            } else if (!descriptor(before.get(entry.getKey())).equals(descriptor(entry.getValue()))) {
+                changes.getModified().add(entry.getKey());
+            }
+        }
+        for (String name : before.keySet()) {
+            if (!after.containsKey(name)) {
+                changes.getRemoved().add(name);
+            }
+        }
+    }
+
+    private static <T> Map<String, T> byName(List<T> resources, Function<T, String> name) {
+        Map<String, T> map = new LinkedHashMap<>();
+        for (T resource : resources) {
+            map.put(name.apply(resource), resource);
+        }
+        return map;
+    }
+
+    private static List<VM> vms(Ocl ocl) {
+        return ocl.getCompute() == null ? Collections.emptyList() : nonNull(ocl.getCompute().getVm());
+    }
+
+    private static List<VPC> vpcs(Ocl ocl) {
+        return ocl.getNetwork() == null ? Collections.emptyList() : nonNull(ocl.getNetwork().getVpc());
+    }
+
+    private static List<Subnet> subnets(Ocl ocl) {
+        return ocl.getNetwork() == null ? Collections.emptyList() : nonNull(ocl.getNetwork().getSubnet());
+    }
+
+    private static List<Security> securities(Ocl ocl) {
+        return ocl.getNetwork() == null ? Collections.emptyList() : nonNull(ocl.getNetwork().getSecurity());
+    }
+
+    private static Map<String, SecurityRule> securityRules(Ocl ocl) {
+        Map<String, SecurityRule> rules = new LinkedHashMap<>();
+        for (Security security : securities(ocl)) {
+            for (SecurityRule rule : nonNull(security.getRules())) {
+                rules.put(security.getName() + "/" + rule.getName(), rule);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * The artifacts with the base image and provisioners they refer to, an artifact is modified when one of them is.
+     */
+    private static Map<String, List<Object>> artifacts(Ocl ocl) {
+        Map<String, List<Object>> artifacts = new LinkedHashMap<>();
+        if (ocl.getImage() == null) {
+            return artifacts;
+        }
+        for (Artifact artifact : nonNull(ocl.getImage().getArtifacts())) {
+            List<Object> inputs = new ArrayList<>();
+            inputs.add(artifact);
+            if (artifact.getBase() != null) {
+                inputs.add(ocl.referTo(artifact.getBase(), BaseImage.class).orElse(null));
+            }
+            for (String provisioner : nonNull(artifact.getProvisioners())) {
+                inputs.add(ocl.referTo(provisioner, Provisioner.class).orElse(null));
+            }
+            artifacts.put(artifact.getName(), inputs);
+        }
+        return artifacts;
+    }
+
+    private static JsonNode descriptor(Object resource) {
+        JsonNode node = MAPPER.valueToTree(resource);
+        stripRuntime(node);
+        return node;
+    }
+
+    private static void stripRuntime(JsonNode node) {
+        if (node instanceof ObjectNode) {
+            ((ObjectNode) node).remove(List.of("id", "state"));
+        }
+        for (JsonNode child : node) {
+            stripRuntime(child);
+        }
+    }
+
+    private static <T> List<T> nonNull(List<T> list) {
+        return list == null ? Collections.emptyList() : list;
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.eclipse.osc.modules.ocl.loader;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class OclDiffTest {
+
+    private Ocl prepareOcl() {
+        Ocl ocl = new Ocl();
+        ocl.setName("foo");
+
+        VM vm = new VM();
+        vm.setName("vm1");
+        vm.setType("c7.large");
+        Compute compute = new Compute();
+        compute.setVm(new ArrayList<>(Arrays.asList(vm)));
+        ocl.setCompute(compute);
+
+        SecurityRule rule = new SecurityRule();
+        rule.setName("ssh");
+        rule.setPorts("22");
+        Security security = new Security();
+        security.setName("sg1");
+        security.setRules(new ArrayList<>(Arrays.asList(rule)));
+        Network network = new Network();
+        network.setSecurity(new ArrayList<>(Arrays.asList(security)));
+        ocl.setNetwork(network);
+
+        Storage storage = new Storage();
+        storage.setName("disk1");
+        storage.setSize("40GiB");
+        ocl.setStorage(new ArrayList<>(Arrays.asList(storage)));
+
+        BaseImage base = new BaseImage();
+        base.setName("ubuntu");
+        Provisioner provisioner = new Provisioner();
+        provisioner.setName("install");
+        provisioner.setInline(new ArrayList<>(Arrays.asList("apt-get update")));
+        Artifact artifact = new Artifact();
+        artifact.setName("kafka_image");
+        artifact.setBase("$.image.base[0]");
+        artifact.setProvisioners(new ArrayList<>(Arrays.asList("$.image.provisioners[0]")));
+        Image image = new Image();
+        image.setBase(new ArrayList<>(Arrays.asList(base)));
+        image.setProvisioners(new ArrayList<>(Arrays.asList(provisioner)));
+        image.setArtifacts(new ArrayList<>(Arrays.asList(artifact)));
+        ocl.setImage(image);
+        return ocl;
+    }
+
+    @Test
+    public void testNoChange() {
+        Ocl before = prepareOcl();
+        Ocl after = before.deepCopy();
+        // runtime fields are not part of the descriptor
+        after.getCompute().getVm().get(0).setId("ecs-1234");
+        after.getCompute().getVm().get(0).setState("active");
+        after.getImage().getArtifacts().get(0).setId("img-1234");
+
+        OclChangeSet changeSet = OclDiff.diff(before, after);
+
+        assertTrue(changeSet.isEmpty());
+        assertFalse(changeSet.isArtifactsChanged());
+    }
+
+    @Test
+    public void testResourceChanges() {
+        Ocl before = prepareOcl();
+        Ocl after = before.deepCopy();
+        after.getCompute().getVm().get(0).setType("c7.xlarge");
+        VM vm = new VM();
+        vm.setName("vm2");
+        after.getCompute().getVm().add(vm);
+        after.getStorage().clear();
+        SecurityRule rule = new SecurityRule();
+        rule.setName("http");
+        rule.setPorts("80");
+        after.getNetwork().getSecurity().get(0).getRules().add(rule);
+
+        OclChangeSet changeSet = OclDiff.diff(before, after);
+
+        assertEquals(List.of("vm2"), changeSet.getVm().getAdded());
+        assertEquals(List.of("vm1"), changeSet.getVm().getModified());
+        assertEquals(List.of("disk1"), changeSet.getStorage().getRemoved());
+        assertEquals(List.of("sg1"), changeSet.getSecurity().getModified());
+        assertEquals(List.of("sg1/http"), changeSet.getSecurityRules().getAdded());
+        assertTrue(changeSet.getSecurityRules().getModified().isEmpty());
+        assertFalse(changeSet.isArtifactsChanged());
+        assertFalse(changeSet.isEmpty());
+    }
+
+    @Test
+    public void testArtifactChanges() {
+        Ocl before = prepareOcl();
+        Ocl after = before.deepCopy();
+        // the artifact itself is the same, but it's provisioned differently
+        after.getImage().getProvisioners().get(0).getInline().add("apt-get install -y kafka");
+
+        OclChangeSet changeSet = OclDiff.diff(before, after);
+
+        assertEquals(List.of("kafka_image"), changeSet.getArtifacts().getModified());
+        assertTrue(changeSet.isArtifactsChanged());
+        assertTrue(changeSet.getVm().isEmpty());
+    }
+
+    @Test
+    public void testNewOcl() {
+        OclChangeSet changeSet = OclDiff.diff(null, prepareOcl());
+
+        assertEquals(List.of("vm1"), changeSet.getVm().getAdded());
+        assertEquals(List.of("kafka_image"), changeSet.getArtifacts().getAdded());
+        assertTrue(changeSet.isArtifactsChanged());
+    }
+
+}
@@ -0,0 +1,123 @@
+package org.eclipse.osc.orchestrator;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bound the work accepted by the orchestrator: the number of pending (queued or running) operations, and the
+ * number of builds (register and update, which run terraform and packer) running at the same time. Build slots are
+ * taken by the {@link OperationScheduler} when it hands a build to a worker, so builds waiting for a slot stay
+ * queued and never hold a worker.
+ */
+@Slf4j
+public class AdmissionControl {
+
+    /**
+     * The delay suggested to rejected callers by default, in seconds.
+     */
+    public static final long DEFAULT_RETRY_AFTER = 30;
+
+    private static final MetricsRegistry.Counter NOT_ADMITTED = MetricsRegistry.getDefault().counter(
+            "osc_operations_not_admitted_total", "Lifecycle operations rejected because too many operations are pending.", "type");
+
+    private final int maxPending;
+    private final int maxBuilds;
+    private final long retryAfter;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Semaphore builds;
+
+    /**
+     * @param maxPending the maximum number of operations queued or running.
+     * @param maxBuilds the maximum number of builds running at the same time.
+     * @param retryAfter the delay suggested to rejected callers, in seconds.
+     */
+    public AdmissionControl(int maxPending, int maxBuilds, long retryAfter) {
+        this.maxPending = maxPending;
+        this.maxBuilds = maxBuilds;
+        this.retryAfter = retryAfter;
+        this.builds = new Semaphore(maxBuilds, true);
+    }
+
+    /**
+     * @return an admission control accepting everything.
+     */
+    public static AdmissionControl unbounded() {
+        return new AdmissionControl(Integer.MAX_VALUE, Integer.MAX_VALUE, DEFAULT_RETRY_AFTER);
+    }
+
+    /**
+     * Admit a new operation, to be followed by {@link #release()} once the operation is done.
+     *
+     * @param type the operation type.
+     * @throws OrchestratorBusyException if too many operations are pending.
+     */
+    public void admit(Operation.Type type) {
+        int current;
+        do {
+            current = pending.get();
+            if (current >= maxPending) {
+                NOT_ADMITTED.inc(type.name());
+                log.warn("Rejecting {} operation, {} operations already pending", type, current);
+                throw new OrchestratorBusyException("Too many pending operations (" + current + "), retry later", retryAfter);
+            }
+        } while (!pending.compareAndSet(current, current + 1));
+    }
+
+    /**
+     * Release an operation admitted with {@link #admit(Operation.Type)}.
+     */
+    public void release() {
+        pending.decrementAndGet();
+    }
+
+    /**
+     * Take a build slot if one is free.
+     *
+     * @return true if a build slot was acquired, and must be released with {@link #releaseBuild()}.
+     */
+    public boolean tryAcquireBuild() {
+        return maxBuilds == Integer.MAX_VALUE || builds.tryAcquire();
+    }
+
+    /**
+     * Wait for a build slot, for a build which didn't go through the scheduler.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void acquireBuild() throws InterruptedException {
+        if (maxBuilds != Integer.MAX_VALUE) {
+            builds.acquire();
+        }
+    }
+
+    public void releaseBuild() {
+        if (maxBuilds != Integer.MAX_VALUE) {
+            builds.release();
+        }
+    }
+
+    /**
+     * @return the delay suggested to rejected callers, in seconds.
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @return the number of operations queued or running.
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * @param type the operation type.
+     * @return true if the operation needs a build slot.
+     */
+    public static boolean isBuild(Operation.Type type) {
+        return type == Operation.Type.REGISTER || type == Operation.Type.UPDATE;
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.eclipse.osc.orchestrator;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The status of one item of a bulk lifecycle request.
+ */
+@Data
+public class BulkItem {
+
+    /**
+     * The item as given in the request: the OCL location, or the managed service name.
+     */
+    private final String source;
+
+    private volatile String managedServiceName;
+    private volatile boolean accepted;
+    private volatile String error;
+
+    /**
+     * The operations queued for this item, in execution order (for instance register then start).
+     */
+    private final List<Operation> operations = new ArrayList<>();
+
+    /**
+     * The operations rejected after the previous ones of the item were queued (for instance the start after the
+     * register), with the rejection reason. The item stays accepted.
+     */
+    private final Map<Operation.Type, String> rejectedOperations = new LinkedHashMap<>();
+
+    void accepted(Operation operation) {
+        operations.add(operation);
+        accepted = true;
+    }
+
+    public void rejected(Throwable cause) {
+        error = message(cause);
+        accepted = false;
+    }
+
+    void rejected(Operation.Type type, Throwable cause) {
+        rejectedOperations.put(type, message(cause));
+    }
+
+    private static String message(Throwable cause) {
+        return cause.getMessage() == null ? cause.getClass().getName() : cause.getMessage();
+    }
+
+}
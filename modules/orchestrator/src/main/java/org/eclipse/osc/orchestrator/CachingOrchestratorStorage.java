@@ -0,0 +1,454 @@
+package org.eclipse.osc.orchestrator;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Decorate a remote orchestrator storage with an in-memory cache of the plugins values and of the managed services
+ * existence, bounded in size (least recently used entries are evicted first) and expiring after a time to live.
+ * Missing values are cached too, usually with a shorter time to live. Writes either go to the storage right away
+ * (write-through) or are queued and written by a background flusher (write-behind), the latest write on a key
+ * winning. When revalidation is enabled and the storage supports entity tags, an expired value is kept if its
+ * entity tag didn't change, instead of being read again.
+ * <p>
+ * The cache is only coherent with the writes going through it, so the orchestrator and its plugins share one
+ * instance, see {@link OrchestratorPlugin#setStorage(OrchestratorStorage)}. Leases and cluster members must use the
+ * storage directly.
+ */
+@Slf4j
+public class CachingOrchestratorStorage implements OrchestratorStorage, AutoCloseable {
+
+    public enum Mode {
+        WRITE_THROUGH,
+        WRITE_BEHIND
+    }
+
+    private static final String SEPARATOR = "__";
+    private static final MetricsRegistry.Counter LOOKUPS = MetricsRegistry.getDefault().counter(
+            "osc_storage_cache_lookups_total", "Orchestrator storage cache lookups.", "result");
+
+    private final OrchestratorStorage storage;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Mode mode;
+    private final boolean revalidate;
+    private final Map<String, Entry> entries;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService flusher;
+    /**
+     * Incremented on each write, guarded by the entries: a value read from the storage isn't cached over a value
+     * written meanwhile.
+     */
+    private long stamps;
+    /**
+     * The latest stamp of the entries evicted or removed, guarded by the entries.
+     */
+    private long dropped;
+
+    /**
+     * @param storage the actual storage.
+     * @param maxEntries the maximum number of cached values.
+     * @param ttlMillis the time to live of a cached value.
+     * @param negativeTtlMillis the time to live of a cached missing value, 0 to not cache them.
+     * @param mode when writes go to the storage.
+     * @param flushIntervalMillis the period of the background writes, in write-behind mode.
+     * @param revalidate true to revalidate expired values with their entity tag.
+     */
+    public CachingOrchestratorStorage(OrchestratorStorage storage, int maxEntries, long ttlMillis, long negativeTtlMillis,
+                                      Mode mode, long flushIntervalMillis, boolean revalidate) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The cache size must be positive: " + maxEntries);
+        }
+        this.storage = storage;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        this.mode = mode;
+        this.revalidate = revalidate;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= CachingOrchestratorStorage.this.maxEntries) {
+                    return false;
+                }
+                dropped = Math.max(dropped, eldest.getValue().stamp);
+                return true;
+            }
+        };
+        if (mode == Mode.WRITE_BEHIND) {
+            flusher = Executors.newSingleThreadScheduledExecutor(new OrchestratorThreadFactory("osc-storage-cache-flusher"));
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * @return the decorated storage.
+     */
+    public OrchestratorStorage getStorage() {
+        return storage;
+    }
+
+    @Override
+    public void store(String sid) {
+        // the services are listed by the storage, so always written through
+        storage.store(sid);
+        cache(sid, sid, null);
+    }
+
+    @Override
+    public void store(String sid, String pluginName, String key, String value) {
+        storeAll(sid, pluginName, Collections.singletonMap(key, value));
+    }
+
+    @Override
+    public String getKey(String sid, String pluginName, String key) {
+        String cacheKey = key(sid, pluginName, key);
+        Pending write = pending.get(cacheKey);
+        if (write != null) {
+            LOOKUPS.inc("pending");
+            return write.value == null ? "" : write.value;
+        }
+        long now = System.nanoTime();
+        long stamp;
+        Entry entry;
+        synchronized (entries) {
+            stamp = stamps;
+            entry = entries.get(cacheKey);
+        }
+        if (entry != null && now - entry.expires < 0) {
+            LOOKUPS.inc(entry.value == null ? "negative" : "hit");
+            return entry.value == null ? "" : entry.value;
+        }
+        String etag = null;
+        if (revalidate) {
+            // read before the value, so a concurrent write makes the entity tag stale rather than the value
+            etag = storage.getETag(sid, pluginName, key);
+            if (entry != null && entry.etag != null && entry.etag.equals(etag)) {
+                LOOKUPS.inc("revalidated");
+                cache(cacheKey, entry.value, etag, stamp);
+                return entry.value;
+            }
+        }
+        LOOKUPS.inc("miss");
+        String value = storage.getKey(sid, pluginName, key);
+        cache(cacheKey, value, etag, stamp);
+        return value;
+    }
+
+    @Override
+    public Map<String, String> getAll(String sid, String pluginName, Collection<String> keys) {
+        Map<String, String> values = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        long now = System.nanoTime();
+        long stamp;
+        synchronized (entries) {
+            stamp = stamps;
+            for (String key : keys) {
+                String cacheKey = key(sid, pluginName, key);
+                Pending write = pending.get(cacheKey);
+                Entry entry = entries.get(cacheKey);
+                if (write != null) {
+                    values.put(key, write.value == null ? "" : write.value);
+                } else if (entry != null && now - entry.expires < 0) {
+                    values.put(key, entry.value == null ? "" : entry.value);
+                } else {
+                    missing.add(key);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return values;
+        }
+        if (revalidate) {
+            for (String key : missing) {
+                values.put(key, getKey(sid, pluginName, key));
+            }
+            return values;
+        }
+        LOOKUPS.inc("miss");
+        Map<String, String> loaded = storage.getAll(sid, pluginName, missing);
+        loaded.forEach((key, value) -> cache(key(sid, pluginName, key), value, null, stamp));
+        values.putAll(loaded);
+        return values;
+    }
+
+    @Override
+    public void storeAll(String sid, String pluginName, Map<String, String> values) {
+        values.forEach((key, value) -> {
+            if (value == null) {
+                throw new IllegalArgumentException("Can't store a null value for " + key);
+            }
+        });
+        if (mode == Mode.WRITE_THROUGH) {
+            storage.storeAll(sid, pluginName, values);
+        }
+        values.forEach((key, value) -> {
+            String cacheKey = key(sid, pluginName, key);
+            if (mode == Mode.WRITE_BEHIND) {
+                pending.put(cacheKey, new Pending(sid, pluginName, key, value));
+            }
+            cache(cacheKey, value, null);
+        });
+    }
+
+    @Override
+    public void removeAll(String sid, String pluginName, Collection<String> keys) {
+        if (mode == Mode.WRITE_THROUGH) {
+            storage.removeAll(sid, pluginName, keys);
+        }
+        for (String key : keys) {
+            String cacheKey = key(sid, pluginName, key);
+            if (mode == Mode.WRITE_BEHIND) {
+                pending.put(cacheKey, new Pending(sid, pluginName, key, null));
+            }
+            cache(cacheKey, null, null);
+        }
+    }
+
+    @Override
+    public boolean exists(String sid) {
+        long now = System.nanoTime();
+        long stamp;
+        Entry entry;
+        synchronized (entries) {
+            stamp = stamps;
+            entry = entries.get(sid);
+        }
+        if (entry != null && now - entry.expires < 0) {
+            LOOKUPS.inc(entry.value == null ? "negative" : "hit");
+            return entry.value != null;
+        }
+        LOOKUPS.inc("miss");
+        boolean exists = storage.exists(sid);
+        cache(sid, exists ? sid : null, null, stamp);
+        return exists;
+    }
+
+    @Override
+    public Set<String> services() {
+        return storage.services();
+    }
+
+    @Override
+    public void remove(String sid) {
+        remove(sid, () -> storage.remove(sid));
+    }
+
+    @Override
+    public void removeService(String sid) {
+        remove(sid, () -> storage.removeService(sid));
+    }
+
+    private void remove(String sid, Runnable removal) {
+        String prefix = sid + SEPARATOR;
+        synchronized (flushLock) {
+            // the pending writes of the managed service would write it again
+            pending.keySet().removeIf(key -> key.startsWith(prefix));
+            removal.run();
+        }
+        synchronized (entries) {
+            dropped = ++stamps;
+            entries.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+        cache(sid, null, null);
+    }
+
+    @Override
+    public Set<String> listKeys(String sid, String pluginName) {
+        // the keys pending in write-behind mode are listed once written
+        flush();
+        return storage.listKeys(sid, pluginName);
+    }
+
+    @Override
+    public String getETag(String sid, String pluginName, String key) {
+        return storage.getETag(sid, pluginName, key);
+    }
+
+    /**
+     * Always read from the storage, the version of a cached value may be stale.
+     */
+    @Override
+    public VersionedValue getWithVersion(String sid, String pluginName, String key) {
+        String cacheKey = key(sid, pluginName, key);
+        if (pending.containsKey(cacheKey)) {
+            flush();
+        }
+        long stamp;
+        synchronized (entries) {
+            stamp = stamps;
+        }
+        VersionedValue versioned = storage.getWithVersion(sid, pluginName, key);
+        cache(cacheKey, versioned.getValue(), null, stamp);
+        return versioned;
+    }
+
+    /**
+     * Always written through, a pending write of the key being written first.
+     */
+    @Override
+    public boolean compareAndSet(String sid, String pluginName, String key, String expectedVersion, String value) {
+        String cacheKey = key(sid, pluginName, key);
+        if (pending.containsKey(cacheKey)) {
+            flush();
+        }
+        if (storage.compareAndSet(sid, pluginName, key, expectedVersion, value)) {
+            cache(cacheKey, value, null);
+            return true;
+        }
+        // written by another writer, read again next time
+        synchronized (entries) {
+            dropped = ++stamps;
+            entries.remove(cacheKey);
+        }
+        return false;
+    }
+
+    @Override
+    public Lease updateLease(String name, UnaryOperator<Lease> update) {
+        return storage.updateLease(name, update);
+    }
+
+    /**
+     * @return the number of cached values.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Write the pending writes, in write-behind mode.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, Map<String, Pending>> groups = new LinkedHashMap<>();
+            pending.forEach((cacheKey, write) ->
+                    groups.computeIfAbsent(write.sid + SEPARATOR + write.pluginName, group -> new LinkedHashMap<>()).put(cacheKey, write));
+            for (Map<String, Pending> group : groups.values()) {
+                Pending first = group.values().iterator().next();
+                Map<String, String> values = new HashMap<>();
+                List<String> removed = new ArrayList<>();
+                for (Pending write : group.values()) {
+                    if (write.value == null) {
+                        removed.add(write.key);
+                    } else {
+                        values.put(write.key, write.value);
+                    }
+                }
+                try {
+                    if (!values.isEmpty()) {
+                        storage.storeAll(first.sid, first.pluginName, values);
+                    }
+                    if (!removed.isEmpty()) {
+                        storage.removeAll(first.sid, first.pluginName, removed);
+                    }
+                    // unless written again meanwhile
+                    group.forEach(pending::remove);
+                } catch (RuntimeException e) {
+                    log.warn("Can't write {} {} keys of {} to the storage, retrying on next flush",
+                            group.size(), first.pluginName, first.sid, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the pending writes and stop the flusher.
+     */
+    @Override
+    public void close() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!pending.isEmpty()) {
+            log.error("{} writes to the orchestrator storage are lost", pending.size());
+        }
+    }
+
+    private void cache(String cacheKey, String value, String etag) {
+        synchronized (entries) {
+            cache(cacheKey, value, etag, ++stamps);
+        }
+    }
+
+    private void cache(String cacheKey, String value, String etag, long stamp) {
+        boolean missing = value == null || value.isEmpty();
+        if (missing && negativeTtlNanos <= 0) {
+            synchronized (entries) {
+                if (stamp >= stamps) {
+                    entries.remove(cacheKey);
+                }
+            }
+            return;
+        }
+        long expires = System.nanoTime() + (missing ? negativeTtlNanos : ttlNanos);
+        synchronized (entries) {
+            Entry current = entries.get(cacheKey);
+            // not over a value written since the stamp was taken, even if evicted or removed since
+            if (current == null ? stamp >= dropped : current.stamp <= stamp) {
+                entries.put(cacheKey, new Entry(missing ? null : value, etag, expires, stamp));
+            }
+        }
+    }
+
+    private static String key(String sid, String pluginName, String key) {
+        return sid + SEPARATOR + pluginName + SEPARATOR + key;
+    }
+
+    private static class Entry {
+
+        private final String value;
+        private final String etag;
+        private final long expires;
+        private final long stamp;
+
+        Entry(String value, String etag, long expires, long stamp) {
+            this.value = value;
+            this.etag = etag;
+            this.expires = expires;
+            this.stamp = stamp;
+        }
+    }
+
+    private static class Pending {
+
+        private final String sid;
+        private final String pluginName;
+        private final String key;
+        private final String value;
+
+        Pending(String sid, String pluginName, String key, String value) {
+            this.sid = sid;
+            this.pluginName = pluginName;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package org.eclipse.osc.orchestrator;
+
+import lombok.Data;
+
+/**
+ * An orchestrator replica, as published in its heartbeat.
+ */
+@Data
+public class ClusterMember {
+
+    private String id;
+    /**
+     * The base URL of the replica API, where requests for its managed services are forwarded.
+     */
+    private String url;
+    /**
+     * Incremented on each heartbeat, so liveness doesn't depend on the replica clocks being in sync.
+     */
+    private long sequence;
+    private long heartbeat;
+
+}
@@ -0,0 +1,225 @@
+package org.eclipse.osc.orchestrator;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Membership of the orchestrator replicas sharing a storage, and sharding of the managed services between them.
+ * Each replica periodically publishes a heartbeat in the storage, and reads the heartbeats of the others. A
+ * replica is alive as long as its heartbeat keeps changing, and the managed services are assigned to the alive
+ * replicas by consistent hashing of their names.
+ */
+@Slf4j
+public class ClusterMembership implements AutoCloseable {
+
+    /**
+     * The membership keys are stored under this id, never stored itself, so it's not listed as a managed service.
+     */
+    static final String CLUSTER_SID = "osc-cluster";
+    static final String STORAGE_NAME = "osc-orchestrator-cluster";
+    static final String MEMBERS_KEY = "members";
+    static final String HEARTBEAT_KEY = "heartbeat.";
+    static final int VIRTUAL_NODES = 128;
+
+    private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final OrchestratorStorage storage;
+    private final ClusterMember self = new ClusterMember();
+    private final long heartbeatMillis;
+    private final long expiryMillis;
+    // last heartbeat sequence of each member, and when (on the local clock) we saw it change
+    private final Map<String, long[]> seen = new HashMap<>();
+    private volatile Map<String, ClusterMember> members;
+    private volatile HashRing ring;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param storage the storage shared by the replicas.
+     * @param id the id of this replica, stable across restarts so it gets back the same managed services.
+     * @param url the base URL of this replica API.
+     * @param heartbeatMillis the heartbeat period.
+     * @param expiryMillis the delay after which a replica whose heartbeat didn't change is considered dead.
+     */
+    public ClusterMembership(OrchestratorStorage storage, String id, String url, long heartbeatMillis, long expiryMillis) {
+        if (expiryMillis <= heartbeatMillis) {
+            throw new IllegalArgumentException("Cluster expiry must be longer than the heartbeat period");
+        }
+        this.storage = storage;
+        this.heartbeatMillis = heartbeatMillis;
+        this.expiryMillis = expiryMillis;
+        self.setId(id);
+        self.setUrl(url);
+        // different from the last sequence published before a restart
+        self.setSequence(System.currentTimeMillis());
+        members = Collections.singletonMap(id, self);
+        ring = new HashRing(members.keySet(), VIRTUAL_NODES);
+    }
+
+    /**
+     * Join the cluster, and keep publishing heartbeats in the background.
+     */
+    public synchronized void start() {
+        heartbeatQuietly();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new OrchestratorThreadFactory("osc-orchestrator-cluster"));
+        scheduler.scheduleWithFixedDelay(this::heartbeatQuietly, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publish the heartbeat of this replica, and refresh the alive replicas.
+     */
+    public synchronized void heartbeat() {
+        long now = System.currentTimeMillis();
+        self.setSequence(self.getSequence() + 1);
+        self.setHeartbeat(now);
+        storage.store(CLUSTER_SID, STORAGE_NAME, HEARTBEAT_KEY + self.getId(), write(self));
+
+        Set<String> ids = readMembers();
+        boolean changed = ids.add(self.getId());
+        Map<String, ClusterMember> alive = new TreeMap<>();
+        alive.put(self.getId(), self);
+        for (String id : new ArrayList<>(ids)) {
+            if (id.equals(self.getId())) {
+                continue;
+            }
+            ClusterMember member = readHeartbeat(id);
+            if (isAlive(id, member, now)) {
+                alive.put(id, member);
+            } else {
+                // left or dead, any replica can clean the members list
+                ids.remove(id);
+                seen.remove(id);
+                changed = true;
+            }
+        }
+        if (changed) {
+            // concurrent updates can lose a member, it adds itself back on its next heartbeat
+            storage.store(CLUSTER_SID, STORAGE_NAME, MEMBERS_KEY, write(ids));
+        }
+        if (!alive.keySet().equals(members.keySet())) {
+            log.info("Orchestrator cluster members changed: {}", alive.keySet());
+            ring = new HashRing(alive.keySet(), VIRTUAL_NODES);
+        }
+        members = alive;
+    }
+
+    /**
+     * @param managedServiceName the managed service name.
+     * @return the replica the managed service is assigned to.
+     */
+    public ClusterMember getOwner(String managedServiceName) {
+        ClusterMember owner = members.get(ring.get(managedServiceName));
+        return owner == null ? self : owner;
+    }
+
+    /**
+     * @param managedServiceName the managed service name.
+     * @return true if the managed service is assigned to this replica.
+     */
+    public boolean isLocal(String managedServiceName) {
+        return getOwner(managedServiceName) == self;
+    }
+
+    /**
+     * @return this replica.
+     */
+    public ClusterMember getSelf() {
+        return self;
+    }
+
+    /**
+     * @return the alive replicas, including this one.
+     */
+    public Collection<ClusterMember> getMembers() {
+        return members.values();
+    }
+
+    /**
+     * Leave the cluster, the managed services of this replica are immediately reassigned to the others.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        try {
+            storage.store(CLUSTER_SID, STORAGE_NAME, HEARTBEAT_KEY + self.getId(), "");
+            Set<String> ids = readMembers();
+            if (ids.remove(self.getId())) {
+                storage.store(CLUSTER_SID, STORAGE_NAME, MEMBERS_KEY, write(ids));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Can't leave the orchestrator cluster, this replica will expire", e);
+        }
+    }
+
+    private void heartbeatQuietly() {
+        try {
+            heartbeat();
+        } catch (RuntimeException e) {
+            // keep the last known members, the other replicas expire this one if it lasts
+            log.warn("Can't publish the orchestrator cluster heartbeat", e);
+        }
+    }
+
+    private boolean isAlive(String id, ClusterMember member, long now) {
+        if (member == null) {
+            return false;
+        }
+        long[] last = seen.get(id);
+        if (last == null || last[0] != member.getSequence()) {
+            seen.put(id, new long[]{member.getSequence(), now});
+            return true;
+        }
+        return now - last[1] < expiryMillis;
+    }
+
+    private Set<String> readMembers() {
+        String value = storage.getKey(CLUSTER_SID, STORAGE_NAME, MEMBERS_KEY);
+        if (value == null || value.isEmpty()) {
+            return new TreeSet<>();
+        }
+        try {
+            return mapper.readValue(value, new TypeReference<TreeSet<String>>() {});
+        } catch (IOException e) {
+            log.warn("Invalid orchestrator cluster members {}, rebuilding it", value);
+            return new TreeSet<>();
+        }
+    }
+
+    private ClusterMember readHeartbeat(String id) {
+        String value = storage.getKey(CLUSTER_SID, STORAGE_NAME, HEARTBEAT_KEY + id);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return mapper.readValue(value, ClusterMember.class);
+        } catch (IOException e) {
+            log.warn("Invalid heartbeat of orchestrator replica {}", id);
+            return null;
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't write orchestrator cluster membership", e);
+        }
+    }
+
+}
@@ -0,0 +1,365 @@
+package org.eclipse.osc.orchestrator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Decorate an orchestrator storage to store the large values, such as terraform states, compressed and by content:
+ * a large value is stored once as a blob named by its hash, shared by all the keys holding the same value, and the
+ * keys only hold a reference to it. Storing the value a key already holds costs a hash comparison, no upload.
+ * <p>
+ * The blobs are reference counted: the hash held by each key is indexed in the namespace of its managed service
+ * (so removing a managed service finds its references), and a blob is removed with its last reference. The counts
+ * are updated with {@link OrchestratorStorage#compareAndSet(String, String, String, String, String)}, so they stay
+ * exact when several replicas share the storage. The release of the last reference marks the count as being
+ * deleted while it removes the blob, a new reference waits for the removal before uploading the blob again, or
+ * takes over a mark older than a minute, the releasing replica being gone. A replica paused for
+ * longer in the middle of a removal can still remove a blob referenced again meanwhile.
+ */
+public class ContentAddressedOrchestratorStorage implements OrchestratorStorage {
+
+    /**
+     * The managed service id holding the blobs and their reference counts.
+     */
+    public static final String BLOB_SID = "osc-blobs";
+
+    static final String REFERENCE = "osc-blob:sha256:";
+
+    private static final String BLOBS = "gzip";
+    private static final String COUNTS = "refs";
+    private static final String INDEX = "osc-blob-refs";
+    private static final String SEPARATOR = "__";
+    private static final String DELETING = "deleting:";
+    private static final long DELETE_TIMEOUT = 60000;
+    private static final long DELETE_WAIT = 50;
+
+    private final OrchestratorStorage storage;
+    private final int threshold;
+
+    /**
+     * @param storage the actual storage.
+     * @param threshold the length from which values are stored as blobs.
+     */
+    public ContentAddressedOrchestratorStorage(OrchestratorStorage storage, int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("The blob threshold must be positive: " + threshold);
+        }
+        this.storage = storage;
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return the decorated storage.
+     */
+    public OrchestratorStorage getStorage() {
+        return storage;
+    }
+
+    @Override
+    public void store(String sid) {
+        storage.store(sid);
+    }
+
+    @Override
+    public void store(String sid, String pluginName, String key, String value) {
+        storeAll(sid, pluginName, Collections.singletonMap(key, value));
+    }
+
+    @Override
+    public String getKey(String sid, String pluginName, String key) {
+        return resolve(storage.getKey(sid, pluginName, key));
+    }
+
+    @Override
+    public Map<String, String> getAll(String sid, String pluginName, Collection<String> keys) {
+        Map<String, String> values = new HashMap<>(storage.getAll(sid, pluginName, keys));
+        values.replaceAll((key, value) -> resolve(value));
+        return values;
+    }
+
+    @Override
+    public void storeAll(String sid, String pluginName, Map<String, String> values) {
+        Map<String, String> hashes = new HashMap<>();
+        values.forEach((key, value) -> {
+            if (value == null) {
+                throw new IllegalArgumentException("Can't store a null value for " + key);
+            }
+            // a small value looking like a reference is stored as a blob too, so it's not mistaken for one
+            if (value.length() >= threshold || value.startsWith(REFERENCE)) {
+                hashes.put(key, hash(value));
+            }
+        });
+        Map<String, String> previous = references(sid, pluginName, values.keySet());
+
+        Map<String, String> stored = new HashMap<>();
+        Map<String, String> referenced = new HashMap<>();
+        List<String> unreferenced = new ArrayList<>();
+        List<String> released = new ArrayList<>();
+        values.forEach((key, value) -> {
+            String hash = hashes.get(key);
+            String current = previous.get(key);
+            if (hash == null) {
+                stored.put(key, value);
+                if (current != null) {
+                    unreferenced.add(pluginName + SEPARATOR + key);
+                    released.add(current);
+                }
+            } else if (!hash.equals(current)) {
+                acquire(hash, value);
+                stored.put(key, REFERENCE + hash);
+                referenced.put(pluginName + SEPARATOR + key, hash);
+                if (current != null) {
+                    released.add(current);
+                }
+            }
+        });
+        if (!referenced.isEmpty()) {
+            storage.storeAll(sid, INDEX, referenced);
+        }
+        if (!stored.isEmpty()) {
+            storage.storeAll(sid, pluginName, stored);
+        }
+        if (!unreferenced.isEmpty()) {
+            storage.removeAll(sid, INDEX, unreferenced);
+        }
+        released.forEach(this::release);
+    }
+
+    @Override
+    public void removeAll(String sid, String pluginName, Collection<String> keys) {
+        Map<String, String> previous = references(sid, pluginName, keys);
+        storage.removeAll(sid, pluginName, keys);
+        if (previous.isEmpty()) {
+            return;
+        }
+        List<String> unreferenced = new ArrayList<>();
+        previous.keySet().forEach(key -> unreferenced.add(pluginName + SEPARATOR + key));
+        storage.removeAll(sid, INDEX, unreferenced);
+        previous.values().forEach(this::release);
+    }
+
+    @Override
+    public boolean exists(String sid) {
+        return storage.exists(sid);
+    }
+
+    @Override
+    public Set<String> services() {
+        return storage.services();
+    }
+
+    @Override
+    public void remove(String sid) {
+        storage.remove(sid);
+    }
+
+    @Override
+    public Set<String> listKeys(String sid, String pluginName) {
+        return storage.listKeys(sid, pluginName);
+    }
+
+    @Override
+    public void removeService(String sid) {
+        Set<String> indexed = storage.listKeys(sid, INDEX);
+        Map<String, String> previous = indexed.isEmpty() ? Map.of() : storage.getAll(sid, INDEX, indexed);
+        storage.removeService(sid);
+        previous.values().stream().filter(hash -> !hash.isEmpty()).forEach(this::release);
+    }
+
+    @Override
+    public String getETag(String sid, String pluginName, String key) {
+        // the reference changes with the value
+        return storage.getETag(sid, pluginName, key);
+    }
+
+    @Override
+    public VersionedValue getWithVersion(String sid, String pluginName, String key) {
+        VersionedValue stored = storage.getWithVersion(sid, pluginName, key);
+        return new VersionedValue(resolve(stored.getValue()), stored.getVersion());
+    }
+
+    /**
+     * The reference (or the small value) is compared and set, the blob being uploaded first and released if the
+     * version changed meanwhile.
+     */
+    @Override
+    public boolean compareAndSet(String sid, String pluginName, String key, String expectedVersion, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Can't store a null value for " + key);
+        }
+        String indexKey = pluginName + SEPARATOR + key;
+        String current = references(sid, pluginName, List.of(key)).get(key);
+        if (value.length() < threshold && !value.startsWith(REFERENCE)) {
+            if (!storage.compareAndSet(sid, pluginName, key, expectedVersion, value)) {
+                return false;
+            }
+            if (current != null) {
+                storage.removeAll(sid, INDEX, List.of(indexKey));
+                release(current);
+            }
+            return true;
+        }
+        String hash = hash(value);
+        boolean acquired = !hash.equals(current);
+        if (acquired) {
+            acquire(hash, value);
+        }
+        if (!storage.compareAndSet(sid, pluginName, key, expectedVersion, REFERENCE + hash)) {
+            if (acquired) {
+                release(hash);
+            }
+            return false;
+        }
+        if (acquired) {
+            storage.store(sid, INDEX, indexKey, hash);
+            if (current != null) {
+                release(current);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Lease updateLease(String name, UnaryOperator<Lease> update) {
+        return storage.updateLease(name, update);
+    }
+
+    /**
+     * @return the hash of the blobs held by the keys, by key.
+     */
+    private Map<String, String> references(String sid, String pluginName, Collection<String> keys) {
+        List<String> indexKeys = new ArrayList<>();
+        keys.forEach(key -> indexKeys.add(pluginName + SEPARATOR + key));
+        Map<String, String> references = new HashMap<>();
+        storage.getAll(sid, INDEX, indexKeys).forEach((indexKey, hash) -> {
+            if (hash != null && !hash.isEmpty()) {
+                references.put(indexKey.substring(pluginName.length() + SEPARATOR.length()), hash);
+            }
+        });
+        return references;
+    }
+
+    private void acquire(String hash, String value) {
+        while (true) {
+            VersionedValue count = storage.getWithVersion(BLOB_SID, COUNTS, hash);
+            String stored = count.getValue() == null ? "" : count.getValue();
+            int references;
+            if (stored.startsWith(DELETING)) {
+                if (System.currentTimeMillis() - Long.parseLong(stored.substring(DELETING.length())) < DELETE_TIMEOUT) {
+                    awaitDeletion(hash);
+                    continue;
+                }
+                references = 0;
+            } else {
+                references = count(stored);
+            }
+            if (references == 0) {
+                // uploaded before being counted, the same content if another replica uploads it concurrently
+                storage.store(BLOB_SID, BLOBS, hash, compress(value));
+            }
+            if (storage.compareAndSet(BLOB_SID, COUNTS, hash, count.getVersion(), String.valueOf(references + 1))) {
+                return;
+            }
+        }
+    }
+
+    private void release(String hash) {
+        while (true) {
+            VersionedValue count = storage.getWithVersion(BLOB_SID, COUNTS, hash);
+            String stored = count.getValue() == null ? "" : count.getValue();
+            if (stored.startsWith(DELETING)) {
+                return;
+            }
+            int references = count(stored);
+            if (references > 1) {
+                if (storage.compareAndSet(BLOB_SID, COUNTS, hash, count.getVersion(), String.valueOf(references - 1))) {
+                    return;
+                }
+                continue;
+            }
+            String deleting = DELETING + System.currentTimeMillis();
+            if (!storage.compareAndSet(BLOB_SID, COUNTS, hash, count.getVersion(), deleting)) {
+                continue;
+            }
+            storage.removeAll(BLOB_SID, BLOBS, List.of(hash));
+            // the count last, so a new reference doesn't upload the blob before it's removed
+            if (deleting.equals(storage.getKey(BLOB_SID, COUNTS, hash))) {
+                storage.removeAll(BLOB_SID, COUNTS, List.of(hash));
+            }
+            return;
+        }
+    }
+
+    private static void awaitDeletion(String hash) {
+        try {
+            Thread.sleep(DELETE_WAIT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the removal of blob " + hash, e);
+        }
+    }
+
+    private static int count(String count) {
+        return count.isEmpty() ? 0 : Integer.parseInt(count);
+    }
+
+    private String resolve(String value) {
+        if (value == null || !value.startsWith(REFERENCE)) {
+            return value;
+        }
+        String hash = value.substring(REFERENCE.length());
+        String blob = storage.getKey(BLOB_SID, BLOBS, hash);
+        if (blob == null || blob.isEmpty()) {
+            throw new IllegalStateException("Blob " + hash + " is missing from the storage");
+        }
+        return decompress(blob);
+    }
+
+    static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hash = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hash.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    private static String compress(String value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(value.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't compress value", e);
+        }
+        // the storages hold strings
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    private static String decompress(String blob) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(blob)))) {
+            return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("Can't decompress blob", e);
+        }
+    }
+
+}
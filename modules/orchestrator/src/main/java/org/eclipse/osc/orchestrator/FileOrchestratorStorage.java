@@ -5,71 +5,166 @@ import org.apache.karaf.minho.boot.service.ConfigService;
 import org.apache.karaf.minho.boot.service.ServiceRegistry;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Properties;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
 
+/**
+ * Store the orchestrator state in a {@link LogStructuredStore} next to the configured file, importing the
+ * properties file of previous versions on first start.
+ */
 @Slf4j
 public class FileOrchestratorStorage implements OrchestratorStorage {
 
     public static final String DEFAULT_FILENAME = "orchestrator.properties";
 
-    private Properties properties = new Properties();
-    private File file = new File(DEFAULT_FILENAME);
+    private static final String SEPARATOR = "__";
+
+    private final FileStateStore store;
+    /**
+     * The managed service ids, stored as id=id among the plugin keys.
+     */
+    private final Set<String> services = ConcurrentHashMap.newKeySet();
+    /**
+     * All the stored keys, sorted so the keys of a managed service are listed by prefix.
+     */
+    private final NavigableSet<String> keys = new ConcurrentSkipListSet<>();
 
     public FileOrchestratorStorage(ServiceRegistry serviceRegistry) throws IOException {
         ConfigService configService = serviceRegistry.get(ConfigService.class);
-        file = new File(configService.getProperty("orchestrator.store.filename", DEFAULT_FILENAME));
-        if (file.exists()) {
-            try (var stream = new FileInputStream(file)) {
-                properties.load(stream);
+        File file = new File(configService.getProperty("orchestrator.store.filename", DEFAULT_FILENAME));
+        FileStateStore.Durability durability = FileStateStore.Durability.valueOf(configService.getProperty("orchestrator.store.durability", "group").toUpperCase());
+        long interval = Long.parseLong(configService.getProperty("orchestrator.store.flush-interval", "1000"));
+        log.info("Persisting orchestrator state to {} ({} durability)", file, durability.name().toLowerCase());
+        store = new FileStateStore(LogStructuredStore.open(file), durability, interval);
+        // the only scan of the keys, the index is then maintained by the writes
+        store.entries().forEach(entry -> {
+            keys.add(entry.getKey());
+            if (entry.getKey().equals(entry.getValue())) {
+                services.add(entry.getKey());
             }
-        }
+        });
     }
 
     @Override
-    public synchronized void store(String sid) {
-        properties.put(sid, sid);
-        save();
+    public void store(String sid) {
+        keys.add(sid);
+        services.add(sid);
+        store.put(sid, sid);
     }
 
     @Override
     public void store(String sid, String pluginName, String key, String value) {
-        String propertyKey = sid + "__" + pluginName + "__" + key;
-        properties.put(propertyKey, value);
-        save();
+        String propertyKey = sid + SEPARATOR + pluginName + SEPARATOR + key;
+        keys.add(propertyKey);
+        store.put(propertyKey, value);
     }
 
     @Override
     public String getKey(String sid, String pluginName, String key) {
-        String propertyKey = sid + "__" + pluginName + "__" + key;
-        return properties.getProperty(propertyKey, "");
+        String value = store.get(sid + SEPARATOR + pluginName + SEPARATOR + key);
+        return value == null ? "" : value;
     }
 
     @Override
-    public boolean exists(String sid) {
-        return properties.containsKey(sid);
+    public void storeAll(String sid, String pluginName, Map<String, String> values) {
+        Map<String, String> changes = new HashMap<>();
+        values.forEach((key, value) -> {
+            if (value == null) {
+                throw new IllegalArgumentException("Can't store a null value for " + key);
+            }
+            changes.put(sid + SEPARATOR + pluginName + SEPARATOR + key, value);
+        });
+        keys.addAll(changes.keySet());
+        // a single flush for all the keys
+        store.write(changes);
     }
 
     @Override
-    public Set<String> services() {
-        return properties.stringPropertyNames();
+    public VersionedValue getWithVersion(String sid, String pluginName, String key) {
+        return store.getWithVersion(sid + SEPARATOR + pluginName + SEPARATOR + key);
+    }
+
+    @Override
+    public boolean compareAndSet(String sid, String pluginName, String key, String expectedVersion, String value) {
+        String propertyKey = sid + SEPARATOR + pluginName + SEPARATOR + key;
+        if (!store.compareAndPut(propertyKey, expectedVersion, value)) {
+            return false;
+        }
+        keys.add(propertyKey);
+        return true;
     }
 
     @Override
-    public synchronized void remove(String sid) {
-        properties.remove(sid);
-        save();
+    public Map<String, String> getAll(String sid, String pluginName, Collection<String> keys) {
+        Map<String, String> values = new HashMap<>();
+        for (String key : keys) {
+            values.put(key, getKey(sid, pluginName, key));
+        }
+        return values;
     }
 
-    private void save() {
-        try (var stream = new FileOutputStream(file)) {
-            properties.store(stream, null);
-        } catch (IOException ex) {
-            log.warn("Can't save orchestrator state", ex);
+    @Override
+    public void removeAll(String sid, String pluginName, Collection<String> keys) {
+        Map<String, String> changes = new HashMap<>();
+        for (String key : keys) {
+            String propertyKey = sid + SEPARATOR + pluginName + SEPARATOR + key;
+            if (store.contains(propertyKey)) {
+                changes.put(propertyKey, null);
+            }
         }
+        this.keys.removeAll(changes.keySet());
+        store.write(changes);
+    }
+
+    @Override
+    public Set<String> listKeys(String sid, String pluginName) {
+        String prefix = sid + SEPARATOR + pluginName + SEPARATOR;
+        return keys.subSet(prefix, prefix + Character.MAX_VALUE).stream()
+                .map(key -> key.substring(prefix.length()))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Remove the managed service and its keys in a single flush.
+     */
+    @Override
+    public void removeService(String sid) {
+        Set<String> removed = new HashSet<>(keys.subSet(sid + SEPARATOR, sid + SEPARATOR + Character.MAX_VALUE));
+        removed.add(sid);
+        Map<String, String> changes = new HashMap<>();
+        for (String key : removed) {
+            if (store.contains(key)) {
+                changes.put(key, null);
+            }
+        }
+        services.remove(sid);
+        keys.removeAll(removed);
+        store.write(changes);
+    }
+
+    @Override
+    public boolean exists(String sid) {
+        return store.contains(sid);
+    }
+
+    @Override
+    public Set<String> services() {
+        return Set.copyOf(services);
+    }
+
+    @Override
+    public void remove(String sid) {
+        services.remove(sid);
+        keys.remove(sid);
+        store.remove(sid);
     }
 
 }
@@ -0,0 +1,321 @@
+package org.eclipse.osc.orchestrator;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The orchestrator state of the file storages: a concurrent map read and written without locks, so writes on
+ * different keys never contend, persisted to a {@link LogStructuredStore} by a background flusher. The durability
+ * mode sets when a write returns:
+ * <ul>
+ *     <li>{@link Durability#SYNC}: once the write alone is on disk,</li>
+ *     <li>{@link Durability#GROUP}: once on disk, in a single write and fsync with the writes queued meanwhile,</li>
+ *     <li>{@link Durability#PERIODIC}: right away, the flusher persisting the writes of each period together.</li>
+ * </ul>
+ * Each value has an in-memory version, changed with the value, for the compare and set updates.
+ * <p>
+ * A write is queued once applied in memory, as a single group of keys. The flusher persists the latest value of each
+ * queued key, so a key never goes back to an older value on disk, whatever the order the groups are queued in.
+ * <p>
+ * A write failing to be persisted is retried every flush period, its writer waiting meanwhile in sync and group
+ * modes, as the write is already visible.
+ */
+@Slf4j
+public class FileStateStore implements AutoCloseable {
+
+    public enum Durability {
+        SYNC,
+        GROUP,
+        PERIODIC
+    }
+
+    private final LogStructuredStore store;
+    private final Durability durability;
+    private final long intervalNanos;
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+    /**
+     * The version of each value, only changed while holding its key in the values.
+     */
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    // seeded with the clock so versions keep increasing across restarts
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+    private final Queue<Group> groups = new ConcurrentLinkedQueue<>();
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    /**
+     * @param store the store persisting the state, loaded in memory.
+     * @param durability when a write returns.
+     * @param intervalMillis the flush period, in periodic mode.
+     */
+    public FileStateStore(LogStructuredStore store, Durability durability, long intervalMillis) {
+        this.store = store;
+        this.durability = durability;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        for (String key : store.keys()) {
+            String value = store.get(key);
+            if (value != null) {
+                values.put(key, value);
+                versions.put(key, clock.incrementAndGet());
+            }
+        }
+        this.flusher = new OrchestratorThreadFactory("osc-orchestrator-flusher").newThread(this::flush);
+        this.flusher.start();
+    }
+
+    /**
+     * @param key the key.
+     * @return the value, null if none.
+     */
+    public String get(String key) {
+        return values.get(key);
+    }
+
+    /**
+     * @param key the key.
+     * @return true if the key has a value.
+     */
+    public boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    /**
+     * @param key the key.
+     * @return the value and its version, read together, an empty value with a null version if none.
+     */
+    public VersionedValue getWithVersion(String key) {
+        VersionedValue[] versioned = {new VersionedValue("", null)};
+        // holding the key, so the value and the version are from the same write
+        values.computeIfPresent(key, (k, value) -> {
+            versioned[0] = new VersionedValue(value, String.valueOf(versions.get(k)));
+            return value;
+        });
+        return versioned[0];
+    }
+
+    /**
+     * Store a value only if its version is the expected one.
+     *
+     * @param key the key.
+     * @param expectedVersion the expected version, null if the key is expected to have no value.
+     * @param value the value.
+     * @return true if the value has been stored, false if the version is not the expected one.
+     * @throws IllegalStateException if the store is closed before the value is persisted, in sync and group modes.
+     */
+    public boolean compareAndPut(String key, String expectedVersion, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Can't store a null value for " + key);
+        }
+        if (closed) {
+            throw new IllegalStateException("State store is closed");
+        }
+        boolean[] swapped = {false};
+        values.compute(key, (k, previous) -> {
+            Long version = previous == null ? null : versions.get(k);
+            if (!Objects.equals(version == null ? null : String.valueOf(version), expectedVersion)) {
+                return previous;
+            }
+            versions.put(k, clock.incrementAndGet());
+            swapped[0] = true;
+            return value;
+        });
+        if (swapped[0]) {
+            queue(Collections.singletonList(key));
+        }
+        return swapped[0];
+    }
+
+    /**
+     * @return a live view of the keys and values.
+     */
+    public Set<Map.Entry<String, String>> entries() {
+        return values.entrySet();
+    }
+
+    /**
+     * Store a value.
+     *
+     * @param key the key.
+     * @param value the value.
+     * @throws IllegalStateException if the store is closed before the value is persisted, in sync and group modes.
+     */
+    public void put(String key, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Can't store a null value for " + key);
+        }
+        write(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Remove a value.
+     *
+     * @param key the key.
+     * @throws IllegalStateException if the store is closed before the removal is persisted, in sync and group modes.
+     */
+    public void remove(String key) {
+        if (!values.containsKey(key)) {
+            return;
+        }
+        write(Collections.singletonMap(key, null));
+    }
+
+    /**
+     * Apply several changes, persisted together in a single write and fsync.
+     *
+     * @param changes the new values by key, a null value removing the key.
+     * @throws IllegalStateException if the store is closed before the changes are persisted, in sync and group modes.
+     */
+    public void write(Map<String, String> changes) {
+        if (closed) {
+            throw new IllegalStateException("State store is closed");
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        changes.forEach((key, value) ->
+                this.values.compute(key, (k, previous) -> {
+                    if (value == null) {
+                        versions.remove(k);
+                    } else {
+                        versions.put(k, clock.incrementAndGet());
+                    }
+                    return value;
+                }));
+        queue(new ArrayList<>(changes.keySet()));
+    }
+
+    /**
+     * Queue the keys of a write applied in memory, in a single step, and wait for them to be persisted.
+     */
+    private void queue(List<String> keys) {
+        Group group = new Group(keys, durability == Durability.PERIODIC ? null : new CompletableFuture<>());
+        groups.add(group);
+        if (closed) {
+            // closed meanwhile, the flusher may have stopped before taking the group
+            abandon();
+        }
+        await(group);
+    }
+
+    private void await(Group group) {
+        if (group.persisted == null) {
+            return;
+        }
+        LockSupport.unpark(flusher);
+        try {
+            group.persisted.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while persisting state", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Can't persist state", e.getCause());
+        }
+    }
+
+    /**
+     * Persist the pending writes and stop the flusher.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(flusher);
+        abandon();
+        store.close();
+    }
+
+    /**
+     * Wait for the flusher to stop, and fail the groups it didn't take, so their writers don't wait forever.
+     */
+    private void abandon() {
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Group group;
+        while ((group = groups.poll()) != null) {
+            group.fail(new IllegalStateException("State store is closed"));
+        }
+    }
+
+    private void flush() {
+        Map<String, String> batch = new LinkedHashMap<>();
+        Set<Group> taken = new LinkedHashSet<>();
+        while (true) {
+            boolean last = closed;
+            if (durability == Durability.PERIODIC && !last) {
+                LockSupport.parkNanos(this, intervalNanos);
+            }
+            Group group;
+            while ((durability != Durability.SYNC || taken.isEmpty()) && (group = groups.poll()) != null) {
+                taken.add(group);
+                // the latest value, a later write on the key being queued after it's applied
+                group.keys.forEach(key -> batch.put(key, values.get(key)));
+            }
+            if (batch.isEmpty()) {
+                if (last) {
+                    return;
+                }
+                if (durability != Durability.PERIODIC) {
+                    LockSupport.park(this);
+                }
+                continue;
+            }
+            try {
+                store.write(batch);
+                batch.clear();
+                taken.forEach(Group::complete);
+                taken.clear();
+            } catch (RuntimeException e) {
+                if (last) {
+                    log.error("Can't persist {} state changes, lost on close", batch.size(), e);
+                    taken.forEach(failed -> failed.fail(e));
+                    return;
+                }
+                // the changes are applied in memory already, so the writers wait until a retry persists them
+                log.error("Can't persist {} state changes, retrying", batch.size(), e);
+                LockSupport.parkNanos(this, intervalNanos);
+            }
+        }
+    }
+
+    private static class Group {
+
+        private final List<String> keys;
+        private final CompletableFuture<Void> persisted;
+
+        Group(List<String> keys, CompletableFuture<Void> persisted) {
+            this.keys = keys;
+            this.persisted = persisted;
+        }
+
+        void complete() {
+            if (persisted != null) {
+                persisted.complete(null);
+            }
+        }
+
+        void fail(Exception e) {
+            if (persisted != null) {
+                persisted.completeExceptionally(e);
+            }
+        }
+    }
+
+}
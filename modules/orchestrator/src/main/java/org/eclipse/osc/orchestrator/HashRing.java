@@ -0,0 +1,72 @@
+package org.eclipse.osc.orchestrator;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Consistent hash ring: each node is placed at several points of the ring, and a key belongs to the first node
+ * after its own hash. Adding or removing a node only moves the keys of the ring segments it takes or leaves.
+ */
+public class HashRing {
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final TreeSet<String> nodes;
+
+    /**
+     * @param nodes the nodes of the ring.
+     * @param virtualNodes the number of points of each node on the ring, more points spread the keys more evenly.
+     */
+    public HashRing(Collection<String> nodes, int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("At least one virtual node per node is required");
+        }
+        this.nodes = new TreeSet<>(nodes);
+        for (String node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // on a (very unlikely) collision, the node with the lowest name wins, the same on all replicas
+                ring.putIfAbsent(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * @param key the key.
+     * @return the node the key belongs to, null if the ring is empty.
+     */
+    public String get(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        SortedMap<Long, String> tail = ring.tailMap(hash(key));
+        return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    /**
+     * @return the nodes of the ring, sorted.
+     */
+    public Collection<String> getNodes() {
+        return nodes;
+    }
+
+    static long hash(String value) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+        byte[] bytes = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+        long hash = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash = (hash << 8) | (bytes[i] & 0xff);
+        }
+        return hash;
+    }
+
+}
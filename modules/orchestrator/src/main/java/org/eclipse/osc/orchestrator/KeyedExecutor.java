@@ -0,0 +1,189 @@
+package org.eclipse.osc.orchestrator;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Run tasks on a shared executor, strictly one after the other for a given key, while tasks for
+ * different keys run in parallel. The queue of a key is dropped as soon as it's empty, so the
+ * memory used only depends on the number of keys with pending work. A key waiting for the executor is
+ * scheduled with the attributes of its next task, when it's {@link OperationScheduler.Schedulable}.
+ */
+@Slf4j
+public class KeyedExecutor {
+
+    private final Executor executor;
+    private final Map<String, SerialQueue> queues = new ConcurrentHashMap<>();
+
+    public KeyedExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Queue a task after all tasks already queued for the same key.
+     *
+     * @param key the serialization key, typically a managed service name.
+     * @param task the task to run.
+     * @throws RejectedExecutionException if the underlying executor rejects the task.
+     */
+    public void execute(String key, Runnable task) {
+        SerialQueue[] scheduled = new SerialQueue[1];
+        queues.compute(key, (k, queue) -> {
+            if (queue == null) {
+                queue = new SerialQueue(k);
+            }
+            queue.tasks.add(task);
+            if (!queue.running) {
+                queue.running = true;
+                scheduled[0] = queue;
+            }
+            return queue;
+        });
+        if (scheduled[0] != null) {
+            try {
+                executor.execute(scheduled[0]);
+            } catch (RejectedExecutionException e) {
+                SerialQueue queue = queues.computeIfPresent(key, (k, current) -> {
+                    current.tasks.remove(task);
+                    if (current.tasks.isEmpty()) {
+                        current.running = false;
+                        return null;
+                    }
+                    return current;
+                });
+                if (queue != null) {
+                    // the tasks queued meanwhile rely on this queue being scheduled, so they run here
+                    queue.run();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return the number of keys with queued or running tasks.
+     */
+    public int size() {
+        return queues.size();
+    }
+
+    /**
+     * @param key the serialization key.
+     * @return the number of tasks queued or running for the key.
+     */
+    public int size(String key) {
+        SerialQueue queue = queues.get(key);
+        return queue == null ? 0 : queue.tasks.size();
+    }
+
+    private class SerialQueue implements Runnable, OperationScheduler.Schedulable {
+
+        private final String key;
+        private final Deque<Runnable> tasks = new ConcurrentLinkedDeque<>();
+        private boolean running;
+
+        SerialQueue(String key) {
+            this.key = key;
+        }
+
+        private OperationScheduler.Schedulable next() {
+            Runnable task = tasks.peek();
+            return task instanceof OperationScheduler.Schedulable ? (OperationScheduler.Schedulable) task : null;
+        }
+
+        @Override
+        public int getPriority() {
+            OperationScheduler.Schedulable next = next();
+            return next == null ? Operation.Type.START.getPriority() : next.getPriority();
+        }
+
+        @Override
+        public String getNamespace() {
+            OperationScheduler.Schedulable next = next();
+            return next == null ? null : next.getNamespace();
+        }
+
+        @Override
+        public long getSubmitted() {
+            OperationScheduler.Schedulable next = next();
+            return next == null ? 0 : next.getSubmitted();
+        }
+
+        @Override
+        public boolean isBuild() {
+            OperationScheduler.Schedulable next = next();
+            return next != null && next.isBuild();
+        }
+
+        @Override
+        public void buildSlotAcquired() {
+            // the next task is the one run once handed out
+            OperationScheduler.Schedulable next = next();
+            if (next != null) {
+                next.buildSlotAcquired();
+            }
+        }
+
+        @Override
+        public void run() {
+            Error error = null;
+            boolean more = true;
+            while (more) {
+                try {
+                    tasks.peek().run();
+                } catch (RuntimeException e) {
+                    log.warn("Task on {} failed", key, e);
+                } catch (Error e) {
+                    // rethrown once the next tasks of the key are handed over, so they don't stall
+                    log.warn("Task on {} failed", key, e);
+                    if (error == null) {
+                        error = e;
+                    } else {
+                        error.addSuppressed(e);
+                    }
+                }
+                more = dequeue() && !resubmit();
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        /**
+         * Remove the task just run, only once done, so the queue is not reclaimed while a task is running.
+         *
+         * @return true if more tasks are queued.
+         */
+        private boolean dequeue() {
+            return queues.compute(key, (k, queue) -> {
+                queue.tasks.poll();
+                if (queue.tasks.isEmpty()) {
+                    queue.running = false;
+                    return null;
+                }
+                return queue;
+            }) != null;
+        }
+
+        /**
+         * Go back to the end of the executor queue, giving other keys a chance to run.
+         *
+         * @return false if the executor rejected the queue, so the next task must run on this thread.
+         */
+        private boolean resubmit() {
+            try {
+                executor.execute(this);
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+    }
+
+}
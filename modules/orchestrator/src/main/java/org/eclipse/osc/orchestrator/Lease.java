@@ -0,0 +1,135 @@
+package org.eclipse.osc.orchestrator;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+
+import java.io.IOException;
+
+/**
+ * A lease on a named resource, held by one owner until it expires, is released, or is taken over once expired.
+ * Each new holder gets a greater fencing token, so a write made by a holder which lost its lease (paused, partitioned)
+ * can be told apart from a write of the current holder.
+ */
+@Data
+public class Lease {
+
+    /**
+     * Storage keys of the leases, for the backends storing them as plugin keys. This id is never stored itself, so
+     * it's not listed as a managed service.
+     */
+    public static final String LEASE_SID = "osc-lease";
+    public static final String LEASE_STORAGE = "osc-orchestrator-lease";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private String name;
+    private String owner;
+    private long token;
+    /**
+     * Expiry time, in milliseconds since epoch, 0 once released.
+     */
+    private long expiry;
+
+    public boolean isExpired(long now) {
+        return expiry <= now;
+    }
+
+    /**
+     * Compute the lease to store to acquire (or re-acquire) a lease.
+     *
+     * @param current the stored lease, null if none.
+     * @param name the lease name.
+     * @param owner the owner acquiring the lease.
+     * @param ttlMillis the lease duration.
+     * @return the lease to store, or null if the lease is held by another owner.
+     */
+    public static Lease acquire(Lease current, String name, String owner, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        boolean held = current != null && !current.isExpired(now);
+        if (held && !current.getOwner().equals(owner)) {
+            return null;
+        }
+        Lease lease = new Lease();
+        lease.setName(name);
+        lease.setOwner(owner);
+        // the token only changes with the holder, re-acquiring a held lease keeps it
+        lease.setToken(current == null ? 1 : held ? current.getToken() : current.getToken() + 1);
+        lease.setExpiry(now + ttlMillis);
+        return lease;
+    }
+
+    /**
+     * Compute the lease to store to extend a lease.
+     *
+     * @param current the stored lease, null if none.
+     * @param lease the lease to extend.
+     * @param ttlMillis the new lease duration, from now.
+     * @return the lease to store, or null if the lease has been taken over.
+     */
+    public static Lease renew(Lease current, Lease lease, long ttlMillis) {
+        // no stored lease (storage not keeping plugin keys), nobody else could acquire it meanwhile either
+        if (current != null && !isSameHolder(current, lease)) {
+            return null;
+        }
+        Lease renewed = copy(lease);
+        renewed.setExpiry(System.currentTimeMillis() + ttlMillis);
+        return renewed;
+    }
+
+    /**
+     * Compute the lease to store to release a lease.
+     *
+     * @param current the stored lease, null if none.
+     * @param lease the lease to release.
+     * @return the lease to store, or null if the lease has been taken over.
+     */
+    public static Lease release(Lease current, Lease lease) {
+        if (current == null || !isSameHolder(current, lease)) {
+            return null;
+        }
+        Lease released = copy(lease);
+        released.setExpiry(0);
+        return released;
+    }
+
+    /**
+     * @param value a lease as stored, can be null or empty.
+     * @return the lease, null if none.
+     */
+    public static Lease parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return MAPPER.readValue(value, Lease.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid lease " + value, e);
+        }
+    }
+
+    /**
+     * @return the lease as stored.
+     */
+    public String format() {
+        try {
+            return MAPPER.writeValueAsString(this);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't write lease " + name, e);
+        }
+    }
+
+    private static boolean isSameHolder(Lease current, Lease lease) {
+        return current.getToken() == lease.getToken() && current.getOwner().equals(lease.getOwner());
+    }
+
+    private static Lease copy(Lease lease) {
+        Lease copy = new Lease();
+        copy.setName(lease.getName());
+        copy.setOwner(lease.getOwner());
+        copy.setToken(lease.getToken());
+        copy.setExpiry(lease.getExpiry());
+        return copy;
+    }
+
+}
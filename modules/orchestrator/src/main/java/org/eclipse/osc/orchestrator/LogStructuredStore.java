@@ -0,0 +1,604 @@
+package org.eclipse.osc.orchestrator;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * A key-value store appending each write as a record to a segment file, so a write costs the size of the record,
+ * whatever the size of the store. Only the offsets of the values are kept in memory, values are read from the
+ * segments on demand.
+ * <p>
+ * Writers wait for their records to be on disk, with a single fsync covering the records of all writers waiting
+ * at the same time (group commit). Once overwritten and removed records take more space than live ones, the
+ * segments are compacted in the background: the active segment is sealed, writes go on in a new segment, and the
+ * live records of the sealed segments are copied to a compacted segment replacing them.
+ * <p>
+ * Record layout: size (int, bytes after this field), CRC32 of the bytes after the checksum (int), type (byte),
+ * key length (int), value length (int), key, value.
+ */
+@Slf4j
+public class LogStructuredStore implements AutoCloseable {
+
+    /**
+     * Garbage size compacted by default, in bytes.
+     */
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 4 * 1024 * 1024;
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int HEADER = 4 + 4 + 1 + 4 + 4;
+    private static final String SUFFIX = ".log";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final String prefix;
+    private final Pattern segmentPattern;
+    private final long compactionThreshold;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition syncDone = syncLock.newCondition();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(new OrchestratorThreadFactory("osc-orchestrator-compaction"));
+    private final boolean created;
+
+    private Segment active;
+    private long nextId = 1;
+    private long total;
+    private long live;
+    private volatile long written;
+    private long synced;
+    private boolean syncing;
+
+    /**
+     * Open a store, recovering the segments already in the directory.
+     *
+     * @param directory the directory of the segments.
+     * @param prefix the segments file name prefix.
+     * @param compactionThreshold the garbage size (bytes of overwritten and removed records) triggering a compaction.
+     * @throws IllegalStateException if the segments can't be read.
+     */
+    public LogStructuredStore(File directory, String prefix, long compactionThreshold) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.segmentPattern = Pattern.compile(Pattern.quote(prefix) + "-(\\d+)" + Pattern.quote(SUFFIX));
+        this.compactionThreshold = compactionThreshold;
+        try {
+            Files.createDirectories(directory.toPath());
+            this.created = recover();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't open store " + new File(directory, prefix), e);
+        }
+    }
+
+    /**
+     * Open the store replacing a properties file, next to it, importing the properties on first start.
+     *
+     * @param file the properties file.
+     * @return the store.
+     */
+    public static LogStructuredStore open(File file) {
+        File directory = file.getAbsoluteFile().getParentFile();
+        String prefix = file.getName().endsWith(".properties") ? file.getName().substring(0, file.getName().length() - ".properties".length()) : file.getName();
+        LogStructuredStore store = new LogStructuredStore(directory, prefix, DEFAULT_COMPACTION_THRESHOLD);
+        if (store.created && file.exists()) {
+            Properties properties = new Properties();
+            try (var stream = new FileInputStream(file)) {
+                properties.load(stream);
+            } catch (IOException e) {
+                store.close();
+                throw new IllegalStateException("Read file failed " + file, e);
+            }
+            Map<String, String> values = new HashMap<>();
+            properties.stringPropertyNames().forEach(name -> values.put(name, properties.getProperty(name)));
+            store.putAll(values);
+            log.info("Imported {} entries of {} into {}", values.size(), file, new File(directory, prefix + "-*" + SUFFIX));
+        }
+        return store;
+    }
+
+    /**
+     * @param key the key.
+     * @return the value, null if none.
+     */
+    public String get(String key) {
+        lock.readLock().lock();
+        try {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            ByteBuffer value = ByteBuffer.allocate(location.valueLength);
+            readFully(segments.get(location.segment).channel, value, location.offset + HEADER + location.keyLength);
+            return new String(value.array(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't read " + key, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param key the key.
+     * @return true if the key has a value.
+     */
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * @return a snapshot of the keys with a value.
+     */
+    public Set<String> keys() {
+        return new HashSet<>(index.keySet());
+    }
+
+    /**
+     * Store a value, durable once returned.
+     *
+     * @param key the key.
+     * @param value the value.
+     */
+    public void put(String key, String value) {
+        Objects.requireNonNull(value, "value");
+        sync(append(List.of(encode(PUT, key, value))));
+    }
+
+    /**
+     * Store values in a single write and a single fsync.
+     *
+     * @param values the values by key.
+     */
+    public void putAll(Map<String, String> values) {
+        values.values().forEach(value -> Objects.requireNonNull(value, "value"));
+        write(values);
+    }
+
+    /**
+     * Apply changes in a single write and a single fsync.
+     *
+     * @param changes the new values by key, a null value removing the key.
+     */
+    public void write(Map<String, String> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<Record> records = new ArrayList<>(changes.size());
+        changes.forEach((key, value) -> records.add(value == null ? encode(DELETE, key, "") : encode(PUT, key, value)));
+        sync(append(records));
+    }
+
+    /**
+     * Remove a value, durable once returned.
+     *
+     * @param key the key.
+     */
+    public void remove(String key) {
+        if (!index.containsKey(key)) {
+            return;
+        }
+        sync(append(List.of(encode(DELETE, key, ""))));
+    }
+
+    /**
+     * @return the size of the segments, in bytes.
+     */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdownNow();
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                try {
+                    segment.channel.close();
+                } catch (IOException e) {
+                    log.warn("Can't close segment {}", segment.path, e);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long append(List<Record> records) {
+        int length = records.stream().mapToInt(record -> record.buffer.remaining()).sum();
+        ByteBuffer buffer = records.size() == 1 ? records.get(0).buffer : ByteBuffer.allocate(length);
+        if (records.size() > 1) {
+            records.forEach(record -> buffer.put(record.buffer.duplicate()));
+            buffer.flip();
+        }
+        boolean compact = false;
+        lock.writeLock().lock();
+        try {
+            long position = active.size;
+            try {
+                while (buffer.hasRemaining()) {
+                    active.channel.write(buffer, position + buffer.position());
+                }
+            } catch (IOException e) {
+                // the partial record is truncated by the recovery, or overwritten by the next write
+                throw new IllegalStateException("Can't write to " + active.path, e);
+            }
+            active.size += length;
+            total += length;
+            written += length;
+            for (Record record : records) {
+                apply(record.type, record.key, new Location(active.id, position, record.keyLength, record.valueLength));
+                position += HEADER + record.keyLength + record.valueLength;
+            }
+            compact = total - live > compactionThreshold && total - live > live;
+            return written;
+        } finally {
+            lock.writeLock().unlock();
+            if (compact && compacting.compareAndSet(false, true)) {
+                compactor.execute(this::compactQuietly);
+            }
+        }
+    }
+
+    private void apply(byte type, String key, Location location) {
+        Location previous = type == PUT ? index.put(key, location) : index.remove(key);
+        if (previous != null) {
+            live -= previous.size();
+        }
+        if (type == PUT) {
+            live += location.size();
+        }
+    }
+
+    /**
+     * Wait for the store to be on disk up to a position, syncing on behalf of all waiting writers if no sync is
+     * running, or waiting for the running sync otherwise.
+     */
+    private void sync(long position) {
+        syncLock.lock();
+        try {
+            while (synced < position) {
+                if (syncing) {
+                    syncDone.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                syncLock.unlock();
+                long target;
+                FileChannel channel;
+                lock.readLock().lock();
+                try {
+                    target = written;
+                    channel = active.channel;
+                } finally {
+                    lock.readLock().unlock();
+                }
+                try {
+                    // the sealed segments are synced when sealed
+                    channel.force(false);
+                } catch (ClosedChannelException e) {
+                    if (isActive(channel)) {
+                        throw new IllegalStateException("Store " + new File(directory, prefix) + " is closed", e);
+                    }
+                    // sealed and compacted meanwhile
+                } catch (IOException e) {
+                    throw new IllegalStateException("Can't sync store " + new File(directory, prefix), e);
+                } finally {
+                    syncLock.lock();
+                    syncing = false;
+                    syncDone.signalAll();
+                }
+                synced = Math.max(synced, target);
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private boolean isActive(FileChannel channel) {
+        lock.readLock().lock();
+        try {
+            return active.channel == channel;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.warn("Can't compact store {}", new File(directory, prefix), e);
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * Copy the live records of all segments but a new active one to a compacted segment, then drop them.
+     */
+    void compact() {
+        List<Segment> sealed;
+        long compactedId;
+        lock.writeLock().lock();
+        try {
+            active.channel.force(false);
+            sealed = new ArrayList<>(segments.values());
+            // replayed after the sealed segments and before the writes going on meanwhile
+            compactedId = nextId++;
+            active = createSegment(nextId++);
+            segments.put(active.id, active);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't seal segment " + active.path, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, Segment> sources = new HashMap<>();
+        sealed.forEach(segment -> sources.put(segment.id, segment));
+        Path path = segmentPath(compactedId);
+        Path temp = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+        Map<String, Location[]> moved = new HashMap<>();
+        long size = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                Location location = entry.getValue();
+                Segment source = sources.get(location.segment);
+                if (source == null) {
+                    continue;
+                }
+                // sealed segments are only closed by the compaction
+                ByteBuffer record = ByteBuffer.allocate(location.size());
+                readFully(source.channel, record, location.offset);
+                record.flip();
+                long position = size;
+                while (record.hasRemaining()) {
+                    channel.write(record, position + record.position());
+                }
+                size += location.size();
+                moved.put(entry.getKey(), new Location[] {location, new Location(compactedId, position, location.keyLength, location.valueLength)});
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new IllegalStateException("Can't write compacted segment " + temp, e);
+        }
+
+        Segment compacted;
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+            compacted = new Segment(compactedId, path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            compacted.size = size;
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new IllegalStateException("Can't install compacted segment " + path, e);
+        }
+
+        long before;
+        lock.writeLock().lock();
+        try {
+            before = total;
+            segments.put(compacted.id, compacted);
+            total += size;
+            // records written meanwhile win over their compacted copy
+            moved.forEach((key, locations) -> index.replace(key, locations[0], locations[1]));
+            for (Segment segment : sealed) {
+                segments.remove(segment.id);
+                total -= segment.size;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (Segment segment : sealed) {
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("Can't delete compacted segment {}", segment.path, e);
+            }
+        }
+        log.info("Compacted store {} from {} to {} bytes", new File(directory, prefix), before, size());
+    }
+
+    /**
+     * Load the index from the segments, truncating a record partially written by a crash.
+     *
+     * @return true if there was no segment.
+     */
+    private boolean recover() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        File[] files = directory.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            Matcher matcher = segmentPattern.matcher(file.getName());
+            if (matcher.matches()) {
+                ids.add(Long.parseLong(matcher.group(1)));
+            } else if (file.getName().startsWith(prefix + "-") && file.getName().endsWith(SUFFIX + TEMP_SUFFIX)) {
+                // compaction interrupted, the segments it was compacting are still there
+                deleteQuietly(file.toPath());
+            }
+        }
+        ids.sort(Long::compare);
+        for (long id : ids) {
+            Path path = segmentPath(id);
+            Segment segment = new Segment(id, path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            segments.put(id, segment);
+            segment.size = scan(segment);
+            if (segment.size < segment.channel.size()) {
+                log.warn("Truncating segment {} at {}, {} bytes not fully written", path, segment.size, segment.channel.size() - segment.size);
+                segment.channel.truncate(segment.size);
+            }
+            total += segment.size;
+            nextId = id + 1;
+        }
+        if (segments.isEmpty()) {
+            active = createSegment(nextId++);
+            segments.put(active.id, active);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        written = total;
+        synced = total;
+        log.info("Opened store {} with {} keys in {} segments ({} bytes)", new File(directory, prefix), index.size(), segments.size(), total);
+        return ids.isEmpty();
+    }
+
+    /**
+     * @return the size of the valid records of the segment.
+     */
+    private long scan(Segment segment) throws IOException {
+        long fileSize = segment.channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        while (position + HEADER <= fileSize) {
+            header.clear();
+            readFully(segment.channel, header, position);
+            header.flip();
+            int size = header.getInt();
+            int checksum = header.getInt();
+            byte type = header.get();
+            int keyLength = header.getInt();
+            int valueLength = header.getInt();
+            if (keyLength < 0 || valueLength < 0 || size != HEADER - 4 + keyLength + valueLength || position + 4 + size > fileSize) {
+                return position;
+            }
+            ByteBuffer body = ByteBuffer.allocate(size - 4);
+            readFully(segment.channel, body, position + 8);
+            CRC32 crc = new CRC32();
+            crc.update(body.array());
+            if ((int) crc.getValue() != checksum || (type != PUT && type != DELETE)) {
+                return position;
+            }
+            String key = new String(body.array(), 9, keyLength, StandardCharsets.UTF_8);
+            apply(type, key, new Location(segment.id, position, keyLength, valueLength));
+            position += 4 + size;
+        }
+        return position;
+    }
+
+    private Segment createSegment(long id) throws IOException {
+        Path path = segmentPath(id);
+        return new Segment(id, path, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    private Path segmentPath(long id) {
+        return new File(directory, String.format("%s-%08d%s", prefix, id, SUFFIX)).toPath();
+    }
+
+    private static Record encode(byte type, String key, String value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + keyBytes.length + valueBytes.length);
+        buffer.putInt(HEADER - 4 + keyBytes.length + valueBytes.length);
+        buffer.putInt(0);
+        buffer.put(type).putInt(keyBytes.length).putInt(valueBytes.length).put(keyBytes).put(valueBytes);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 8, buffer.capacity() - 8);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+        return new Record(type, key, keyBytes.length, valueBytes.length, buffer);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment at " + (start + buffer.position()));
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Can't delete {}", path, e);
+        }
+    }
+
+    private static class Segment {
+
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+
+        Segment(long id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    private static class Location {
+
+        private final long segment;
+        private final long offset;
+        private final int keyLength;
+        private final int valueLength;
+
+        Location(long segment, long offset, int keyLength, int valueLength) {
+            this.segment = segment;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+        }
+
+        int size() {
+            return HEADER + keyLength + valueLength;
+        }
+    }
+
+    private static class Record {
+
+        private final byte type;
+        private final String key;
+        private final int keyLength;
+        private final int valueLength;
+        private final ByteBuffer buffer;
+
+        Record(byte type, String key, int keyLength, int valueLength, ByteBuffer buffer) {
+            this.type = type;
+            this.key = key;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+            this.buffer = buffer;
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+package org.eclipse.osc.orchestrator;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Mutual exclusion of the lifecycle operations on a managed service across the orchestrator replicas, with a
+ * lease per managed service in the shared storage. The lease is renewed in the background while the operation
+ * runs, and checked again before the operation commits its result.
+ */
+@Slf4j
+public class ManagedServiceLocks implements AutoCloseable {
+
+    private final OrchestratorStorage storage;
+    private final String owner;
+    private final long ttlMillis;
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(new OrchestratorThreadFactory("osc-orchestrator-lease"));
+
+    /**
+     * @param storage the storage shared by the replicas.
+     * @param owner the id of this replica, stable across restarts so it can take its leases back right away.
+     * @param ttlMillis the lease duration, renewed every third of it.
+     */
+    public ManagedServiceLocks(OrchestratorStorage storage, String owner, long ttlMillis) {
+        this.storage = storage;
+        this.owner = owner;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Run a task holding the lock of a managed service.
+     *
+     * @param managedServiceName the managed service name.
+     * @param task the task, given the lock to check it before committing its result.
+     * @return the task result.
+     * @throws IllegalStateException if the managed service is locked by another replica.
+     */
+    public <T> T call(String managedServiceName, Function<Lock, T> task) {
+        Lease lease = storage.acquireLease(managedServiceName, owner, ttlMillis);
+        if (lease == null) {
+            throw new IllegalStateException("Managed service " + managedServiceName + " is locked by another orchestrator replica");
+        }
+        log.debug("Locked managed service {} with fencing token {}", managedServiceName, lease.getToken());
+        Lock lock = new Lock(lease);
+        long period = Math.max(1, ttlMillis / 3);
+        ScheduledFuture<?> renewal = renewer.scheduleWithFixedDelay(lock::renew, period, period, TimeUnit.MILLISECONDS);
+        try {
+            return task.apply(lock);
+        } finally {
+            renewal.cancel(false);
+            lock.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        renewer.shutdownNow();
+    }
+
+    /**
+     * The lock of a managed service, held by a running operation.
+     */
+    public class Lock {
+
+        private Lease lease;
+        private boolean lost;
+
+        Lock(Lease lease) {
+            this.lease = lease;
+        }
+
+        /**
+         * @return the fencing token of the lease, greater than the tokens of all previous holders.
+         */
+        public synchronized long getToken() {
+            return lease.getToken();
+        }
+
+        /**
+         * Check the lock is still held, and extend it, before committing the result of the operation.
+         *
+         * @throws IllegalStateException if the lease expired and has been taken over by another replica, or if it
+         * can't be extended (the storage failing), as it may have been taken over too.
+         */
+        public synchronized void fence() {
+            if (!lost) {
+                try {
+                    extend();
+                } catch (RuntimeException e) {
+                    throw new IllegalStateException("Can't confirm the lock of managed service " + lease.getName() + " (fencing token " + lease.getToken() + ")", e);
+                }
+            }
+            if (lost) {
+                throw new IllegalStateException("Lost the lock of managed service " + lease.getName() + " (fencing token " + lease.getToken() + ")");
+            }
+        }
+
+        synchronized void renew() {
+            if (lost) {
+                return;
+            }
+            try {
+                extend();
+            } catch (RuntimeException e) {
+                // retried on the next period, the lease expires if it lasts
+                log.warn("Can't renew the lock of managed service {}", lease.getName(), e);
+            }
+        }
+
+        private void extend() {
+            Lease renewed = storage.renewLease(lease, ttlMillis);
+            if (renewed == null) {
+                log.warn("Lost the lock of managed service {}, another replica took it over", lease.getName());
+                lost = true;
+            } else {
+                lease = renewed;
+            }
+        }
+
+        synchronized void release() {
+            if (lost) {
+                return;
+            }
+            try {
+                storage.releaseLease(lease);
+            } catch (RuntimeException e) {
+                log.warn("Can't release the lock of managed service {}, it will expire", lease.getName(), e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,190 @@
+package org.eclipse.osc.orchestrator;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.osc.modules.ocl.loader.Ocl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Persist the OCL descriptor of each managed service, and restore the managed services in the plugins after a
+ * restart. Restoration is lazy (a managed service is restored before its first operation) and also runs in the
+ * background, concurrently, so the orchestrator doesn't wait for all managed services to be restored to be ready.
+ */
+@Slf4j
+public class ManagedServiceRestorer {
+
+    static final String OCL_KEY = "ocl";
+
+    private static final CompletableFuture<Void> RESTORED = CompletableFuture.completedFuture(null);
+    /**
+     * Cached for the managed services without namespace, or unknown, so they're not read again on each operation.
+     */
+    private static final String NO_NAMESPACE = "";
+
+    private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final Map<String, CompletableFuture<Void>> restored = new ConcurrentHashMap<>();
+    private final Map<String, String> namespaces = new ConcurrentHashMap<>();
+    private final OrchestratorStorage storage;
+    private final String storageName;
+    private final PluginFanOut pluginFanOut;
+    private final Supplier<List<OrchestratorPlugin>> plugins;
+
+    /**
+     * @param storage the storage holding the OCL descriptors.
+     * @param storageName the name under which OCL descriptors are stored.
+     * @param pluginFanOut the fan-out used to call the plugins.
+     * @param plugins the plugins to restore the managed services into.
+     */
+    public ManagedServiceRestorer(OrchestratorStorage storage, String storageName, PluginFanOut pluginFanOut, Supplier<List<OrchestratorPlugin>> plugins) {
+        this.storage = storage;
+        this.storageName = storageName;
+        this.pluginFanOut = pluginFanOut;
+        this.plugins = plugins;
+    }
+
+    /**
+     * Persist the OCL descriptor of a managed service, registered or updated in the plugins.
+     *
+     * @param ocl the OCL descriptor.
+     */
+    public void registered(Ocl ocl) {
+        try {
+            storage.store(ocl.getName(), storageName, OCL_KEY, mapper.writeValueAsString(ocl));
+        } catch (Exception e) {
+            log.warn("Can't persist OCL descriptor of {}, it won't be restored after a restart", ocl.getName(), e);
+        }
+        restored.put(ocl.getName(), RESTORED);
+        namespaces.put(ocl.getName(), ocl.getNamespace() == null ? NO_NAMESPACE : ocl.getNamespace());
+    }
+
+    /**
+     * Forget an unregistered managed service.
+     *
+     * @param managedServiceName the managed service name.
+     */
+    public void unregistered(String managedServiceName) {
+        restored.remove(managedServiceName);
+        namespaces.remove(managedServiceName);
+    }
+
+    /**
+     * Get the namespace of a managed service, from its stored OCL descriptor.
+     *
+     * @param managedServiceName the managed service name.
+     * @return the namespace, null if the managed service is unknown or has no namespace.
+     */
+    public String getNamespace(String managedServiceName) {
+        String namespace = namespaces.computeIfAbsent(managedServiceName, name -> {
+            String value = storage.getKey(name, storageName, OCL_KEY);
+            if (value == null || value.isEmpty()) {
+                return NO_NAMESPACE;
+            }
+            try {
+                String stored = mapper.readValue(value, Ocl.class).getNamespace();
+                return stored == null ? NO_NAMESPACE : stored;
+            } catch (Exception e) {
+                throw new IllegalStateException("Invalid OCL descriptor stored for " + name, e);
+            }
+        });
+        return NO_NAMESPACE.equals(namespace) ? null : namespace;
+    }
+
+    /**
+     * Make sure a managed service is restored in the plugins, restoring it on the calling thread if needed, or
+     * waiting for the background restoration already in progress.
+     *
+     * @param managedServiceName the managed service name.
+     */
+    public void restore(String managedServiceName) {
+        CompletableFuture<Void> restoring = new CompletableFuture<>();
+        CompletableFuture<Void> existing = restored.putIfAbsent(managedServiceName, restoring);
+        if (existing != null) {
+            existing.join();
+            return;
+        }
+        try {
+            doRestore(managedServiceName);
+        } catch (RuntimeException e) {
+            log.warn("Can't restore managed service {}", managedServiceName, e);
+        } finally {
+            // restored or not, don't try again for each operation
+            restoring.complete(null);
+        }
+    }
+
+    /**
+     * Restore all managed services known by the storage in the background.
+     *
+     * @param executor the executor running the restorations, its size bounds the concurrency.
+     * @return a future completed once all managed services are restored.
+     */
+    public CompletableFuture<Void> restoreAll(Executor executor) {
+        return restoreAll(executor, managedServiceName -> true);
+    }
+
+    /**
+     * Restore some of the managed services known by the storage in the background.
+     *
+     * @param executor the executor running the restorations, its size bounds the concurrency.
+     * @param filter the managed services to restore.
+     * @return a future completed once the managed services are restored.
+     */
+    public CompletableFuture<Void> restoreAll(Executor executor, Predicate<String> filter) {
+        long start = System.currentTimeMillis();
+        AtomicInteger count = new AtomicInteger();
+        CompletableFuture<?>[] futures = storage.services().stream().filter(filter).map(managedServiceName -> {
+            try {
+                return CompletableFuture.runAsync(() -> {
+                    if (!restored.containsKey(managedServiceName)) {
+                        restore(managedServiceName);
+                        count.incrementAndGet();
+                    }
+                }, executor);
+            } catch (RejectedExecutionException e) {
+                // shutting down, the remaining managed services are restored lazily
+                return RESTORED;
+            }
+        }).toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures).whenComplete((result, error) ->
+                log.info("Restored {} managed services in {} ms", count.get(), System.currentTimeMillis() - start));
+    }
+
+    /**
+     * @return the number of managed services restored, or being restored.
+     */
+    public int size() {
+        return restored.size();
+    }
+
+    private void doRestore(String managedServiceName) {
+        if (!storage.exists(managedServiceName)) {
+            return;
+        }
+        String value = storage.getKey(managedServiceName, storageName, OCL_KEY);
+        if (value == null || value.isEmpty()) {
+            log.debug("No OCL descriptor stored for {}, nothing to restore", managedServiceName);
+            return;
+        }
+        Ocl ocl;
+        try {
+            ocl = mapper.readValue(value, Ocl.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("Invalid OCL descriptor stored for " + managedServiceName, e);
+        }
+        PluginFanOut.FanOutResult result = pluginFanOut.invoke("restoreManagedService", plugins.get(), plugin -> plugin.restoreManagedService(ocl));
+        result.getResults().stream().filter(plugin -> !plugin.isSuccess()).forEach(plugin ->
+                log.warn("Can't restore managed service {} on plugin {}", managedServiceName, plugin.getPlugin(), plugin.getCause()));
+        log.debug("Managed service {} restored", managedServiceName);
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.eclipse.osc.orchestrator;
+
+/**
+ * The lifecycle state of a managed service, as seen by the orchestrator.
+ */
+public enum ManagedServiceState {
+
+    BUILDING,
+    REGISTERED,
+    STARTING,
+    ACTIVE,
+    STOPPING,
+    STOPPED,
+    UNREGISTERING,
+    UNREGISTERED,
+    FAILED;
+
+    /**
+     * @param operation a lifecycle operation, running or completed.
+     * @return the state of the managed service implied by the operation, or null if the operation didn't run.
+     */
+    public static ManagedServiceState of(Operation operation) {
+        switch (operation.getStatus()) {
+            case RUNNING:
+                switch (operation.getType()) {
+                    case REGISTER:
+                    case UPDATE:
+                        return BUILDING;
+                    case START:
+                        return STARTING;
+                    case STOP:
+                        return STOPPING;
+                    default:
+                        return UNREGISTERING;
+                }
+            case SUCCEEDED:
+                switch (operation.getType()) {
+                    case REGISTER:
+                    case UPDATE:
+                        return REGISTERED;
+                    case START:
+                        return ACTIVE;
+                    case STOP:
+                        return STOPPED;
+                    default:
+                        return UNREGISTERED;
+                }
+            case FAILED:
+                // an operation failing before running (rejected, interrupted while queued) didn't touch the service
+                return operation.getStarted() == 0 ? null : FAILED;
+            default:
+                return null;
+        }
+    }
+
+}
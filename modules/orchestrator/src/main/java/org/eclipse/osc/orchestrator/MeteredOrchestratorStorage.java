@@ -0,0 +1,151 @@
+package org.eclipse.osc.orchestrator;
+
+import org.apache.karaf.minho.boot.spi.Service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Decorate an orchestrator storage to record the duration and outcome of each call.
+ */
+public class MeteredOrchestratorStorage implements OrchestratorStorage {
+
+    private static final MetricsRegistry.Histogram STORAGE_CALLS = MetricsRegistry.getDefault().histogram(
+            "osc_storage_call_seconds", "Duration of orchestrator storage calls.", "storage", "method", "outcome");
+
+    private final OrchestratorStorage storage;
+    private final String name;
+
+    /**
+     * @param storage the actual storage.
+     * @param name the storage name, used as metrics label.
+     */
+    public MeteredOrchestratorStorage(OrchestratorStorage storage, String name) {
+        this.storage = storage;
+        this.name = name;
+    }
+
+    /**
+     * @param storage a storage.
+     * @return the storage name, used as metrics label.
+     */
+    static String name(OrchestratorStorage storage) {
+        return storage instanceof Service ? ((Service) storage).name() : storage.getClass().getSimpleName();
+    }
+
+    /**
+     * @return the decorated storage.
+     */
+    public OrchestratorStorage getStorage() {
+        return storage;
+    }
+
+    @Override
+    public void store(String sid) {
+        timed("store", () -> {
+            storage.store(sid);
+            return null;
+        });
+    }
+
+    @Override
+    public void store(String sid, String pluginName, String key, String value) {
+        timed("storeKey", () -> {
+            storage.store(sid, pluginName, key, value);
+            return null;
+        });
+    }
+
+    @Override
+    public String getKey(String sid, String pluginName, String key) {
+        return timed("getKey", () -> storage.getKey(sid, pluginName, key));
+    }
+
+    @Override
+    public boolean exists(String sid) {
+        return timed("exists", () -> storage.exists(sid));
+    }
+
+    @Override
+    public Set<String> services() {
+        return timed("services", storage::services);
+    }
+
+    @Override
+    public void remove(String sid) {
+        timed("remove", () -> {
+            storage.remove(sid);
+            return null;
+        });
+    }
+
+    @Override
+    public void storeAll(String sid, String pluginName, Map<String, String> values) {
+        timed("storeAll", () -> {
+            storage.storeAll(sid, pluginName, values);
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, String> getAll(String sid, String pluginName, Collection<String> keys) {
+        return timed("getAll", () -> storage.getAll(sid, pluginName, keys));
+    }
+
+    @Override
+    public void removeAll(String sid, String pluginName, Collection<String> keys) {
+        timed("removeAll", () -> {
+            storage.removeAll(sid, pluginName, keys);
+            return null;
+        });
+    }
+
+    @Override
+    public Set<String> listKeys(String sid, String pluginName) {
+        return timed("listKeys", () -> storage.listKeys(sid, pluginName));
+    }
+
+    @Override
+    public void removeService(String sid) {
+        timed("removeService", () -> {
+            storage.removeService(sid);
+            return null;
+        });
+    }
+
+    @Override
+    public String getETag(String sid, String pluginName, String key) {
+        return timed("getETag", () -> storage.getETag(sid, pluginName, key));
+    }
+
+    @Override
+    public VersionedValue getWithVersion(String sid, String pluginName, String key) {
+        return timed("getWithVersion", () -> storage.getWithVersion(sid, pluginName, key));
+    }
+
+    @Override
+    public boolean compareAndSet(String sid, String pluginName, String key, String expectedVersion, String value) {
+        return timed("compareAndSet", () -> storage.compareAndSet(sid, pluginName, key, expectedVersion, value));
+    }
+
+    @Override
+    public Lease updateLease(String leaseName, UnaryOperator<Lease> update) {
+        return timed("updateLease", () -> storage.updateLease(leaseName, update));
+    }
+
+    private <T> T timed(String method, Supplier<T> call) {
+        long start = System.nanoTime();
+        String outcome = "failure";
+        try {
+            T result = call.get();
+            outcome = "success";
+            return result;
+        } finally {
+            STORAGE_CALLS.observeNanos(System.nanoTime() - start, name, method, outcome);
+        }
+    }
+
+}
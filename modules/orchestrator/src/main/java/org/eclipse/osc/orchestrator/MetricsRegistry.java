@@ -0,0 +1,218 @@
+package org.eclipse.osc.orchestrator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Minimal counters and histograms, written in the Prometheus text exposition format. Recording only touches
+ * striped adders, so it can be done on hot paths from many threads.
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    /**
+     * Buckets in seconds, from storage calls (milliseconds) to image builds (tens of minutes).
+     */
+    static final double[] DEFAULT_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300, 600, 1800};
+
+    private final Map<String, Family<?>> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * @return the registry shared by the orchestrator, the plugins and the API.
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Get or create a counter.
+     *
+     * @param name the metric name, ending with _total by convention.
+     * @param help the metric description.
+     * @param labelNames the label names, values are given when recording.
+     * @return the counter.
+     */
+    public Counter counter(String name, String help, String... labelNames) {
+        return (Counter) families.computeIfAbsent(name, key -> new Counter(name, help, labelNames));
+    }
+
+    /**
+     * Get or create a histogram with the default buckets.
+     *
+     * @param name the metric name, ending with the unit by convention (_seconds).
+     * @param help the metric description.
+     * @param labelNames the label names, values are given when recording.
+     * @return the histogram.
+     */
+    public Histogram histogram(String name, String help, String... labelNames) {
+        return (Histogram) families.computeIfAbsent(name, key -> new Histogram(name, help, DEFAULT_BUCKETS, labelNames));
+    }
+
+    /**
+     * Write all metrics in the Prometheus text format.
+     *
+     * @param writer the target writer.
+     * @throws IOException if the write fails.
+     */
+    public void write(Writer writer) throws IOException {
+        for (Family<?> family : families.values()) {
+            family.write(writer);
+        }
+        writer.flush();
+    }
+
+    private abstract static class Family<T> {
+
+        final String name;
+        final String help;
+        final String[] labelNames;
+        final Map<List<String>, T> children = new ConcurrentHashMap<>();
+        private final Function<List<String>, T> factory;
+
+        Family(String name, String help, String[] labelNames, Function<List<String>, T> factory) {
+            this.name = name;
+            this.help = help;
+            this.labelNames = labelNames;
+            this.factory = factory;
+        }
+
+        T child(String... labelValues) {
+            if (labelValues.length != labelNames.length) {
+                throw new IllegalArgumentException("Metric " + name + " expects labels " + Arrays.toString(labelNames));
+            }
+            return children.computeIfAbsent(Arrays.asList(labelValues), factory);
+        }
+
+        void header(Writer writer, String type) throws IOException {
+            writer.write("# HELP " + name + " " + help + "\n");
+            writer.write("# TYPE " + name + " " + type + "\n");
+        }
+
+        String labels(List<String> labelValues, String extraName, String extraValue) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < labelNames.length; i++) {
+                label(builder, labelNames[i], labelValues.get(i));
+            }
+            if (extraName != null) {
+                label(builder, extraName, extraValue);
+            }
+            return builder.length() == 0 ? "" : "{" + builder + "}";
+        }
+
+        private static void label(StringBuilder builder, String name, String value) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            String escaped = String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+            builder.append(name).append("=\"").append(escaped).append('"');
+        }
+
+        abstract void write(Writer writer) throws IOException;
+    }
+
+    public static class Counter extends Family<LongAdder> {
+
+        Counter(String name, String help, String[] labelNames) {
+            super(name, help, labelNames, labels -> new LongAdder());
+        }
+
+        public void inc(String... labelValues) {
+            child(labelValues).increment();
+        }
+
+        public long get(String... labelValues) {
+            LongAdder adder = children.get(Arrays.asList(labelValues));
+            return adder == null ? 0 : adder.sum();
+        }
+
+        @Override
+        void write(Writer writer) throws IOException {
+            header(writer, "counter");
+            for (Map.Entry<List<String>, LongAdder> entry : children.entrySet()) {
+                writer.write(name + labels(entry.getKey(), null, null) + " " + entry.getValue().sum() + "\n");
+            }
+        }
+    }
+
+    public static class Histogram extends Family<Histogram.Buckets> {
+
+        private final double[] bounds;
+
+        Histogram(String name, String help, double[] bounds, String[] labelNames) {
+            super(name, help, labelNames, labels -> new Buckets(bounds.length));
+            this.bounds = bounds;
+        }
+
+        /**
+         * Record a duration.
+         *
+         * @param nanos the duration in nanoseconds, recorded in seconds.
+         * @param labelValues the label values.
+         */
+        public void observeNanos(long nanos, String... labelValues) {
+            observe(nanos / (double) TimeUnit.SECONDS.toNanos(1), labelValues);
+        }
+
+        public void observe(double value, String... labelValues) {
+            Buckets buckets = child(labelValues);
+            int index = Arrays.binarySearch(bounds, value);
+            // not found: the insertion point is the first bound greater than value, which is the bucket
+            buckets.counts[index < 0 ? -index - 1 : index].increment();
+            buckets.sum.add(value);
+        }
+
+        public long count(String... labelValues) {
+            Buckets buckets = children.get(Arrays.asList(labelValues));
+            if (buckets == null) {
+                return 0;
+            }
+            long count = 0;
+            for (LongAdder adder : buckets.counts) {
+                count += adder.sum();
+            }
+            return count;
+        }
+
+        @Override
+        void write(Writer writer) throws IOException {
+            header(writer, "histogram");
+            for (Map.Entry<List<String>, Buckets> entry : children.entrySet()) {
+                Buckets buckets = entry.getValue();
+                long cumulative = 0;
+                for (int i = 0; i < bounds.length; i++) {
+                    cumulative += buckets.counts[i].sum();
+                    writer.write(name + "_bucket" + labels(entry.getKey(), "le", Double.toString(bounds[i])) + " " + cumulative + "\n");
+                }
+                cumulative += buckets.counts[bounds.length].sum();
+                writer.write(name + "_bucket" + labels(entry.getKey(), "le", "+Inf") + " " + cumulative + "\n");
+                writer.write(name + "_sum" + labels(entry.getKey(), null, null) + " " + buckets.sum.sum() + "\n");
+                writer.write(name + "_count" + labels(entry.getKey(), null, null) + " " + cumulative + "\n");
+            }
+        }
+
+        static class Buckets {
+
+            // one more than the bounds, for +Inf
+            private final LongAdder[] counts;
+            private final DoubleAdder sum = new DoubleAdder();
+
+            Buckets(int bounds) {
+                counts = new LongAdder[bounds + 1];
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = new LongAdder();
+                }
+            }
+        }
+    }
+
+}
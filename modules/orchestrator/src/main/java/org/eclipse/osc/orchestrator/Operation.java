@@ -0,0 +1,131 @@
+package org.eclipse.osc.orchestrator;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lifecycle operation running asynchronously on the orchestrator worker pool.
+ */
+@Data
+public class Operation {
+
+    public enum Type {
+        REGISTER(2),
+        UPDATE(2),
+        START(1),
+        STOP(0),
+        UNREGISTER(0);
+
+        private final int priority;
+
+        Type(int priority) {
+            this.priority = priority;
+        }
+
+        /**
+         * @return the scheduling priority class, 0 is the most urgent: operations freeing capacity (stop, unregister
+         * and rollback) come first, builds last.
+         */
+        public int getPriority() {
+            return priority;
+        }
+    }
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final Type type;
+    private final String managedServiceName;
+
+    /**
+     * The namespace the operation is accounted to when sharing the workers.
+     */
+    private volatile String namespace = OperationScheduler.DEFAULT_NAMESPACE;
+
+    private volatile Status status = Status.QUEUED;
+    private volatile String error;
+    private volatile List<PluginFanOut.PluginResult> plugins = new ArrayList<>();
+
+    private final long submitted = System.currentTimeMillis();
+    private volatile long started;
+    private volatile long finished;
+
+    private final AtomicInteger callers = new AtomicInteger(1);
+
+    /**
+     * The operation input (typically the OCL), used to detect identical operations and to replay the operation.
+     */
+    @JsonIgnore
+    private volatile Object payload;
+
+    @JsonIgnore
+    private final CompletableFuture<PluginFanOut.FanOutResult> future = new CompletableFuture<>();
+
+    public boolean isDone() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+
+    /**
+     * @return the time spent in the queue before a worker picked the operation, in milliseconds.
+     */
+    public long getWaiting() {
+        return (started == 0 ? System.currentTimeMillis() : started) - submitted;
+    }
+
+    /**
+     * @return the time spent running the operation, in milliseconds.
+     */
+    public long getDuration() {
+        if (started == 0) {
+            return 0;
+        }
+        return (finished == 0 ? System.currentTimeMillis() : finished) - started;
+    }
+
+    /**
+     * @return the number of callers waiting on this operation, more than one when identical requests were coalesced.
+     */
+    public int getCallers() {
+        return callers.get();
+    }
+
+    void attach() {
+        callers.incrementAndGet();
+    }
+
+    void running() {
+        started = System.currentTimeMillis();
+        status = Status.RUNNING;
+    }
+
+    void completed(PluginFanOut.FanOutResult result) {
+        plugins = result.getResults();
+        finished = System.currentTimeMillis();
+        if (result.isSuccess()) {
+            status = Status.SUCCEEDED;
+        } else {
+            error = result.getOperation() + " failed on some plugins";
+            status = Status.FAILED;
+        }
+        future.complete(result);
+    }
+
+    void failed(Throwable cause) {
+        error = cause.getMessage() == null ? cause.getClass().getName() : cause.getMessage();
+        finished = System.currentTimeMillis();
+        status = Status.FAILED;
+        future.completeExceptionally(cause);
+    }
+
+}
@@ -0,0 +1,206 @@
+package org.eclipse.osc.orchestrator;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.osc.modules.ocl.loader.Ocl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write-ahead journal of lifecycle operations, in a local file with one JSON record per line. An operation is
+ * recorded (and synced to disk) when it's queued, and closed when it completes. After a crash, the operations
+ * still open in the journal are the ones interrupted, which the orchestrator replays on boot.
+ */
+@Slf4j
+public class OperationJournal implements AutoCloseable {
+
+    /**
+     * Rewrite the journal with the open operations only once it holds this many records.
+     */
+    private static final int COMPACT_THRESHOLD = 10000;
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final File file;
+    private final Map<String, Entry> open = new LinkedHashMap<>();
+    private FileOutputStream out;
+    private int records;
+
+    /**
+     * @param file the journal file, created if it doesn't exist.
+     */
+    public OperationJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Read the journal left by the previous run, and start a new one.
+     *
+     * @return the operations queued or running when the previous run stopped, in submission order.
+     * @throws IOException if the journal can't be read or created.
+     */
+    public synchronized List<Entry> recover() throws IOException {
+        Map<String, Entry> interrupted = new LinkedHashMap<>();
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    Entry entry;
+                    try {
+                        entry = mapper.readValue(line, Entry.class);
+                    } catch (IOException e) {
+                        // the last record may be truncated by the crash
+                        log.warn("Ignoring corrupted journal record {}", line);
+                        continue;
+                    }
+                    if (entry.isEnd()) {
+                        interrupted.remove(entry.getId());
+                    } else {
+                        interrupted.put(entry.getId(), entry);
+                    }
+                }
+            }
+        }
+        // the interrupted operations stay open until replayed, in case we crash again before
+        open.putAll(interrupted);
+        rewrite();
+        return new ArrayList<>(interrupted.values());
+    }
+
+    /**
+     * Close an operation recovered from the previous run, once it has been replayed.
+     *
+     * @param id the recovered operation id.
+     */
+    public void complete(String id) {
+        Entry entry = new Entry();
+        entry.setId(id);
+        entry.setEnd(true);
+        append(entry, false);
+    }
+
+    /**
+     * Record an operation state change, used as operation listener.
+     *
+     * @param operation the operation which was just queued or completed.
+     */
+    public void record(Operation operation) {
+        if (operation.getStatus() == Operation.Status.QUEUED) {
+            Entry entry = new Entry();
+            entry.setId(operation.getId());
+            entry.setType(operation.getType());
+            entry.setManagedServiceName(operation.getManagedServiceName());
+            if (operation.getPayload() instanceof Ocl) {
+                entry.setOcl((Ocl) operation.getPayload());
+            }
+            append(entry, true);
+        } else if (operation.isDone()) {
+            Entry entry = new Entry();
+            entry.setId(operation.getId());
+            entry.setEnd(true);
+            entry.setStatus(operation.getStatus());
+            append(entry, false);
+        }
+    }
+
+    /**
+     * @return the number of operations open in the journal.
+     */
+    public synchronized int size() {
+        return open.size();
+    }
+
+    private synchronized void append(Entry entry, boolean sync) {
+        if (out == null) {
+            log.warn("Operation journal is closed, operation {} not recorded", entry.getId());
+            return;
+        }
+        try {
+            if (entry.isEnd()) {
+                open.remove(entry.getId());
+            } else {
+                open.put(entry.getId(), entry);
+            }
+            out.write((mapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+            // a lost end record only replays a completed operation, a lost begin record loses the operation
+            if (sync) {
+                out.getFD().sync();
+            }
+            if (++records >= COMPACT_THRESHOLD) {
+                rewrite();
+            }
+        } catch (IOException e) {
+            log.warn("Can't write operation journal {}", file, e);
+        }
+    }
+
+    private void rewrite() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(tmp)) {
+            for (Entry entry : open.values()) {
+                stream.write((mapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            stream.getFD().sync();
+        }
+        if (out != null) {
+            out.close();
+        }
+        boolean replaced = tmp.renameTo(file);
+        // reopened even if not replaced, so the next records are still appended to the previous journal
+        out = new FileOutputStream(file, true);
+        records = open.size();
+        if (!replaced) {
+            throw new IOException("Can't replace journal " + file);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.warn("Can't close operation journal {}", file, e);
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * A journal record: the beginning of an operation, with what is needed to replay it, or its end.
+     */
+    @Data
+    public static class Entry {
+
+        private String id;
+        private boolean end;
+        private Operation.Type type;
+        private String managedServiceName;
+        private Ocl ocl;
+        private Operation.Status status;
+        private long time = System.currentTimeMillis();
+
+    }
+
+}
@@ -0,0 +1,356 @@
+package org.eclipse.osc.orchestrator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.osc.modules.ocl.loader.Ocl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Queue lifecycle operations on a bounded worker pool and keep track of their progress. Operations
+ * on the same managed service run one after the other, in submission order, operations on different
+ * managed services are picked by the {@link OperationScheduler}.
+ */
+@Slf4j
+public class OperationManager implements AutoCloseable {
+
+    private static final long PURGE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private static final MetricsRegistry.Counter OPERATIONS = MetricsRegistry.getDefault().counter(
+            "osc_operations_total", "Lifecycle operations completed.", "type", "status");
+    private static final MetricsRegistry.Counter REJECTED = MetricsRegistry.getDefault().counter(
+            "osc_operations_rejected_total", "Lifecycle operations rejected because the worker queue is full.", "type");
+    private static final MetricsRegistry.Counter COALESCED = MetricsRegistry.getDefault().counter(
+            "osc_operations_coalesced_total", "Lifecycle requests attached to an identical operation already in flight.", "type");
+    private static final MetricsRegistry.Histogram WAITING = MetricsRegistry.getDefault().histogram(
+            "osc_operation_queue_seconds", "Time spent by lifecycle operations waiting for a worker.", "type");
+
+    private final ThreadPoolExecutor executor;
+    private final OperationScheduler scheduler;
+    private final KeyedExecutor keyedExecutor;
+    private final AdmissionControl admission;
+    private final long retentionMillis;
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final Map<String, Operation> latest = new ConcurrentHashMap<>();
+    private final List<Consumer<Operation>> listeners = new CopyOnWriteArrayList<>();
+    private volatile long lastPurge = System.currentTimeMillis();
+    private volatile Function<String, String> namespaces = name -> null;
+
+    /**
+     * @param workers the number of operations running at the same time.
+     * @param queueSize the maximum number of operations waiting for a worker.
+     * @param retentionMillis how long a completed operation is kept, in milliseconds.
+     */
+    public OperationManager(int workers, int queueSize, long retentionMillis) {
+        this(workers, queueSize, retentionMillis, AdmissionControl.unbounded());
+    }
+
+    /**
+     * @param workers the number of operations running at the same time.
+     * @param queueSize the maximum number of operations waiting for a worker.
+     * @param retentionMillis how long a completed operation is kept, in milliseconds.
+     * @param admission the admission control applied to new operations.
+     */
+    public OperationManager(int workers, int queueSize, long retentionMillis, AdmissionControl admission) {
+        this(workers, new OperationScheduler(queueSize), retentionMillis, admission);
+    }
+
+    /**
+     * @param workers the number of operations running at the same time.
+     * @param scheduler the queue of the operations waiting for a worker.
+     * @param retentionMillis how long a completed operation is kept, in milliseconds.
+     * @param admission the admission control applied to new operations.
+     */
+    public OperationManager(int workers, OperationScheduler scheduler, long retentionMillis, AdmissionControl admission) {
+        this.admission = admission;
+        this.scheduler = scheduler;
+        scheduler.setAdmission(admission);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                scheduler, new OrchestratorThreadFactory("osc-orchestrator-worker"));
+        // so every task goes through the scheduler, a task submitted to an idle pool would run right away
+        this.executor.prestartAllCoreThreads();
+        this.keyedExecutor = new KeyedExecutor(executor);
+        this.retentionMillis = retentionMillis;
+    }
+
+    /**
+     * Queue an operation without payload.
+     *
+     * @see #submit(Operation.Type, String, Object, Callable)
+     */
+    public Operation submit(Operation.Type type, String managedServiceName, Callable<PluginFanOut.FanOutResult> task) {
+        return submit(type, managedServiceName, null, task);
+    }
+
+    /**
+     * Queue an operation. If the last operation queued for the same managed service is still pending and is
+     * identical (same type and same payload), no new work is queued and the pending operation is returned instead.
+     *
+     * @param type the operation type.
+     * @param managedServiceName the managed service targeted by the operation.
+     * @param payload the operation input (typically the OCL), used to detect identical operations.
+     * @param task the actual work, returning the plugins results.
+     * @return the queued operation.
+     * @throws IllegalArgumentException if the managed service name is missing.
+     * @throws OrchestratorBusyException if too many operations are pending, or the worker queue is full.
+     */
+    public Operation submit(Operation.Type type, String managedServiceName, Object payload, Callable<PluginFanOut.FanOutResult> task) {
+        if (managedServiceName == null) {
+            throw new IllegalArgumentException("Managed service name is required");
+        }
+        purge();
+        // may read the storage, so not while holding the managed service entry
+        String namespace = namespace(managedServiceName, payload);
+        Operation[] submitted = new Operation[1];
+        ScheduledOperation[] scheduled = new ScheduledOperation[1];
+        RejectedExecutionException[] rejected = new RejectedExecutionException[1];
+        latest.compute(managedServiceName, (name, previous) -> {
+            if (previous != null && isSame(previous, type, payload)) {
+                previous.attach();
+                submitted[0] = previous;
+                return previous;
+            }
+            admission.admit(type);
+            Operation operation = new Operation(type, name);
+            operation.setPayload(payload);
+            operation.setNamespace(namespace);
+            operations.put(operation.getId(), operation);
+            ScheduledOperation queued = new ScheduledOperation(operation, task);
+            try {
+                keyedExecutor.execute(name, queued);
+            } catch (RejectedExecutionException e) {
+                operations.remove(operation.getId());
+                admission.release();
+                REJECTED.inc(type.name());
+                operation.failed(e);
+                submitted[0] = operation;
+                rejected[0] = e;
+                return previous;
+            }
+            submitted[0] = operation;
+            scheduled[0] = queued;
+            return operation;
+        });
+        Operation operation = submitted[0];
+        if (rejected[0] != null) {
+            notifyListeners(operation);
+            throw new OrchestratorBusyException("Worker queue is full, retry later", admission.getRetryAfter());
+        }
+        if (scheduled[0] != null) {
+            // out of the compute, the listeners may block (the journal syncs to disk), the operation waits for
+            // them to start, so listeners always see an operation queued before it runs
+            try {
+                notifyListeners(operation);
+            } finally {
+                scheduled[0].queued.countDown();
+            }
+            log.debug("Operation {} {} on {} queued", operation.getId(), type, managedServiceName);
+        } else {
+            COALESCED.inc(type.name());
+            log.info("Operation {} on {} already in flight ({}), attaching caller", type, managedServiceName, operation.getId());
+        }
+        return operation;
+    }
+
+    private String namespace(String managedServiceName, Object payload) {
+        String namespace = payload instanceof Ocl ? ((Ocl) payload).getNamespace() : null;
+        if (namespace == null) {
+            try {
+                namespace = namespaces.apply(managedServiceName);
+            } catch (RuntimeException e) {
+                log.warn("Can't get the namespace of {}", managedServiceName, e);
+            }
+        }
+        return namespace == null ? OperationScheduler.DEFAULT_NAMESPACE : namespace;
+    }
+
+    /**
+     * Set how to find the namespace of a managed service, for operations without OCL descriptor.
+     *
+     * @param namespaces the namespace of a managed service, null if unknown.
+     */
+    public void setNamespaces(Function<String, String> namespaces) {
+        this.namespaces = namespaces;
+    }
+
+    private static boolean isSame(Operation operation, Operation.Type type, Object payload) {
+        return !operation.isDone() && operation.getType() == type && Objects.equals(operation.getPayload(), payload);
+    }
+
+    /**
+     * Queue an operation and wait for its completion.
+     *
+     * @param type the operation type.
+     * @param managedServiceName the managed service targeted by the operation.
+     * @param payload the operation input, used to detect identical operations.
+     * @param task the actual work, returning the plugins results.
+     * @return the plugins results.
+     * @throws Exception if the operation failed.
+     */
+    public PluginFanOut.FanOutResult call(Operation.Type type, String managedServiceName, Object payload, Callable<PluginFanOut.FanOutResult> task) throws Exception {
+        Operation operation = submit(type, managedServiceName, payload, task);
+        try {
+            return operation.getFuture().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void run(ScheduledOperation scheduled) {
+        Operation operation = scheduled.operation;
+        boolean build = scheduled.buildSlot;
+        PluginFanOut.FanOutResult result = null;
+        Exception error = null;
+        try {
+            scheduled.queued.await();
+            if (!build && scheduled.isBuild()) {
+                // run by the keyed executor when the worker queue was full, without going through the scheduler
+                admission.acquireBuild();
+                build = true;
+            }
+            operation.running();
+            WAITING.observe(operation.getWaiting() / 1000.0, operation.getType().name());
+            notifyListeners(operation);
+            result = scheduled.task.call();
+        } catch (Exception e) {
+            log.warn("Operation {} {} on {} failed", operation.getId(), operation.getType(), operation.getManagedServiceName(), e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            error = e;
+        } finally {
+            if (build) {
+                scheduler.releaseBuild();
+            }
+            admission.release();
+        }
+        // completed once the slots are released, so a caller waiting for it can submit right away
+        if (error == null) {
+            operation.completed(result);
+        } else {
+            operation.failed(error);
+        }
+        latest.remove(operation.getManagedServiceName(), operation);
+        OPERATIONS.inc(operation.getType().name(), operation.getStatus().name());
+        notifyListeners(operation);
+        log.info("Operation {} {} on {} {} in {} ms", operation.getId(), operation.getType(),
+                operation.getManagedServiceName(), operation.getStatus(), operation.getDuration());
+    }
+
+    /**
+     * Add a listener called each time an operation is queued, starts running, and completes.
+     *
+     * @param listener the listener, which should not block.
+     */
+    public void addListener(Consumer<Operation> listener) {
+        listeners.add(listener);
+    }
+
+    private void notifyListeners(Operation operation) {
+        for (Consumer<Operation> listener : listeners) {
+            try {
+                listener.accept(operation);
+            } catch (RuntimeException e) {
+                log.warn("Operation listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Get an operation.
+     *
+     * @param id the operation id.
+     * @return the operation or null if the operation is unknown or expired.
+     */
+    public Operation get(String id) {
+        return operations.get(id);
+    }
+
+    /**
+     * @return all known operations.
+     */
+    public Collection<Operation> list() {
+        return new ArrayList<>(operations.values());
+    }
+
+    private void purge() {
+        long now = System.currentTimeMillis();
+        if (now - lastPurge < PURGE_INTERVAL) {
+            return;
+        }
+        lastPurge = now;
+        operations.values().removeIf(operation -> operation.isDone() && now - operation.getFinished() > retentionMillis);
+    }
+
+    /**
+     * @return the admission control applied to new operations.
+     */
+    public AdmissionControl getAdmission() {
+        return admission;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private class ScheduledOperation implements Runnable, OperationScheduler.Schedulable {
+
+        private final Operation operation;
+        private final Callable<PluginFanOut.FanOutResult> task;
+        private final CountDownLatch queued = new CountDownLatch(1);
+        private volatile boolean buildSlot;
+
+        ScheduledOperation(Operation operation, Callable<PluginFanOut.FanOutResult> task) {
+            this.operation = operation;
+            this.task = task;
+        }
+
+        @Override
+        public int getPriority() {
+            return operation.getType().getPriority();
+        }
+
+        @Override
+        public String getNamespace() {
+            return operation.getNamespace();
+        }
+
+        @Override
+        public long getSubmitted() {
+            return operation.getSubmitted();
+        }
+
+        @Override
+        public boolean isBuild() {
+            return AdmissionControl.isBuild(operation.getType());
+        }
+
+        @Override
+        public void buildSlotAcquired() {
+            buildSlot = true;
+        }
+
+        @Override
+        public void run() {
+            OperationManager.this.run(this);
+        }
+    }
+
+}
@@ -0,0 +1,397 @@
+package org.eclipse.osc.orchestrator;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The work queue of the orchestrator workers, handing out the most urgent operation first instead of the oldest:
+ * <ul>
+ *     <li>each operation type has a priority class (see {@link Operation.Type#getPriority()}), so a stop or a rollback
+ *     freeing capacity doesn't wait behind a backlog of registrations,</li>
+ *     <li>a waiting operation is promoted one class each aging period, so builds are never starved,</li>
+ *     <li>within a class, namespaces share the workers in proportion of their weight (start-time fair queuing), so a
+ *     namespace registering many managed services doesn't hold back the others,</li>
+ *     <li>a build is only handed out while a build slot of the {@link AdmissionControl} is free, the other operations
+ *     going first meanwhile.</li>
+ * </ul>
+ * Tasks are picked by a linear scan, fine for the bounded worker queue of the orchestrator.
+ */
+public class OperationScheduler extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    /**
+     * The namespace of operations on an OCL descriptor without namespace.
+     */
+    public static final String DEFAULT_NAMESPACE = "default";
+
+    /**
+     * The aging period by default, in milliseconds.
+     */
+    public static final long DEFAULT_AGING = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * The scheduling attributes of a task.
+     */
+    public interface Schedulable {
+
+        /**
+         * @return the priority class, 0 is the most urgent.
+         */
+        int getPriority();
+
+        /**
+         * @return the namespace the task is accounted to.
+         */
+        String getNamespace();
+
+        /**
+         * @return when the task was submitted, in milliseconds since epoch, 0 if unknown.
+         */
+        long getSubmitted();
+
+        /**
+         * @return true if the task runs a build, handed out only with a build slot.
+         */
+        default boolean isBuild() {
+            return false;
+        }
+
+        /**
+         * Called when the task is handed out with a build slot, to be released with
+         * {@link OperationScheduler#releaseBuild()} once the build is done.
+         */
+        default void buildSlotAcquired() {
+        }
+
+    }
+
+    private final int capacity;
+    private final long agingMillis;
+    private final Map<String, Integer> weights;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Double> virtualTimes = new HashMap<>();
+    private volatile AdmissionControl admission = AdmissionControl.unbounded();
+    private double virtualTime;
+    private long sequence;
+
+    /**
+     * @param capacity the maximum number of queued tasks.
+     */
+    public OperationScheduler(int capacity) {
+        this(capacity, DEFAULT_AGING, Map.of());
+    }
+
+    /**
+     * @param capacity the maximum number of queued tasks.
+     * @param agingMillis the waiting time promoting a task to the next priority class.
+     * @param weights the share of each namespace, 1 for namespaces not listed.
+     */
+    public OperationScheduler(int capacity, long agingMillis, Map<String, Integer> weights) {
+        if (agingMillis <= 0) {
+            throw new IllegalArgumentException("Aging period must be positive");
+        }
+        this.capacity = capacity;
+        this.agingMillis = agingMillis;
+        this.weights = new HashMap<>(weights);
+    }
+
+    /**
+     * Parse namespace weights.
+     *
+     * @param value the weights, as {@code namespace=weight} separated by commas, can be null or empty.
+     * @return the weights by namespace.
+     * @throws IllegalArgumentException if a weight is invalid.
+     */
+    public static Map<String, Integer> parseWeights(String value) {
+        Map<String, Integer> weights = new HashMap<>();
+        if (value == null || value.isBlank()) {
+            return weights;
+        }
+        for (String item : value.split(",")) {
+            String[] parts = item.split("=");
+            int weight = parts.length == 2 ? Integer.parseInt(parts[1].trim()) : 0;
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Invalid namespace weight " + item);
+            }
+            weights.put(parts[0].trim(), weight);
+        }
+        return weights;
+    }
+
+    /**
+     * @param admission the admission control holding the build slots.
+     */
+    void setAdmission(AdmissionControl admission) {
+        this.admission = admission;
+    }
+
+    /**
+     * Release a build slot taken when handing out a build, so the next queued build can be handed out.
+     */
+    public void releaseBuild() {
+        admission.releaseBuild();
+        lock.lock();
+        try {
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        lock.lock();
+        try {
+            if (entries.size() >= capacity) {
+                return false;
+            }
+            entries.add(new Entry(task, sequence++));
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) {
+        return offer(task);
+    }
+
+    @Override
+    public void put(Runnable task) {
+        if (!offer(task)) {
+            throw new IllegalStateException("Operation queue is full");
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            Runnable task;
+            // also waiting while only builds are queued and no build slot is free
+            while ((task = dispatch()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Runnable task;
+            while ((task = dispatch()) == null) {
+                notEmpty.await();
+            }
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            return entries.isEmpty() ? null : entries.get(select(System.currentTimeMillis(), true)).task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object task) {
+        lock.lock();
+        try {
+            return entries.removeIf(entry -> entry.task == task);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> collection, int maxElements) {
+        lock.lock();
+        try {
+            // drained on shutdown, not handed to workers, so without build slots
+            int count = 0;
+            while (count < maxElements && !entries.isEmpty()) {
+                collection.add(remove(select(System.currentTimeMillis(), true)).task);
+                count++;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a snapshot of the queued tasks, in no particular order.
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        lock.lock();
+        try {
+            List<Runnable> tasks = new ArrayList<>(entries.size());
+            entries.forEach(entry -> tasks.add(entry.task));
+            return tasks.iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the task to hand to a worker, null if none can run now.
+     */
+    private Runnable dispatch() {
+        long now = System.currentTimeMillis();
+        int selected = select(now, true);
+        if (selected < 0) {
+            return null;
+        }
+        boolean slot = false;
+        if (entries.get(selected).build) {
+            slot = admission.tryAcquireBuild();
+            if (!slot) {
+                selected = select(now, false);
+                if (selected < 0) {
+                    return null;
+                }
+            }
+        }
+        Entry entry = remove(selected);
+        if (slot) {
+            ((Schedulable) entry.task).buildSlotAcquired();
+        }
+        return entry.task;
+    }
+
+    private Entry remove(int index) {
+        Entry entry = entries.remove(index);
+        double start = startTime(entry.namespace);
+        virtualTime = start;
+        virtualTimes.put(entry.namespace, start + 1.0 / weights.getOrDefault(entry.namespace, 1));
+        // namespaces behind the virtual time have no credit left, the same as a new namespace
+        virtualTimes.values().removeIf(time -> time <= virtualTime);
+        return entry;
+    }
+
+    /**
+     * @param builds false to skip the builds.
+     * @return the index of the most urgent entry, -1 if none.
+     */
+    private int select(long now, boolean builds) {
+        int selected = -1;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if ((builds || !entry.build) && (selected < 0 || compare(entry, entries.get(selected), now) < 0)) {
+                selected = i;
+            }
+        }
+        return selected;
+    }
+
+    private int compare(Entry entry, Entry other, long now) {
+        int priority = Long.compare(effectivePriority(entry, now), effectivePriority(other, now));
+        if (priority != 0) {
+            return priority;
+        }
+        if (!entry.namespace.equals(other.namespace)) {
+            int share = Double.compare(startTime(entry.namespace), startTime(other.namespace));
+            if (share != 0) {
+                return share;
+            }
+        }
+        int age = Long.compare(entry.submitted, other.submitted);
+        return age != 0 ? age : Long.compare(entry.sequence, other.sequence);
+    }
+
+    private long effectivePriority(Entry entry, long now) {
+        return Math.max(0, entry.priority - Math.max(0, now - entry.submitted) / agingMillis);
+    }
+
+    private double startTime(String namespace) {
+        return Math.max(virtualTimes.getOrDefault(namespace, 0.0), virtualTime);
+    }
+
+    private static class Entry {
+
+        private final Runnable task;
+        private final long sequence;
+        private final int priority;
+        private final String namespace;
+        private final long submitted;
+        private final boolean build;
+
+        Entry(Runnable task, long sequence) {
+            this.task = task;
+            this.sequence = sequence;
+            // the attributes of a task are fixed while it's queued
+            Schedulable schedulable = task instanceof Schedulable ? (Schedulable) task : null;
+            this.priority = schedulable == null ? Operation.Type.START.getPriority() : schedulable.getPriority();
+            String namespace = schedulable == null ? null : schedulable.getNamespace();
+            this.namespace = namespace == null ? DEFAULT_NAMESPACE : namespace;
+            long submitted = schedulable == null ? 0 : schedulable.getSubmitted();
+            this.submitted = submitted > 0 ? submitted : System.currentTimeMillis();
+            this.build = schedulable != null && schedulable.isBuild();
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+package org.eclipse.osc.orchestrator;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when a lifecycle operation is not admitted because too many operations are already pending.
+ */
+public class OrchestratorBusyException extends RejectedExecutionException {
+
+    private final long retryAfter;
+
+    /**
+     * @param message the detail message.
+     * @param retryAfter the suggested delay before retrying, in seconds.
+     */
+    public OrchestratorBusyException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return the suggested delay before retrying, in seconds.
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+}
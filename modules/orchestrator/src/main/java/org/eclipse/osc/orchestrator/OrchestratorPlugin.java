@@ -7,6 +7,15 @@ import org.eclipse.osc.modules.ocl.loader.Ocl;
  */
 public interface OrchestratorPlugin {
 
+    /**
+     * Give the plugin the storage of the orchestrator, before any managed service call. Plugins storing values should
+     * use it rather than the storage service, so the orchestrator cache sees their writes; the default does nothing.
+     *
+     * @param storage the orchestrator storage.
+     */
+    default void setStorage(OrchestratorStorage storage) {
+    }
+
     /**
      * Register a managed service using the provided OCL descriptor.
      *
@@ -14,6 +23,15 @@ public interface OrchestratorPlugin {
      */
     void registerManagedService(Ocl ocl);
 
+    /**
+     * Restore a managed service registered before the orchestrator restarted, without touching the backend.
+     * Plugins keeping managed services in memory reload them here; the default does nothing.
+     *
+     * @param ocl the OCL descriptor the managed service was registered (or last updated) with.
+     */
+    default void restoreManagedService(Ocl ocl) {
+    }
+
     /**
      * Update an existing managed service using the provided OCL descriptor.
      *
@@ -2,22 +2,81 @@ package org.eclipse.osc.orchestrator;
 
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.karaf.minho.boot.service.ConfigService;
 import org.apache.karaf.minho.boot.service.LifeCycleService;
 import org.apache.karaf.minho.boot.service.ServiceRegistry;
 import org.apache.karaf.minho.boot.spi.Service;
 import org.eclipse.osc.modules.ocl.loader.Ocl;
 import org.eclipse.osc.modules.ocl.loader.OclLoader;
+import org.eclipse.osc.orchestrator.PluginFanOut.FanOutResult;
 
+import java.io.File;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Data
 public class OrchestratorService implements Service {
 
+    public static final String PLUGINS_FANOUT = "orchestrator.plugins.fanout";
+    public static final String PLUGINS_THREADS = "orchestrator.plugins.threads";
+    public static final String PLUGINS_TIMEOUT = "orchestrator.plugins.timeout";
+    public static final String WORKERS = "orchestrator.workers";
+    public static final String WORKERS_QUEUE = "orchestrator.workers.queue";
+    public static final String ADMISSION_PENDING = "orchestrator.admission.pending";
+    public static final String ADMISSION_BUILDS = "orchestrator.admission.builds";
+    public static final String ADMISSION_RETRY_AFTER = "orchestrator.admission.retry-after";
+    public static final String OPERATIONS_RETENTION = "orchestrator.operations.retention";
+    public static final String FETCH_THREADS = "orchestrator.fetch.threads";
+    public static final String EVENTS_CAPACITY = "orchestrator.events.capacity";
+    public static final String JOURNAL_FILENAME = "orchestrator.journal.filename";
+    public static final String JOURNAL_RECOVERY = "orchestrator.journal.recovery";
+    public static final String DEFAULT_JOURNAL_FILENAME = "orchestrator.journal";
+    public static final String CLUSTER_URL = "orchestrator.cluster.url";
+    public static final String CLUSTER_ID = "orchestrator.cluster.id";
+    public static final String CLUSTER_HEARTBEAT = "orchestrator.cluster.heartbeat";
+    public static final String CLUSTER_EXPIRY = "orchestrator.cluster.expiry";
+    public static final String LEASE_OWNER = "orchestrator.lease.owner";
+    public static final String LEASE_TTL = "orchestrator.lease.ttl";
+    public static final String SCHEDULER_AGING = "orchestrator.scheduler.aging";
+    public static final String SCHEDULER_WEIGHTS = "orchestrator.scheduler.weights";
+    public static final String CACHE_SIZE = "orchestrator.cache.size";
+    public static final String CACHE_TTL = "orchestrator.cache.ttl";
+    public static final String CACHE_NEGATIVE_TTL = "orchestrator.cache.negative-ttl";
+    public static final String CACHE_MODE = "orchestrator.cache.mode";
+    public static final String CACHE_FLUSH_INTERVAL = "orchestrator.cache.flush-interval";
+    public static final String CACHE_REVALIDATE = "orchestrator.cache.revalidate";
+    public static final String BLOBS_THRESHOLD = "orchestrator.blobs.threshold";
+
     private List<OrchestratorPlugin> plugins = new ArrayList<>();
 
+    private PluginFanOut pluginFanOut = new PluginFanOut();
+
+    private OperationManager operationManager;
+
+    private ExecutorService fetchExecutor;
+
+    private StateEventBus stateEventBus;
+
+    private StateCache stateCache;
+
+    private OperationJournal journal;
+
+    private ManagedServiceRestorer restorer;
+
+    private ClusterMembership cluster;
+
+    private ManagedServiceLocks locks;
+
+    private boolean rollback;
+
     private OrchestratorStorage storage;
 
     private OclLoader oclLoader;
@@ -41,15 +100,133 @@ public class OrchestratorService implements Service {
             log.warn("No orchestrator storage service found in the service registry, using default file orchestrator storage");
             storage = new FileOrchestratorStorage(serviceRegistry);
         }
+        ConfigService configService = serviceRegistry.get(ConfigService.class);
+        // leases and cluster members are shared with the other replicas, so never cached
+        OrchestratorStorage shared = new MeteredOrchestratorStorage(storage, MeteredOrchestratorStorage.name(storage));
+        storage = decorate(storage, configService);
+        if ("parallel".equals(getProperty(configService, PLUGINS_FANOUT, "parallel"))) {
+            int threads = Integer.parseInt(getProperty(configService, PLUGINS_THREADS,
+                    String.valueOf(Math.max(4, Runtime.getRuntime().availableProcessors()))));
+            long timeout = Long.parseLong(getProperty(configService, PLUGINS_TIMEOUT, "1800"));
+            log.info("Calling orchestrator plugins in parallel ({} threads, {} s deadline)", threads, timeout);
+            pluginFanOut = new PluginFanOut(threads, TimeUnit.SECONDS.toMillis(timeout));
+        }
+
+        int workers = Integer.parseInt(getProperty(configService, WORKERS, "8"));
+        int queue = Integer.parseInt(getProperty(configService, WORKERS_QUEUE, "256"));
+        long retention = Long.parseLong(getProperty(configService, OPERATIONS_RETENTION, "3600"));
+        int maxPending = Integer.parseInt(getProperty(configService, ADMISSION_PENDING, String.valueOf(queue)));
+        // by default builds take at most half of the workers, the other half stays available for start and stop
+        int maxBuilds = Integer.parseInt(getProperty(configService, ADMISSION_BUILDS, String.valueOf(Math.max(1, workers / 2))));
+        long retryAfter = Long.parseLong(getProperty(configService, ADMISSION_RETRY_AFTER, String.valueOf(AdmissionControl.DEFAULT_RETRY_AFTER)));
+        log.info("Admitting up to {} pending operations, with up to {} concurrent builds", maxPending, maxBuilds);
+        long aging = Long.parseLong(getProperty(configService, SCHEDULER_AGING, String.valueOf(TimeUnit.MILLISECONDS.toSeconds(OperationScheduler.DEFAULT_AGING))));
+        // namespace=weight, separated by commas
+        Map<String, Integer> weights = OperationScheduler.parseWeights(getProperty(configService, SCHEDULER_WEIGHTS, null));
+        log.info("Scheduling operations with {} s aging and namespace weights {}", aging, weights);
+        operationManager = new OperationManager(workers, new OperationScheduler(queue, TimeUnit.SECONDS.toMillis(aging), weights),
+                TimeUnit.SECONDS.toMillis(retention), new AdmissionControl(maxPending, maxBuilds, retryAfter));
+        int fetchThreads = Integer.parseInt(getProperty(configService, FETCH_THREADS, "8"));
+        fetchExecutor = Executors.newFixedThreadPool(fetchThreads, new OrchestratorThreadFactory("osc-orchestrator-fetch"));
+        stateEventBus = new StateEventBus(Integer.parseInt(getProperty(configService, EVENTS_CAPACITY, "1024")));
+        stateCache = new StateCache(storage, this::getPluginNames);
+        // update the cache first, so watchers notified of a transition read the new state
+        operationManager.addListener(stateCache::update);
+        operationManager.addListener(stateEventBus::publish);
+
+        restorer = new ManagedServiceRestorer(storage, name(), pluginFanOut, this::getPlugins);
+        operationManager.setNamespaces(restorer::getNamespace);
+
+        journal = new OperationJournal(new File(getProperty(configService, JOURNAL_FILENAME, DEFAULT_JOURNAL_FILENAME)));
+        rollback = "rollback".equals(getProperty(configService, JOURNAL_RECOVERY, "resume"));
+        List<OperationJournal.Entry> interrupted = journal.recover();
+        operationManager.addListener(journal::record);
+
+        String clusterUrl = getProperty(configService, CLUSTER_URL, null);
+        if (clusterUrl != null) {
+            long heartbeat = Long.parseLong(getProperty(configService, CLUSTER_HEARTBEAT, "5"));
+            long expiry = Long.parseLong(getProperty(configService, CLUSTER_EXPIRY, String.valueOf(heartbeat * 4)));
+            String clusterId = getProperty(configService, CLUSTER_ID, clusterUrl);
+            log.info("Joining orchestrator cluster as {} ({})", clusterId, clusterUrl);
+            cluster = new ClusterMembership(shared, clusterId, clusterUrl, TimeUnit.SECONDS.toMillis(heartbeat), TimeUnit.SECONDS.toMillis(expiry));
+        }
+
+        String leaseOwner = cluster != null ? cluster.getSelf().getId() : getProperty(configService, LEASE_OWNER, getHostName());
+        long leaseTtl = Long.parseLong(getProperty(configService, LEASE_TTL, "60"));
+        locks = new ManagedServiceLocks(shared, leaseOwner, TimeUnit.SECONDS.toMillis(leaseTtl));
 
         LifeCycleService lifeCycleService = serviceRegistry.get(LifeCycleService.class);
 
         lifeCycleService.onStart(() -> {
             log.info("Loading OSC orchestrator plugins");
             plugins = serviceRegistry.getAll().values().stream().filter(service -> service instanceof OrchestratorPlugin).map(service -> (OrchestratorPlugin) service).collect(Collectors.toList());
+            // the single decorated storage of this orchestrator, so the cache and the blob reference counts are
+            // coherent with the writes of the plugins
+            plugins.forEach(plugin -> plugin.setStorage(storage));
+            if (cluster != null) {
+                cluster.start();
+            }
+            replay(interrupted);
+            // other managed services are restored lazily, if they're reassigned to this replica
+            restorer.restoreAll(fetchExecutor, managedServiceName -> getOwner(managedServiceName) == null);
+        });
+        lifeCycleService.onShutdown(() -> {
+            if (cluster != null) {
+                cluster.close();
+            }
+            stateEventBus.close();
+            fetchExecutor.shutdownNow();
+            operationManager.close();
+            locks.close();
+            pluginFanOut.close();
+            journal.close();
+            if (storage instanceof CachingOrchestratorStorage) {
+                ((CachingOrchestratorStorage) storage).close();
+            }
         });
     }
 
+    /**
+     * Decorate the storage used by the orchestrator and its plugins: the storage calls are metered, the large values
+     * are stored by content if a blob threshold is configured, and cached if a cache size is configured.
+     *
+     * @param storage the actual storage.
+     * @param configService the configuration of the storage, may be null.
+     * @return the storage to use.
+     */
+    private static OrchestratorStorage decorate(OrchestratorStorage storage, ConfigService configService) {
+        OrchestratorStorage decorated = new MeteredOrchestratorStorage(storage, MeteredOrchestratorStorage.name(storage));
+        int threshold = Integer.parseInt(getProperty(configService, BLOBS_THRESHOLD, "0"));
+        if (threshold > 0) {
+            decorated = new ContentAddressedOrchestratorStorage(decorated, threshold);
+        }
+        int size = Integer.parseInt(getProperty(configService, CACHE_SIZE, "0"));
+        if (size > 0) {
+            decorated = new CachingOrchestratorStorage(decorated, size,
+                    TimeUnit.SECONDS.toMillis(Long.parseLong(getProperty(configService, CACHE_TTL, "60"))),
+                    TimeUnit.SECONDS.toMillis(Long.parseLong(getProperty(configService, CACHE_NEGATIVE_TTL, "5"))),
+                    CachingOrchestratorStorage.Mode.valueOf(getProperty(configService, CACHE_MODE, "write-through").toUpperCase().replace('-', '_')),
+                    Long.parseLong(getProperty(configService, CACHE_FLUSH_INTERVAL, "1000")),
+                    Boolean.parseBoolean(getProperty(configService, CACHE_REVALIDATE, "false")));
+        }
+        return decorated;
+    }
+
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "osc-orchestrator";
+        }
+    }
+
+    private static String getProperty(ConfigService configService, String key, String defaultValue) {
+        if (configService == null) {
+            return defaultValue;
+        }
+        return configService.getProperty(key, defaultValue);
+    }
+
     /**
      * Register a managed service on all orchestrator plugins, using OCL descriptor location.
      *
@@ -68,13 +245,45 @@ public class OrchestratorService implements Service {
      * @throws Exception if registration fails.
      */
     public void registerManagedService(Ocl ocl) throws Exception {
-        if (ocl.getName() == null) {
-            throw new IllegalArgumentException("Managed service name is required");
-        }
-        plugins.forEach(plugin -> {
-            plugin.registerManagedService(ocl);
+        checkName(ocl);
+        operationManager.call(Operation.Type.REGISTER, ocl.getName(), ocl, () -> doRegister(ocl)).throwIfFailed();
+    }
+
+    /**
+     * Queue the registration of a managed service, using OCL descriptor location.
+     *
+     * @param oclLocation the location of the OCL descriptor.
+     * @return the queued operation.
+     * @throws Exception if the OCL descriptor can't be loaded.
+     */
+    public Operation registerManagedServiceAsync(String oclLocation) throws Exception {
+        Ocl ocl = oclLoader.getOcl(new URL(oclLocation));
+        return registerManagedServiceAsync(ocl);
+    }
+
+    /**
+     * Queue the registration of a managed service.
+     *
+     * @param ocl the OCL descriptor.
+     * @return the queued operation.
+     */
+    public Operation registerManagedServiceAsync(Ocl ocl) {
+        checkName(ocl);
+        return operationManager.submit(Operation.Type.REGISTER, ocl.getName(), ocl, () -> doRegister(ocl));
+    }
+
+    private FanOutResult doRegister(Ocl ocl) {
+        return locks.call(ocl.getName(), lock -> {
+            // wait for a background restoration of a previous registration, so it can't override this one
+            restorer.restore(ocl.getName());
+            FanOutResult result = pluginFanOut.invoke("registerManagedService", plugins, plugin -> plugin.registerManagedService(ocl));
+            if (result.isSuccess()) {
+                lock.fence();
+                storage.store(ocl.getName());
+                restorer.registered(ocl);
+            }
+            return result;
         });
-        storage.store(ocl.getName());
     }
 
     /**
@@ -97,8 +306,42 @@ public class OrchestratorService implements Service {
      * @throws Exception if the update fails.
      */
     public void updateManagedService(String managedServiceName, Ocl ocl) throws Exception {
-        plugins.forEach(plugin -> {
-            plugin.updateManagedService(managedServiceName, ocl);
+        operationManager.call(Operation.Type.UPDATE, managedServiceName, ocl, () -> doUpdate(managedServiceName, ocl)).throwIfFailed();
+    }
+
+    /**
+     * Queue the update of an existing managed service, using OCL descriptor location.
+     *
+     * @param managedServiceName the managed service to update, identified by the given name.
+     * @param oclLocation the new/updated OCL descriptor location.
+     * @return the queued operation.
+     * @throws Exception if the OCL descriptor can't be loaded.
+     */
+    public Operation updateManagedServiceAsync(String managedServiceName, String oclLocation) throws Exception {
+        Ocl ocl = oclLoader.getOcl(new URL(oclLocation));
+        return updateManagedServiceAsync(managedServiceName, ocl);
+    }
+
+    /**
+     * Queue the update of an existing managed service.
+     *
+     * @param managedServiceName the managed service to update, identified by the given name.
+     * @param ocl the new/update OCL descriptor.
+     * @return the queued operation.
+     */
+    public Operation updateManagedServiceAsync(String managedServiceName, Ocl ocl) {
+        return operationManager.submit(Operation.Type.UPDATE, managedServiceName, ocl, () -> doUpdate(managedServiceName, ocl));
+    }
+
+    private FanOutResult doUpdate(String managedServiceName, Ocl ocl) {
+        return locks.call(managedServiceName, lock -> {
+            restorer.restore(managedServiceName);
+            FanOutResult result = pluginFanOut.invoke("updateManagedService", plugins, plugin -> plugin.updateManagedService(managedServiceName, ocl));
+            if (result.isSuccess()) {
+                lock.fence();
+                restorer.registered(ocl);
+            }
+            return result;
         });
     }
 
@@ -109,11 +352,24 @@ public class OrchestratorService implements Service {
      * @throws Exception if start fails.
      */
     public void startManagedService(String managedServiceName) throws Exception {
-        if (!storage.exists(managedServiceName)) {
-            throw new IllegalStateException("Managed service " + managedServiceName + " not found");
-        }
-        plugins.forEach(plugin -> {
-            plugin.startManagedService(managedServiceName);
+        operationManager.call(Operation.Type.START, managedServiceName, null, () -> doStart(managedServiceName)).throwIfFailed();
+    }
+
+    /**
+     * Queue the start of a managed service.
+     *
+     * @param managedServiceName the managed service name.
+     * @return the queued operation.
+     */
+    public Operation startManagedServiceAsync(String managedServiceName) {
+        return operationManager.submit(Operation.Type.START, managedServiceName, () -> doStart(managedServiceName));
+    }
+
+    private FanOutResult doStart(String managedServiceName) {
+        checkExists(managedServiceName);
+        return locks.call(managedServiceName, lock -> {
+            restorer.restore(managedServiceName);
+            return pluginFanOut.invoke("startManagedService", plugins, plugin -> plugin.startManagedService(managedServiceName));
         });
     }
 
@@ -124,11 +380,24 @@ public class OrchestratorService implements Service {
      * @throws Exception if stop fails.
      */
     public void stopManagedService(String managedServiceName) throws Exception {
-        if (!storage.exists(managedServiceName)) {
-            throw new IllegalStateException("Managed service " + managedServiceName + " not found");
-        }
-        plugins.forEach(plugin -> {
-            plugin.stopManagedService(managedServiceName);
+        operationManager.call(Operation.Type.STOP, managedServiceName, null, () -> doStop(managedServiceName)).throwIfFailed();
+    }
+
+    /**
+     * Queue the stop of a managed service.
+     *
+     * @param managedServiceName the managed service name.
+     * @return the queued operation.
+     */
+    public Operation stopManagedServiceAsync(String managedServiceName) {
+        return operationManager.submit(Operation.Type.STOP, managedServiceName, () -> doStop(managedServiceName));
+    }
+
+    private FanOutResult doStop(String managedServiceName) {
+        checkExists(managedServiceName);
+        return locks.call(managedServiceName, lock -> {
+            restorer.restore(managedServiceName);
+            return pluginFanOut.invoke("stopManagedService", plugins, plugin -> plugin.stopManagedService(managedServiceName));
         });
     }
 
@@ -139,35 +408,237 @@ public class OrchestratorService implements Service {
      * @throws Exception if unregister fails.
      */
     public void unregisterManagedService(String managedServiceName) throws Exception {
+        operationManager.call(Operation.Type.UNREGISTER, managedServiceName, null, () -> doUnregister(managedServiceName)).throwIfFailed();
+    }
+
+    /**
+     * Queue the unregistration of a managed service.
+     *
+     * @param managedServiceName the managed service name.
+     * @return the queued operation.
+     */
+    public Operation unregisterManagedServiceAsync(String managedServiceName) {
+        return operationManager.submit(Operation.Type.UNREGISTER, managedServiceName, () -> doUnregister(managedServiceName));
+    }
+
+    private FanOutResult doUnregister(String managedServiceName) {
+        checkExists(managedServiceName);
+        return locks.call(managedServiceName, lock -> {
+            restorer.restore(managedServiceName);
+            FanOutResult result = pluginFanOut.invoke("unregisterManagedService", plugins, plugin -> plugin.unregisterManagedService(managedServiceName));
+            if (result.isSuccess()) {
+                lock.fence();
+                storage.removeService(managedServiceName);
+                restorer.unregistered(managedServiceName);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Queue the registration of several managed services, optionally followed by their start.
+     *
+     * @param ocls the OCL descriptors.
+     * @param start true to queue the start of each managed service right after its registration.
+     * @return the status of each item, in request order.
+     */
+    public List<BulkItem> registerManagedServicesAsync(List<Ocl> ocls, boolean start) {
+        return ocls.stream().map(ocl -> {
+            BulkItem item = new BulkItem(ocl.getName());
+            submitRegister(item, ocl, start);
+            return item;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Fetch several OCL descriptors and queue the registration of the corresponding managed services,
+     * optionally followed by their start. The descriptors are fetched concurrently on the fetch pool, and each
+     * registration is queued as soon as its descriptor is loaded, so fetching and registering overlap.
+     *
+     * @param oclLocations the locations of the OCL descriptors.
+     * @param start true to queue the start of each managed service right after its registration.
+     * @return the status of each item, in request order.
+     */
+    public List<BulkItem> fetchManagedServicesAsync(List<String> oclLocations, boolean start) {
+        List<CompletableFuture<BulkItem>> items = oclLocations.stream().map(oclLocation -> CompletableFuture.supplyAsync(() -> {
+            BulkItem item = new BulkItem(oclLocation);
+            try {
+                submitRegister(item, oclLoader.getOcl(new URL(oclLocation)), start);
+            } catch (Exception e) {
+                log.warn("Can't load OCL descriptor {}", oclLocation, e);
+                item.rejected(e);
+            }
+            return item;
+        }, fetchExecutor)).collect(Collectors.toList());
+        return items.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    /**
+     * Queue the start of several managed services.
+     *
+     * @param managedServiceNames the managed service names.
+     * @return the status of each item, in request order.
+     */
+    public List<BulkItem> startManagedServicesAsync(List<String> managedServiceNames) {
+        return managedServiceNames.stream().map(managedServiceName -> {
+            BulkItem item = new BulkItem(managedServiceName);
+            item.setManagedServiceName(managedServiceName);
+            try {
+                item.accepted(startManagedServiceAsync(managedServiceName));
+            } catch (RuntimeException e) {
+                item.rejected(e);
+            }
+            return item;
+        }).collect(Collectors.toList());
+    }
+
+    private void submitRegister(BulkItem item, Ocl ocl, boolean start) {
+        item.setManagedServiceName(ocl.getName());
+        try {
+            item.accepted(registerManagedServiceAsync(ocl));
+        } catch (RuntimeException e) {
+            item.rejected(e);
+            return;
+        }
+        if (start) {
+            try {
+                // operations on a managed service run in submission order, so start always runs after register
+                item.accepted(startManagedServiceAsync(ocl.getName()));
+            } catch (RuntimeException e) {
+                // the register still runs
+                item.rejected(Operation.Type.START, e);
+            }
+        }
+    }
+
+    private void replay(List<OperationJournal.Entry> interrupted) {
+        if (!interrupted.isEmpty()) {
+            log.warn("Found {} lifecycle operations interrupted by the last shutdown, {} them", interrupted.size(), rollback ? "rolling back" : "resuming");
+        }
+        // operations on different managed services are replayed in parallel by the workers
+        for (OperationJournal.Entry entry : interrupted) {
+            try {
+                Operation operation = replay(entry);
+                if (operation != null) {
+                    log.info("Replaying interrupted {} on {} as operation {}", entry.getType(), entry.getManagedServiceName(), operation.getId());
+                }
+                journal.complete(entry.getId());
+            } catch (RuntimeException e) {
+                // kept in the journal, replayed on next boot
+                log.warn("Can't replay interrupted {} on {}", entry.getType(), entry.getManagedServiceName(), e);
+            }
+        }
+    }
+
+    private Operation replay(OperationJournal.Entry entry) {
+        String managedServiceName = entry.getManagedServiceName();
+        switch (entry.getType()) {
+            case REGISTER:
+                if (rollback) {
+                    return operationManager.submit(Operation.Type.UNREGISTER, managedServiceName, () -> doRollback(managedServiceName));
+                }
+                if (entry.getOcl() == null) {
+                    log.warn("Can't resume registration of {}, OCL descriptor not journaled", managedServiceName);
+                    return null;
+                }
+                return registerManagedServiceAsync(entry.getOcl());
+            case UPDATE:
+                if (rollback || entry.getOcl() == null) {
+                    log.warn("Update of {} interrupted, the managed service may need to be updated again", managedServiceName);
+                    return null;
+                }
+                return updateManagedServiceAsync(managedServiceName, entry.getOcl());
+            case START:
+                return rollback ? stopManagedServiceAsync(managedServiceName) : startManagedServiceAsync(managedServiceName);
+            case STOP:
+                return stopManagedServiceAsync(managedServiceName);
+            default:
+                return operationManager.submit(Operation.Type.UNREGISTER, managedServiceName, () -> doRollback(managedServiceName));
+        }
+    }
+
+    /**
+     * Clean the resources of a managed service which may be partially registered, so not known by the storage.
+     */
+    private FanOutResult doRollback(String managedServiceName) {
+        return locks.call(managedServiceName, lock -> {
+            restorer.restore(managedServiceName);
+            FanOutResult result = pluginFanOut.invoke("unregisterManagedService", plugins, plugin -> plugin.unregisterManagedService(managedServiceName));
+            if (result.isSuccess()) {
+                lock.fence();
+                if (storage.exists(managedServiceName)) {
+                    storage.removeService(managedServiceName);
+                }
+                restorer.unregistered(managedServiceName);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Get a lifecycle operation queued with one of the async methods.
+     *
+     * @param id the operation id.
+     * @return the operation, or null if the operation is unknown or expired.
+     */
+    public Operation getOperation(String id) {
+        return operationManager.get(id);
+    }
+
+    /**
+     * Get all lifecycle operations still tracked by the orchestrator.
+     *
+     * @return the operations.
+     */
+    public Collection<Operation> getOperations() {
+        return operationManager.list();
+    }
+
+    private void checkName(Ocl ocl) {
+        if (ocl.getName() == null) {
+            throw new IllegalArgumentException("Managed service name is required");
+        }
+        // the storages prefix the keys of a managed service with its name and this separator
+        if (ocl.getName().contains("__")) {
+            throw new IllegalArgumentException("Managed service name " + ocl.getName() + " can't contain __");
+        }
+    }
+
+    private void checkExists(String managedServiceName) {
         if (!storage.exists(managedServiceName)) {
             throw new IllegalStateException("Managed service " + managedServiceName + " not found");
         }
-        plugins.forEach(plugin -> {
-            plugin.unregisterManagedService(managedServiceName);
-        });
-        storage.remove(managedServiceName);
     }
 
     /**
-     * Get the runtime state of the managed service.
+     * Get the runtime state of the managed service, served from memory.
      *
      * @param managedServiceName the managed service name.
+     * @return the state of the managed service, with the state stored by each plugin.
      */
-    public String getManagedServiceState(String managedServiceName) throws Exception {
-        if (!storage.exists(managedServiceName)) {
+    public ServiceState getManagedServiceState(String managedServiceName) {
+        ServiceState state = stateCache.get(managedServiceName);
+        if (state == null) {
             throw new IllegalStateException("Managed service " + managedServiceName + " not found");
         }
-        StringBuilder response = new StringBuilder("[\n");
-        plugins.forEach(plugin -> {
-            if (plugin instanceof Service) {
-                response.append(storage.getKey(managedServiceName, ((Service) plugin).name(),
-                    "state"));
-                response.append("\n");
-            }
-        });
-        response.append("]\n");
+        return state;
+    }
+
+    /**
+     * Get the orchestrator replica a managed service is assigned to, when several replicas share the storage.
+     *
+     * @param managedServiceName the managed service name.
+     * @return the replica the requests for the managed service must be forwarded to, or null if it's this one.
+     */
+    public ClusterMember getOwner(String managedServiceName) {
+        if (cluster == null || managedServiceName == null || cluster.isLocal(managedServiceName)) {
+            return null;
+        }
+        return cluster.getOwner(managedServiceName);
+    }
 
-        return response.toString();
+    private Collection<String> getPluginNames() {
+        return plugins.stream().filter(plugin -> plugin instanceof Service).map(plugin -> ((Service) plugin).name()).collect(Collectors.toList());
     }
 
 }
@@ -1,6 +1,11 @@
 package org.eclipse.osc.orchestrator;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 
 public interface OrchestratorStorage {
 
@@ -52,4 +57,183 @@ public interface OrchestratorStorage {
      */
     void remove(String sid);
 
+    /**
+     * Add several plugin level key-value pairs of a managed service in the store. The default implementation
+     * stores the pairs one by one, backends able to store them at once should override it.
+     *
+     * @param sid        the managed service id.
+     * @param pluginName the name of the OrchestratorPlugin.
+     * @param values     the property values to store, by key.
+     */
+    default void storeAll(String sid, String pluginName, Map<String, String> values) {
+        values.forEach((key, value) -> store(sid, pluginName, key, value));
+    }
+
+    /**
+     * Get several plugin level values of a managed service from the store. The default implementation gets the
+     * values one by one, backends able to get them at once should override it.
+     *
+     * @param sid        the managed service id.
+     * @param pluginName the name of the OrchestratorPlugin.
+     * @param keys       the property keys to get.
+     * @return the values by key, empty for keys not in the store, like {@link #getKey(String, String, String)}.
+     */
+    default Map<String, String> getAll(String sid, String pluginName, Collection<String> keys) {
+        Map<String, String> values = new HashMap<>();
+        for (String key : keys) {
+            values.put(key, getKey(sid, pluginName, key));
+        }
+        return values;
+    }
+
+    /**
+     * Remove several plugin level keys of a managed service from the store. The default implementation stores
+     * empty values, read the same as missing keys, backends able to delete keys should override it.
+     *
+     * @param sid        the managed service id.
+     * @param pluginName the name of the OrchestratorPlugin.
+     * @param keys       the property keys to remove.
+     */
+    default void removeAll(String sid, String pluginName, Collection<String> keys) {
+        for (String key : keys) {
+            store(sid, pluginName, key, "");
+        }
+    }
+
+    /**
+     * List the plugin level keys of a managed service. The default implementation can't list keys, backends should
+     * override it.
+     *
+     * @param sid        the managed service id.
+     * @param pluginName the name of the OrchestratorPlugin.
+     * @return the property keys, empty if none or if the storage can't list them.
+     */
+    default Set<String> listKeys(String sid, String pluginName) {
+        return Set.of();
+    }
+
+    /**
+     * Remove a managed service and all its plugin level keys, unlike {@link #remove(String)} which only removes the
+     * managed service. The default implementation only removes the managed service, backends should override it.
+     * The keys are matched by the managed service id followed by {@code __}, so managed service ids can't contain
+     * {@code __}, which is rejected at registration.
+     *
+     * @param sid the managed service id.
+     */
+    default void removeService(String sid) {
+        remove(sid);
+    }
+
+    /**
+     * Get the entity tag of a plugin level value, changing each time the value is stored, so a cached value can be
+     * revalidated without reading it again. The default implementation doesn't support entity tags.
+     *
+     * @param sid        the managed service id.
+     * @param pluginName the name of the OrchestratorPlugin.
+     * @param key        the property key.
+     * @return the entity tag, or null if the value doesn't exist or the storage has no entity tags.
+     */
+    default String getETag(String sid, String pluginName, String key) {
+        return null;
+    }
+
+    /**
+     * Get a plugin level value with its version, to update it with
+     * {@link #compareAndSet(String, String, String, String, String)}. The default implementation versions the value
+     * by its entity tag, or by its content if the storage has no entity tags.
+     *
+     * @param sid        the managed service id.
+     * @param pluginName the name of the OrchestratorPlugin.
+     * @param key        the property key.
+     * @return the value and its version, an empty value with a null version if the key is not in the store.
+     */
+    default VersionedValue getWithVersion(String sid, String pluginName, String key) {
+        synchronized (this) {
+            String etag = getETag(sid, pluginName, key);
+            String value = getKey(sid, pluginName, key);
+            if (etag == null) {
+                return VersionedValue.ofContent(value);
+            }
+            return new VersionedValue(value, etag);
+        }
+    }
+
+    /**
+     * Store a plugin level value only if its version is still the expected one, so concurrent writers don't
+     * overwrite each other silently. The default implementation is atomic within this process only, like
+     * {@link #updateLease(String, UnaryOperator)}, so a storage shared by several processes must override it.
+     *
+     * @param sid             the managed service id.
+     * @param pluginName      the name of the OrchestratorPlugin.
+     * @param key             the property key.
+     * @param expectedVersion the version read with {@link #getWithVersion(String, String, String)}, null to only store
+     *                        the value if the key is not in the store.
+     * @param value           the property value to store.
+     * @return true if the value has been stored, false if the version changed meanwhile.
+     */
+    default boolean compareAndSet(String sid, String pluginName, String key, String expectedVersion, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Can't store a null value for " + key);
+        }
+        synchronized (this) {
+            if (!Objects.equals(getWithVersion(sid, pluginName, key).getVersion(), expectedVersion)) {
+                return false;
+            }
+            store(sid, pluginName, key, value);
+            return true;
+        }
+    }
+
+    /**
+     * Atomically update a lease: the update is applied to the stored lease, and its result is stored only if the
+     * lease didn't change meanwhile. The default implementation is atomic within this process only, so it's fine
+     * for a local storage, but a storage shared by several processes must override it.
+     *
+     * @param name the lease name.
+     * @param update computes the new lease from the stored one (null if none), returns null to leave it unchanged.
+     * @return the stored lease, or null if the update returned null or lost a race with a concurrent update.
+     */
+    default Lease updateLease(String name, UnaryOperator<Lease> update) {
+        synchronized (this) {
+            Lease lease = update.apply(Lease.parse(getKey(Lease.LEASE_SID, Lease.LEASE_STORAGE, name)));
+            if (lease != null) {
+                store(Lease.LEASE_SID, Lease.LEASE_STORAGE, name, lease.format());
+            }
+            return lease;
+        }
+    }
+
+    /**
+     * Acquire a lease, or extend it if already held by the owner.
+     *
+     * @param name the lease name.
+     * @param owner the owner acquiring the lease.
+     * @param ttlMillis the lease duration.
+     * @return the lease, or null if it's held by another owner.
+     */
+    default Lease acquireLease(String name, String owner, long ttlMillis) {
+        return updateLease(name, current -> Lease.acquire(current, name, owner, ttlMillis));
+    }
+
+    /**
+     * Extend a lease.
+     *
+     * @param lease the lease to extend.
+     * @param ttlMillis the new lease duration, from now.
+     * @return the extended lease, or null if it has been taken over.
+     */
+    default Lease renewLease(Lease lease, long ttlMillis) {
+        return updateLease(lease.getName(), current -> Lease.renew(current, lease, ttlMillis));
+    }
+
+    /**
+     * Release a lease, so it can be acquired right away by another owner.
+     *
+     * @param lease the lease to release.
+     * @return false if the lease has been taken over.
+     */
+    default boolean releaseLease(Lease lease) {
+        return updateLease(lease.getName(), current -> Lease.release(current, lease)) != null;
+    }
+
 }
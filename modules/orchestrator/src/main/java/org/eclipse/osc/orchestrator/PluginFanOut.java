@@ -0,0 +1,253 @@
+package org.eclipse.osc.orchestrator;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.karaf.minho.boot.spi.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Dispatch a lifecycle call to all orchestrator plugins, either one after another or concurrently
+ * on a bounded pool with a per-plugin deadline.
+ */
+@Slf4j
+public class PluginFanOut implements AutoCloseable {
+
+    /**
+     * A lifecycle call made on a single orchestrator plugin.
+     */
+    @FunctionalInterface
+    public interface PluginCall {
+
+        void call(OrchestratorPlugin plugin) throws Exception;
+
+    }
+
+    private static final MetricsRegistry.Histogram PLUGIN_CALLS = MetricsRegistry.getDefault().histogram(
+            "osc_plugin_call_seconds", "Duration of orchestrator plugin calls.", "plugin", "operation", "outcome");
+
+    private final ExecutorService executor;
+    private final long timeoutMillis;
+
+    /**
+     * Create a sequential fan-out: plugins are called in order, on the caller thread.
+     */
+    public PluginFanOut() {
+        this.executor = null;
+        this.timeoutMillis = 0;
+    }
+
+    /**
+     * Create a parallel fan-out.
+     *
+     * @param threads the maximum number of plugin calls running at the same time.
+     * @param timeoutMillis the deadline for each plugin call, counted from when the call starts running, 0 means no deadline.
+     */
+    public PluginFanOut(int threads, long timeoutMillis) {
+        this.executor = Executors.newFixedThreadPool(threads, new OrchestratorThreadFactory("osc-orchestrator-plugin"));
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Call all plugins for the given operation.
+     *
+     * @param operation the operation name, used in logs and results.
+     * @param plugins the plugins to call.
+     * @param call the call to perform on each plugin.
+     * @return the per-plugin results.
+     */
+    public FanOutResult invoke(String operation, List<OrchestratorPlugin> plugins, PluginCall call) {
+        if (executor == null || (plugins.size() < 2 && timeoutMillis == 0)) {
+            return invokeSequential(operation, plugins, call);
+        }
+        return invokeParallel(operation, plugins, call);
+    }
+
+    private FanOutResult invokeSequential(String operation, List<OrchestratorPlugin> plugins, PluginCall call) {
+        FanOutResult result = new FanOutResult(operation);
+        for (OrchestratorPlugin plugin : plugins) {
+            long start = System.currentTimeMillis();
+            try {
+                timed(operation, plugin, call);
+                result.success(pluginName(plugin), System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                // same as calling the plugins in a loop: the remaining plugins are not called
+                result.failure(pluginName(plugin), System.currentTimeMillis() - start, e);
+                break;
+            }
+        }
+        return result;
+    }
+
+    private FanOutResult invokeParallel(String operation, List<OrchestratorPlugin> plugins, PluginCall call) {
+        FanOutResult result = new FanOutResult(operation);
+        long start = System.currentTimeMillis();
+        Map<PluginTask, Future<?>> futures = new LinkedHashMap<>();
+        for (OrchestratorPlugin plugin : plugins) {
+            PluginTask task = new PluginTask(operation, plugin, call);
+            futures.put(task, executor.submit(task));
+        }
+        for (Map.Entry<PluginTask, Future<?>> entry : futures.entrySet()) {
+            PluginTask task = entry.getKey();
+            String name = pluginName(task.plugin);
+            Future<?> future = entry.getValue();
+            try {
+                if (timeoutMillis == 0) {
+                    future.get();
+                } else {
+                    // the deadline starts when the call runs, not while it waits for a pool thread
+                    task.running.await();
+                    future.get(Math.max(0, task.start + timeoutMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                }
+                result.success(name, System.currentTimeMillis() - start);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                log.warn("Plugin {} didn't complete {} within {} ms", name, operation, timeoutMillis);
+                result.failure(name, System.currentTimeMillis() - start,
+                        new TimeoutException("Plugin " + name + " didn't complete " + operation + " within " + timeoutMillis + " ms"));
+            } catch (ExecutionException e) {
+                result.failure(name, System.currentTimeMillis() - start, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(pending -> pending.cancel(true));
+                result.failure(name, System.currentTimeMillis() - start, e);
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A plugin call submitted to the pool, recording when it starts running.
+     */
+    private static class PluginTask implements Callable<Void> {
+
+        private final String operation;
+        private final OrchestratorPlugin plugin;
+        private final PluginCall call;
+        private final CountDownLatch running = new CountDownLatch(1);
+        private volatile long start;
+
+        PluginTask(String operation, OrchestratorPlugin plugin, PluginCall call) {
+            this.operation = operation;
+            this.plugin = plugin;
+            this.call = call;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            start = System.currentTimeMillis();
+            running.countDown();
+            timed(operation, plugin, call);
+            return null;
+        }
+
+    }
+
+    private static void timed(String operation, OrchestratorPlugin plugin, PluginCall call) throws Exception {
+        long start = System.nanoTime();
+        String outcome = "failure";
+        try {
+            call.call(plugin);
+            outcome = "success";
+        } finally {
+            PLUGIN_CALLS.observeNanos(System.nanoTime() - start, pluginName(plugin), operation, outcome);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Get the name used to identify a plugin.
+     *
+     * @param plugin the orchestrator plugin.
+     * @return the service name if the plugin is a service, the class name else.
+     */
+    public static String pluginName(OrchestratorPlugin plugin) {
+        if (plugin instanceof Service) {
+            return ((Service) plugin).name();
+        }
+        return plugin.getClass().getName();
+    }
+
+    /**
+     * Aggregated result of a fan-out, one entry per plugin.
+     */
+    @Data
+    public static class FanOutResult {
+
+        private final String operation;
+        private final List<PluginResult> results = new ArrayList<>();
+
+        void success(String plugin, long duration) {
+            results.add(new PluginResult(plugin, true, duration, null));
+        }
+
+        void failure(String plugin, long duration, Throwable cause) {
+            log.warn("Plugin {} failed on {}", plugin, operation, cause);
+            results.add(new PluginResult(plugin, false, duration, cause));
+        }
+
+        public boolean isSuccess() {
+            return results.stream().allMatch(PluginResult::isSuccess);
+        }
+
+        /**
+         * Throw if at least one plugin failed. A single failure is rethrown as is, so callers keep seeing the
+         * plugin exception.
+         *
+         * @throws Exception the plugin failure.
+         */
+        public void throwIfFailed() throws Exception {
+            List<PluginResult> failures = results.stream().filter(result -> !result.isSuccess()).collect(Collectors.toList());
+            if (failures.isEmpty()) {
+                return;
+            }
+            if (failures.size() == 1 && failures.get(0).getCause() instanceof Exception) {
+                throw (Exception) failures.get(0).getCause();
+            }
+            StringBuilder message = new StringBuilder(operation).append(" failed on plugin(s):");
+            failures.forEach(failure -> message.append(" ").append(failure.getPlugin()));
+            IllegalStateException exception = new IllegalStateException(message.toString());
+            failures.forEach(failure -> exception.addSuppressed(failure.getCause()));
+            throw exception;
+        }
+    }
+
+    /**
+     * Result of a call on one plugin, the duration is in milliseconds.
+     */
+    @Data
+    public static class PluginResult {
+
+        private final String plugin;
+        private final boolean success;
+        private final long duration;
+        @JsonIgnore
+        private final Throwable cause;
+
+        public String getError() {
+            return cause == null ? null : cause.getMessage();
+        }
+
+    }
+
+}
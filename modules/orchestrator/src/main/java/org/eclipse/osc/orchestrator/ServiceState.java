@@ -0,0 +1,49 @@
+package org.eclipse.osc.orchestrator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Snapshot of the state of a managed service: the lifecycle state known by the orchestrator, and the state
+ * reported by each plugin. Snapshots are immutable, any change creates a new snapshot with a new version.
+ */
+@Data
+public class ServiceState {
+
+    private final String managedServiceName;
+
+    /**
+     * The lifecycle state, null if unknown (loaded from storage, no operation since the orchestrator started).
+     */
+    private final ManagedServiceState state;
+
+    /**
+     * The version of the snapshot, increasing with each change, and across orchestrator restarts.
+     */
+    private final long version;
+
+    private final long updated = System.currentTimeMillis();
+
+    /**
+     * The state stored by each plugin, as JSON when the plugin stored a JSON document.
+     */
+    private final Map<String, JsonNode> plugins;
+
+    ServiceState(String managedServiceName, ManagedServiceState state, long version, Map<String, JsonNode> plugins) {
+        this.managedServiceName = managedServiceName;
+        this.state = state;
+        this.version = version;
+        this.plugins = Collections.unmodifiableMap(plugins);
+    }
+
+    /**
+     * @return the entity tag of the snapshot, for HTTP conditional requests.
+     */
+    public String getEtag() {
+        return "\"" + version + "\"";
+    }
+
+}
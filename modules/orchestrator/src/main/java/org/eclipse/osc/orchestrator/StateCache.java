@@ -0,0 +1,136 @@
+package org.eclipse.osc.orchestrator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-memory state of the managed services, served without touching the storage. The plugins state is read from
+ * the storage once per completed operation (when the plugins write it), or on first access after a restart.
+ */
+@Slf4j
+public class StateCache {
+
+    private static final String STATE_KEY = "state";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, ServiceState> states = new ConcurrentHashMap<>();
+    // seeded with the clock so versions (and entity tags) keep increasing across restarts
+    private final AtomicLong versions = new AtomicLong(System.currentTimeMillis());
+    private final OrchestratorStorage storage;
+    private final Supplier<Collection<String>> pluginNames;
+
+    /**
+     * @param storage the storage holding the plugins state.
+     * @param pluginNames the names of the plugins storing a state.
+     */
+    public StateCache(OrchestratorStorage storage, Supplier<Collection<String>> pluginNames) {
+        this.storage = storage;
+        this.pluginNames = pluginNames;
+    }
+
+    /**
+     * Get the state of a managed service, loading it from the storage if not yet known.
+     *
+     * @param managedServiceName the managed service name.
+     * @return the state, or null if the managed service doesn't exist.
+     */
+    public ServiceState get(String managedServiceName) {
+        ServiceState state = states.get(managedServiceName);
+        if (state != null) {
+            return state;
+        }
+        if (!storage.exists(managedServiceName)) {
+            return null;
+        }
+        ServiceState loaded = new ServiceState(managedServiceName, null, versions.incrementAndGet(), load(managedServiceName));
+        // an operation may have updated the state in the meantime, its snapshot wins
+        state = states.putIfAbsent(managedServiceName, loaded);
+        return state == null ? loaded : state;
+    }
+
+    /**
+     * Update the state of a managed service from an operation: the lifecycle state changes when the operation starts,
+     * and the plugins state is reloaded from the storage when it completes.
+     *
+     * @param operation the operation which just started or completed.
+     */
+    public void update(Operation operation) {
+        String managedServiceName = operation.getManagedServiceName();
+        ManagedServiceState state = ManagedServiceState.of(operation);
+        if (state == null) {
+            return;
+        }
+        if (state == ManagedServiceState.UNREGISTERED) {
+            states.remove(managedServiceName);
+            return;
+        }
+        Map<String, JsonNode> plugins = null;
+        if (operation.isDone()) {
+            if (!storage.exists(managedServiceName)) {
+                // an operation on an unknown managed service, or a failed register: nothing to serve
+                states.remove(managedServiceName);
+                return;
+            }
+            plugins = load(managedServiceName);
+        } else if (operation.getType() != Operation.Type.REGISTER && !states.containsKey(managedServiceName)
+                && !storage.exists(managedServiceName)) {
+            return;
+        }
+        Map<String, JsonNode> reloaded = plugins;
+        states.compute(managedServiceName, (name, previous) -> {
+            Map<String, JsonNode> current = reloaded;
+            if (current == null) {
+                current = previous == null ? new LinkedHashMap<>() : previous.getPlugins();
+            }
+            return new ServiceState(name, state, versions.incrementAndGet(), current);
+        });
+    }
+
+    /**
+     * Forget the state of a managed service, the next read loads it from the storage.
+     *
+     * @param managedServiceName the managed service name.
+     */
+    public void invalidate(String managedServiceName) {
+        states.remove(managedServiceName);
+    }
+
+    /**
+     * @return the number of managed services in the cache.
+     */
+    public int size() {
+        return states.size();
+    }
+
+    private Map<String, JsonNode> load(String managedServiceName) {
+        Map<String, JsonNode> plugins = new LinkedHashMap<>();
+        for (String pluginName : pluginNames.get()) {
+            String value;
+            try {
+                value = storage.getKey(managedServiceName, pluginName, STATE_KEY);
+            } catch (Exception e) {
+                log.warn("Can't read {} state of {}", pluginName, managedServiceName, e);
+                continue;
+            }
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            try {
+                plugins.put(pluginName, mapper.readTree(value));
+            } catch (Exception e) {
+                plugins.put(pluginName, TextNode.valueOf(value));
+            }
+        }
+        return plugins;
+    }
+
+}
@@ -0,0 +1,21 @@
+package org.eclipse.osc.orchestrator;
+
+import lombok.Data;
+
+/**
+ * A managed service state transition, published on the {@link StateEventBus}.
+ */
+@Data
+public class StateEvent {
+
+    /**
+     * Sequence number of the event, increasing for each event published on the bus.
+     */
+    private final long id;
+    private final String managedServiceName;
+    private final ManagedServiceState state;
+    private final String operationId;
+    private final String error;
+    private final long timestamp = System.currentTimeMillis();
+
+}
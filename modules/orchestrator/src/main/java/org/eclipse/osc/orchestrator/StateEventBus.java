@@ -0,0 +1,119 @@
+package org.eclipse.osc.orchestrator;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process bus of managed service state transitions. Publishing never blocks: each subscriber has its own
+ * bounded queue, and events are dropped for a subscriber that doesn't keep up.
+ */
+@Slf4j
+public class StateEventBus implements AutoCloseable {
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final int capacity;
+
+    /**
+     * @param capacity the maximum number of events waiting for each subscriber.
+     */
+    public StateEventBus(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Publish the state transition implied by an operation, if any.
+     *
+     * @param operation the operation which just started or completed.
+     */
+    public void publish(Operation operation) {
+        ManagedServiceState state = ManagedServiceState.of(operation);
+        if (state == null) {
+            return;
+        }
+        StateEvent event = new StateEvent(sequence.incrementAndGet(), operation.getManagedServiceName(), state,
+                operation.getId(), operation.getError());
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Subscribe to state transitions.
+     *
+     * @param managedServiceName only receive the events of this managed service, or null for all.
+     * @return the subscription, to close when done.
+     */
+    public Subscription subscribe(String managedServiceName) {
+        Subscription subscription = new Subscription(managedServiceName);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * @return the number of active subscriptions.
+     */
+    public int size() {
+        return subscriptions.size();
+    }
+
+    @Override
+    public void close() {
+        subscriptions.forEach(Subscription::close);
+    }
+
+    public class Subscription implements AutoCloseable {
+
+        private final String managedServiceName;
+        private final BlockingQueue<StateEvent> events = new ArrayBlockingQueue<>(capacity);
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile boolean closed;
+
+        private Subscription(String managedServiceName) {
+            this.managedServiceName = managedServiceName;
+        }
+
+        private void offer(StateEvent event) {
+            if (managedServiceName != null && !managedServiceName.equals(event.getManagedServiceName())) {
+                return;
+            }
+            if (!events.offer(event) && dropped.incrementAndGet() == 1) {
+                log.warn("State events subscriber is too slow, dropping events");
+            }
+        }
+
+        /**
+         * Wait for the next event.
+         *
+         * @return the next event, or null if none was published in time.
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        public StateEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return events.poll(timeout, unit);
+        }
+
+        /**
+         * @return the number of events dropped because the queue was full.
+         */
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.eclipse.osc.orchestrator;
+
+import lombok.Data;
+
+/**
+ * A plugin level value read with its version, to update it with
+ * {@link OrchestratorStorage#compareAndSet(String, String, String, String, String)} only if it didn't change since.
+ */
+@Data
+public class VersionedValue {
+
+    /**
+     * The value, empty if the key is not in the store.
+     */
+    private final String value;
+
+    /**
+     * The version, changing each time the value is stored, null if the key is not in the store. Versions are opaque:
+     * a counter for the file storages, an entity tag for the object storages.
+     */
+    private final String version;
+
+    /**
+     * Version a value by its content, for the storages without versions: storing the same value again keeps the
+     * version.
+     *
+     * @param value the value, empty if the key is not in the store.
+     * @return the versioned value.
+     */
+    static VersionedValue ofContent(String value) {
+        if (value == null || value.isEmpty()) {
+            return new VersionedValue("", null);
+        }
+        return new VersionedValue(value, ContentAddressedOrchestratorStorage.hash(value));
+    }
+
+}
@@ -0,0 +1,162 @@
+package org.eclipse.osc.orchestrator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingOrchestratorStorageTest {
+
+    @Test
+    public void writeThroughTest() throws Exception {
+        RemoteStorage remote = new RemoteStorage();
+        try (CachingOrchestratorStorage storage = new CachingOrchestratorStorage(remote, 2, 60000, 100,
+                CachingOrchestratorStorage.Mode.WRITE_THROUGH, 1000, false)) {
+            storage.store("service");
+            storage.store("service", "plugin", "state", "active");
+            Assertions.assertEquals("active", remote.values.get("service__plugin__state"));
+            for (int i = 0; i < 10; i++) {
+                Assertions.assertTrue(storage.exists("service"));
+                Assertions.assertEquals("active", storage.getKey("service", "plugin", "state"));
+            }
+            Assertions.assertEquals(0, remote.reads.get());
+
+            // missing values are cached until their shorter time to live expires
+            Assertions.assertFalse(storage.exists("unknown"));
+            Assertions.assertEquals("", storage.getKey("service", "plugin", "unknown"));
+            Assertions.assertEquals("", storage.getKey("service", "plugin", "unknown"));
+            Assertions.assertEquals(2, remote.reads.get());
+            remote.values.put("service__plugin__unknown", "known");
+            Thread.sleep(150);
+            Assertions.assertEquals("known", storage.getKey("service", "plugin", "unknown"));
+
+            // least recently used first
+            Assertions.assertEquals(2, storage.size());
+            remote.reads.set(0);
+            Assertions.assertEquals("active", storage.getKey("service", "plugin", "state"));
+            Assertions.assertEquals(1, remote.reads.get());
+
+            Map<String, String> values = storage.getAll("service", "plugin", List.of("state", "unknown"));
+            Assertions.assertEquals(Map.of("state", "active", "unknown", "known"), values);
+
+            storage.remove("service");
+            Assertions.assertFalse(storage.exists("service"));
+            Assertions.assertFalse(remote.exists("service"));
+        }
+    }
+
+    @Test
+    public void writeBehindTest() {
+        RemoteStorage remote = new RemoteStorage();
+        try (CachingOrchestratorStorage storage = new CachingOrchestratorStorage(remote, 16, 60000, 0,
+                CachingOrchestratorStorage.Mode.WRITE_BEHIND, 3600000, false)) {
+            storage.store("service");
+            for (int i = 0; i < 10; i++) {
+                storage.store("service", "plugin", "state", "state-" + i);
+            }
+            storage.storeAll("service", "plugin", Map.of("applied", "{}", "tfstate", "{}"));
+            storage.removeAll("service", "plugin", List.of("tfstate"));
+            // the services are written through
+            Assertions.assertEquals(Set.of("service"), remote.values.keySet());
+            Assertions.assertEquals("state-9", storage.getKey("service", "plugin", "state"));
+            Assertions.assertEquals("", storage.getKey("service", "plugin", "tfstate"));
+
+            // the writes on a key are coalesced
+            storage.flush();
+            Assertions.assertEquals(1, remote.writes.get());
+            Assertions.assertEquals("state-9", remote.values.get("service__plugin__state"));
+            Assertions.assertEquals("{}", remote.values.get("service__plugin__applied"));
+            Assertions.assertFalse(remote.values.containsKey("service__plugin__tfstate"));
+
+            storage.store("service", "plugin", "state", "last");
+        }
+        // written on close
+        Assertions.assertEquals("last", remote.values.get("service__plugin__state"));
+    }
+
+    @Test
+    public void revalidateTest() throws Exception {
+        RemoteStorage remote = new RemoteStorage();
+        try (CachingOrchestratorStorage storage = new CachingOrchestratorStorage(remote, 16, 50, 0,
+                CachingOrchestratorStorage.Mode.WRITE_THROUGH, 1000, true)) {
+            remote.store("service", "plugin", "state", "active");
+            Assertions.assertEquals("active", storage.getKey("service", "plugin", "state"));
+            Thread.sleep(100);
+            // unchanged, not read again
+            Assertions.assertEquals("active", storage.getKey("service", "plugin", "state"));
+            Assertions.assertEquals(1, remote.reads.get());
+
+            remote.store("service", "plugin", "state", "stopped");
+            Thread.sleep(100);
+            Assertions.assertEquals("stopped", storage.getKey("service", "plugin", "state"));
+            Assertions.assertEquals(2, remote.reads.get());
+        }
+    }
+
+    static class RemoteStorage implements OrchestratorStorage {
+
+        private final Map<String, String> values = new ConcurrentHashMap<>();
+        private final Map<String, Integer> versions = new ConcurrentHashMap<>();
+        private final AtomicInteger reads = new AtomicInteger();
+        private final AtomicInteger writes = new AtomicInteger();
+
+        @Override
+        public void store(String sid) {
+            values.put(sid, sid);
+        }
+
+        @Override
+        public void store(String sid, String pluginName, String key, String value) {
+            String objectKey = sid + "__" + pluginName + "__" + key;
+            values.put(objectKey, value);
+            versions.merge(objectKey, 1, Integer::sum);
+        }
+
+        @Override
+        public void storeAll(String sid, String pluginName, Map<String, String> values) {
+            writes.incrementAndGet();
+            values.forEach((key, value) -> store(sid, pluginName, key, value));
+        }
+
+        @Override
+        public void removeAll(String sid, String pluginName, Collection<String> keys) {
+            for (String key : keys) {
+                values.remove(sid + "__" + pluginName + "__" + key);
+            }
+        }
+
+        @Override
+        public String getKey(String sid, String pluginName, String key) {
+            reads.incrementAndGet();
+            return values.getOrDefault(sid + "__" + pluginName + "__" + key, "");
+        }
+
+        @Override
+        public String getETag(String sid, String pluginName, String key) {
+            Integer version = versions.get(sid + "__" + pluginName + "__" + key);
+            return version == null ? null : String.valueOf(version);
+        }
+
+        @Override
+        public boolean exists(String sid) {
+            reads.incrementAndGet();
+            return values.containsKey(sid);
+        }
+
+        @Override
+        public Set<String> services() {
+            return Set.copyOf(values.keySet());
+        }
+
+        @Override
+        public void remove(String sid) {
+            values.remove(sid);
+        }
+    }
+
+}
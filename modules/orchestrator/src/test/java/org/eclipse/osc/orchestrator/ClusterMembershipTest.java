@@ -0,0 +1,75 @@
+package org.eclipse.osc.orchestrator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ClusterMembershipTest {
+
+    @Test
+    public void hashRingTest() {
+        HashRing ring = new HashRing(List.of("a", "b", "c"), ClusterMembership.VIRTUAL_NODES);
+        HashRing grown = new HashRing(List.of("a", "b", "c", "d"), ClusterMembership.VIRTUAL_NODES);
+        Map<String, Integer> counts = new HashMap<>();
+        int moved = 0;
+        for (int i = 0; i < 3000; i++) {
+            String key = "service-" + i;
+            counts.merge(ring.get(key), 1, Integer::sum);
+            if (!ring.get(key).equals(grown.get(key))) {
+                // keys only move to the new node
+                Assertions.assertEquals("d", grown.get(key));
+                moved++;
+            }
+        }
+        Assertions.assertEquals(3, counts.size());
+        counts.values().forEach(count -> Assertions.assertTrue(count > 600, "unbalanced ring " + counts));
+        Assertions.assertTrue(moved > 300 && moved < 1200, moved + " keys moved");
+        Assertions.assertNull(new HashRing(List.of(), 1).get("service"));
+    }
+
+    @Test
+    public void membershipTest() throws Exception {
+        StateCacheTest.CountingStorage storage = new StateCacheTest.CountingStorage();
+        storage.store(ClusterMembership.CLUSTER_SID);
+        ClusterMembership first = new ClusterMembership(storage, "first", "http://first:8080", 10, 50);
+        ClusterMembership second = new ClusterMembership(storage, "second", "http://second:8080", 10, 50);
+
+        first.heartbeat();
+        Assertions.assertEquals(1, first.getMembers().size());
+        Assertions.assertTrue(first.isLocal("service"));
+
+        second.heartbeat();
+        first.heartbeat();
+        Assertions.assertEquals(2, first.getMembers().size());
+        Assertions.assertEquals(2, second.getMembers().size());
+        int local = 0;
+        for (int i = 0; i < 100; i++) {
+            String service = "service-" + i;
+            // both replicas agree on the owner
+            Assertions.assertEquals(first.getOwner(service).getId(), second.getOwner(service).getId());
+            Assertions.assertNotEquals(first.isLocal(service), second.isLocal(service));
+            local += first.isLocal(service) ? 1 : 0;
+        }
+        Assertions.assertTrue(local > 0 && local < 100);
+        Assertions.assertEquals("http://second:8080", first.getMembers().stream()
+                .filter(member -> member.getId().equals("second")).findFirst().get().getUrl());
+
+        // the second replica stops its heartbeats
+        Thread.sleep(100);
+        first.heartbeat();
+        Assertions.assertEquals(1, first.getMembers().size());
+        Assertions.assertTrue(first.isLocal("service-1"));
+
+        // back, then leaving
+        second.heartbeat();
+        first.heartbeat();
+        Assertions.assertEquals(2, first.getMembers().size());
+        second.close();
+        first.heartbeat();
+        Assertions.assertEquals(1, first.getMembers().size());
+    }
+
+}
@@ -0,0 +1,171 @@
+package org.eclipse.osc.orchestrator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class ContentAddressedOrchestratorStorageTest {
+
+    private static final String BLOBS = ContentAddressedOrchestratorStorage.BLOB_SID + "__gzip__";
+
+    @Test
+    public void dedupTest() {
+        MapStorage backend = new MapStorage();
+        ContentAddressedOrchestratorStorage storage = new ContentAddressedOrchestratorStorage(backend, 100);
+        String tfState = "{\"version\": 4, \"resources\": [" + "{\"type\": \"huaweicloud_vpc\"},".repeat(100) + "]}";
+
+        storage.store("service", "plugin", "tfstate", tfState);
+        storage.store("service", "plugin", "state", "active");
+        Assertions.assertEquals(tfState, storage.getKey("service", "plugin", "tfstate"));
+        Assertions.assertEquals("active", storage.getKey("service", "plugin", "state"));
+        Assertions.assertEquals(Map.of("tfstate", tfState, "state", "active"),
+                storage.getAll("service", "plugin", List.of("tfstate", "state")));
+        // compressed, referenced
+        Assertions.assertTrue(backend.values.get("service__plugin__tfstate").startsWith(ContentAddressedOrchestratorStorage.REFERENCE));
+        Assertions.assertTrue(blobs(backend).get(0).length() < tfState.length() / 4);
+
+        // unchanged, nothing uploaded
+        int writes = backend.writes.get();
+        storage.store("service", "plugin", "tfstate", tfState);
+        Assertions.assertEquals(writes, backend.writes.get());
+
+        // shared by the keys holding the same value
+        storage.store("other", "plugin", "tfstate", tfState);
+        Assertions.assertEquals(1, blobs(backend).size());
+
+        // released with the last reference
+        storage.store("service", "plugin", "tfstate", "{}");
+        Assertions.assertEquals("{}", storage.getKey("service", "plugin", "tfstate"));
+        Assertions.assertEquals(1, blobs(backend).size());
+        storage.removeAll("other", "plugin", List.of("tfstate"));
+        Assertions.assertEquals(0, blobs(backend).size());
+        Assertions.assertEquals("", storage.getKey("other", "plugin", "tfstate"));
+
+        // a small value looking like a reference is kept as is
+        String reference = ContentAddressedOrchestratorStorage.REFERENCE + "0";
+        storage.store("service", "plugin", "state", reference);
+        Assertions.assertEquals(reference, storage.getKey("service", "plugin", "state"));
+    }
+
+    @Test
+    public void removeServiceTest() {
+        MapStorage backend = new MapStorage();
+        ContentAddressedOrchestratorStorage storage = new ContentAddressedOrchestratorStorage(backend, 100);
+        String tfState = "x".repeat(1000);
+        storage.store("service");
+        storage.store("service", "plugin", "tfstate", tfState);
+        storage.store("service", "other", "tfstate", tfState + "y");
+        Assertions.assertEquals(2, blobs(backend).size());
+
+        storage.removeService("service");
+        Assertions.assertEquals(0, blobs(backend).size());
+        Assertions.assertTrue(backend.values.isEmpty(), backend.values.toString());
+    }
+
+    @Test
+    public void replicasTest() throws Exception {
+        MapStorage backend = new MapStorage();
+        // each replica with its own instance, sharing the storage only
+        List<ContentAddressedOrchestratorStorage> replicas = List.of(
+                new ContentAddressedOrchestratorStorage(backend, 100), new ContentAddressedOrchestratorStorage(backend, 100));
+        String tfState = "x".repeat(1000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                ContentAddressedOrchestratorStorage storage = replicas.get(t % 2);
+                String service = "service-" + t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        storage.store(service, "plugin", "tfstate", tfState);
+                        // never removed while referenced
+                        Assertions.assertEquals(tfState, storage.getKey(service, "plugin", "tfstate"));
+                        storage.removeAll(service, "plugin", List.of("tfstate"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(0, blobs(backend).size());
+        Assertions.assertTrue(backend.values.isEmpty(), backend.values.toString());
+    }
+
+    private static List<String> blobs(MapStorage backend) {
+        return backend.values.entrySet().stream().filter(entry -> entry.getKey().startsWith(BLOBS))
+                .map(Map.Entry::getValue).collect(Collectors.toList());
+    }
+
+    static class MapStorage implements OrchestratorStorage {
+
+        // synchronized, like the default compare and set
+        private final Map<String, String> values = new TreeMap<>();
+        private final AtomicInteger writes = new AtomicInteger();
+
+        @Override
+        public synchronized void store(String sid) {
+            values.put(sid, sid);
+        }
+
+        @Override
+        public synchronized void store(String sid, String pluginName, String key, String value) {
+            writes.incrementAndGet();
+            values.put(sid + "__" + pluginName + "__" + key, value);
+        }
+
+        @Override
+        public synchronized String getKey(String sid, String pluginName, String key) {
+            return values.getOrDefault(sid + "__" + pluginName + "__" + key, "");
+        }
+
+        @Override
+        public synchronized void removeAll(String sid, String pluginName, Collection<String> keys) {
+            for (String key : keys) {
+                values.remove(sid + "__" + pluginName + "__" + key);
+            }
+        }
+
+        @Override
+        public synchronized Set<String> listKeys(String sid, String pluginName) {
+            String prefix = sid + "__" + pluginName + "__";
+            return values.keySet().stream().filter(key -> key.startsWith(prefix))
+                    .map(key -> key.substring(prefix.length())).collect(Collectors.toSet());
+        }
+
+        @Override
+        public synchronized void removeService(String sid) {
+            values.keySet().removeIf(key -> key.equals(sid) || key.startsWith(sid + "__"));
+        }
+
+        @Override
+        public synchronized boolean exists(String sid) {
+            return values.containsKey(sid);
+        }
+
+        @Override
+        public synchronized Set<String> services() {
+            return values.entrySet().stream().filter(entry -> entry.getKey().equals(entry.getValue()))
+                    .map(Map.Entry::getKey).collect(Collectors.toSet());
+        }
+
+        @Override
+        public synchronized void remove(String sid) {
+            values.remove(sid);
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.eclipse.osc.orchestrator;
+
+import org.apache.karaf.minho.boot.service.ConfigService;
+import org.apache.karaf.minho.boot.service.ServiceRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class FileOrchestratorStorageTest {
+
+    private static ServiceRegistry registry(String name, boolean clean) {
+        File directory = new File("target/file-storage-" + name);
+        File[] files = directory.listFiles();
+        if (clean && files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        ConfigService configService = new ConfigService();
+        configService.setProperties(Map.of("orchestrator.store.filename", new File(directory, "orchestrator.properties").getPath()));
+        ServiceRegistry serviceRegistry = new ServiceRegistry();
+        serviceRegistry.add(configService);
+        return serviceRegistry;
+    }
+
+    @Test
+    public void removeTest() throws Exception {
+        FileOrchestratorStorage storage = new FileOrchestratorStorage(registry("remove", true));
+        storage.store("service");
+        storage.storeAll("service", "plugin", Map.of("state", "active", "applied", "{}", "tfstate", "{}"));
+        storage.store("other");
+        storage.store("other", "plugin", "state", "active");
+
+        // an immutable collection of keys, some unknown
+        storage.removeAll("service", "plugin", List.of("tfstate", "unknown"));
+        Assertions.assertEquals(Set.of("state", "applied"), storage.listKeys("service", "plugin"));
+        Assertions.assertEquals("", storage.getKey("service", "plugin", "tfstate"));
+
+        storage.removeService("service");
+        Assertions.assertEquals(Set.of(), storage.listKeys("service", "plugin"));
+        Assertions.assertFalse(storage.exists("service"));
+        Assertions.assertEquals(Set.of("other"), storage.services());
+        Assertions.assertEquals(Set.of("state"), storage.listKeys("other", "plugin"));
+
+        // the index is rebuilt from the persisted keys
+        FileOrchestratorStorage restarted = new FileOrchestratorStorage(registry("remove", false));
+        Assertions.assertEquals(Set.of(), restarted.listKeys("service", "plugin"));
+        Assertions.assertEquals(Set.of("state"), restarted.listKeys("other", "plugin"));
+        Assertions.assertEquals(Set.of("other"), restarted.services());
+    }
+
+}
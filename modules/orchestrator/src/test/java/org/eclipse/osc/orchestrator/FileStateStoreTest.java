@@ -0,0 +1,193 @@
+package org.eclipse.osc.orchestrator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class FileStateStoreTest {
+
+    private static LogStructuredStore open(String name, boolean clean) {
+        File directory = new File("target/state-store-" + name);
+        File[] files = directory.listFiles();
+        if (clean && files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        return new LogStructuredStore(directory, "test", LogStructuredStore.DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    @Test
+    public void durabilityTest() throws Exception {
+        for (FileStateStore.Durability durability : FileStateStore.Durability.values()) {
+            String name = durability.name().toLowerCase();
+            try (FileStateStore store = new FileStateStore(open(name, true), durability, 50)) {
+                store.put("service", "service");
+                store.put("service__plugin__state", "first");
+                store.put("service__plugin__state", "second");
+                store.put("other", "other");
+                store.remove("other");
+                store.remove("unknown");
+                Assertions.assertEquals("second", store.get("service__plugin__state"));
+                Assertions.assertFalse(store.contains("other"));
+            }
+            // pending writes are flushed on close
+            try (FileStateStore store = new FileStateStore(open(name, false), durability, 50)) {
+                Assertions.assertEquals("second", store.get("service__plugin__state"), name);
+                Assertions.assertEquals("service", store.get("service"), name);
+                Assertions.assertFalse(store.contains("other"), name);
+            }
+        }
+    }
+
+    @Test
+    public void writeTest() throws Exception {
+        LogStructuredStore log = open("write", true);
+        try (FileStateStore store = new FileStateStore(log, FileStateStore.Durability.GROUP, 50)) {
+            store.put("service__plugin__tfstate", "{}");
+            Map<String, String> changes = new HashMap<>();
+            changes.put("service__plugin__state", "active");
+            changes.put("service__plugin__applied", "{}");
+            changes.put("service__plugin__tfstate", null);
+            store.write(changes);
+            // persisted once written
+            Assertions.assertEquals("active", log.get("service__plugin__state"));
+            Assertions.assertEquals("{}", log.get("service__plugin__applied"));
+            Assertions.assertFalse(log.contains("service__plugin__tfstate"));
+            Assertions.assertFalse(store.contains("service__plugin__tfstate"));
+        }
+    }
+
+    @Test
+    public void retryTest() throws Exception {
+        open("retry", true).close();
+        AtomicBoolean failing = new AtomicBoolean(true);
+        LogStructuredStore log = new LogStructuredStore(new File("target/state-store-retry"), "test", LogStructuredStore.DEFAULT_COMPACTION_THRESHOLD) {
+            @Override
+            public void write(Map<String, String> changes) {
+                if (failing.getAndSet(false)) {
+                    throw new IllegalStateException("No space left on device");
+                }
+                super.write(changes);
+            }
+        };
+        try (FileStateStore store = new FileStateStore(log, FileStateStore.Durability.GROUP, 50)) {
+            // already visible, so the write doesn't fail but waits for the retry
+            store.put("service", "service");
+            Assertions.assertFalse(failing.get());
+            Assertions.assertEquals("service", log.get("service"));
+        }
+    }
+
+    @Test
+    public void periodicTest() throws Exception {
+        LogStructuredStore log = open("flush", true);
+        try (FileStateStore store = new FileStateStore(log, FileStateStore.Durability.PERIODIC, 50)) {
+            store.put("service", "service");
+            // visible right away, persisted by the flusher
+            Assertions.assertEquals("service", store.get("service"));
+            for (int i = 0; i < 100 && !log.contains("service"); i++) {
+                Thread.sleep(20);
+            }
+            Assertions.assertEquals("service", log.get("service"));
+        }
+    }
+
+    @Test
+    public void concurrentTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (FileStateStore store = new FileStateStore(open("concurrent", true), FileStateStore.Durability.GROUP, 50)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                String service = "service-" + t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        store.put(service + "__plugin__state", String.valueOf(i));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        try (FileStateStore store = new FileStateStore(open("concurrent", false), FileStateStore.Durability.GROUP, 50)) {
+            for (int t = 0; t < 8; t++) {
+                Assertions.assertEquals("99", store.get("service-" + t + "__plugin__state"));
+            }
+        }
+    }
+
+    @Test
+    public void sameKeyTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        String last;
+        try (FileStateStore store = new FileStateStore(open("same-key", true), FileStateStore.Durability.GROUP, 50)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                String writer = "writer-" + t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        store.write(Map.of("service__plugin__state", writer + "-" + i, writer + "__plugin__state", String.valueOf(i)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            last = store.get("service__plugin__state");
+        } finally {
+            executor.shutdownNow();
+        }
+        try (FileStateStore store = new FileStateStore(open("same-key", false), FileStateStore.Durability.GROUP, 50)) {
+            // the last value applied in memory, whatever the order the writers queued their groups in
+            Assertions.assertEquals(last, store.get("service__plugin__state"));
+        }
+    }
+
+    @Test
+    public void compareAndPutTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (FileStateStore store = new FileStateStore(open("compare-and-put", true), FileStateStore.Durability.GROUP, 50)) {
+            Assertions.assertNull(store.getWithVersion("service__plugin__count").getVersion());
+            Assertions.assertTrue(store.compareAndPut("service__plugin__count", null, "0"));
+            Assertions.assertFalse(store.compareAndPut("service__plugin__count", null, "0"));
+
+            // no increment lost
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        VersionedValue current;
+                        do {
+                            current = store.getWithVersion("service__plugin__count");
+                        } while (!store.compareAndPut("service__plugin__count", current.getVersion(),
+                                String.valueOf(Integer.parseInt(current.getValue()) + 1)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            Assertions.assertEquals("400", store.get("service__plugin__count"));
+
+            // a plain write changes the version
+            String version = store.getWithVersion("service__plugin__count").getVersion();
+            store.put("service__plugin__count", "400");
+            Assertions.assertFalse(store.compareAndPut("service__plugin__count", version, "401"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
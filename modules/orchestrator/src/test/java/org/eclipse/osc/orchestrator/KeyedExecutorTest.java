@@ -0,0 +1,153 @@
+package org.eclipse.osc.orchestrator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class KeyedExecutorTest {
+
+    @Test
+    public void sameKeyInOrderTest() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            KeyedExecutor executor = new KeyedExecutor(pool);
+            List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(50);
+            for (int i = 0; i < 50; i++) {
+                int index = i;
+                executor.execute("service", () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    executed.add(index);
+                    running.decrementAndGet();
+                    done.countDown();
+                });
+            }
+            Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, maxRunning.get());
+            for (int i = 0; i < 50; i++) {
+                Assertions.assertEquals(Integer.valueOf(i), executed.get(i));
+            }
+            waitForIdle(executor);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void differentKeysInParallelTest() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            KeyedExecutor executor = new KeyedExecutor(pool);
+            CountDownLatch started = new CountDownLatch(4);
+            CountDownLatch release = new CountDownLatch(1);
+            for (int i = 0; i < 4; i++) {
+                executor.execute("service-" + i, () -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            Assertions.assertTrue(started.await(5, TimeUnit.SECONDS), "tasks on different keys should run concurrently");
+            Assertions.assertEquals(4, executor.size());
+            release.countDown();
+            waitForIdle(executor);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void errorTest() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        try {
+            KeyedExecutor executor = new KeyedExecutor(pool);
+            CountDownLatch done = new CountDownLatch(1);
+            executor.execute("service", () -> {
+                throw new Error("task error");
+            });
+            executor.execute("service", done::countDown);
+            Assertions.assertTrue(done.await(5, TimeUnit.SECONDS), "the next task should run after an error");
+            waitForIdle(executor);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rejectedTest() throws Exception {
+        AtomicInteger accepted = new AtomicInteger();
+        // accepts the first queue only, the next tasks run on its thread
+        KeyedExecutor executor = new KeyedExecutor(command -> {
+            if (accepted.getAndIncrement() > 0) {
+                throw new RejectedExecutionException("busy");
+            }
+            new Thread(command).start();
+        });
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(50000);
+        executor.execute("service", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < 50000; i++) {
+            executor.execute("service", done::countDown);
+        }
+        release.countDown();
+        Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+        waitForIdle(executor);
+    }
+
+    @Test
+    public void errorRejectedTest() throws Exception {
+        AtomicInteger accepted = new AtomicInteger();
+        // accepts the first queue only, so the queue can't be resubmitted after the error
+        KeyedExecutor executor = new KeyedExecutor(command -> {
+            if (accepted.getAndIncrement() > 0) {
+                throw new RejectedExecutionException("busy");
+            }
+            Thread thread = new Thread(command);
+            thread.setUncaughtExceptionHandler((t, e) -> { });
+            thread.start();
+        });
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        executor.execute("service", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new Error("task error");
+        });
+        executor.execute("service", done::countDown);
+        executor.execute("service", done::countDown);
+        release.countDown();
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS), "the next tasks should run after an error, even when rejected");
+        waitForIdle(executor);
+    }
+
+    private static void waitForIdle(KeyedExecutor executor) throws InterruptedException {
+        for (int i = 0; i < 100 && executor.size() > 0; i++) {
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals(0, executor.size());
+    }
+
+}
@@ -0,0 +1,140 @@
+package org.eclipse.osc.orchestrator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class LogStructuredStoreTest {
+
+    private static File directory(String name) {
+        File directory = new File("target/log-store-" + name);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        return directory;
+    }
+
+    @Test
+    public void recoverTest() throws Exception {
+        File directory = directory("recover");
+        try (LogStructuredStore store = new LogStructuredStore(directory, "test", LogStructuredStore.DEFAULT_COMPACTION_THRESHOLD)) {
+            store.put("service", "service");
+            store.put("service__plugin__tfstate", "{\"version\": 4}");
+            store.put("other", "other");
+            store.put("service__plugin__tfstate", "{\"version\": 5}");
+            store.remove("other");
+            store.remove("unknown");
+            Assertions.assertEquals("{\"version\": 5}", store.get("service__plugin__tfstate"));
+            Assertions.assertNull(store.get("other"));
+            Assertions.assertFalse(store.contains("other"));
+        }
+        // a record partially written by a crash
+        File segment = new File(directory, "test-00000001.log");
+        long size = segment.length();
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(size);
+            file.write(new byte[] {0, 0, 0, 42, 1, 2});
+        }
+
+        try (LogStructuredStore store = new LogStructuredStore(directory, "test", LogStructuredStore.DEFAULT_COMPACTION_THRESHOLD)) {
+            Assertions.assertEquals(Set.of("service", "service__plugin__tfstate"), store.keys());
+            Assertions.assertEquals("{\"version\": 5}", store.get("service__plugin__tfstate"));
+            Assertions.assertEquals(size, segment.length());
+            store.put("other", "other");
+        }
+        try (LogStructuredStore store = new LogStructuredStore(directory, "test", LogStructuredStore.DEFAULT_COMPACTION_THRESHOLD)) {
+            Assertions.assertEquals("other", store.get("other"));
+        }
+    }
+
+    @Test
+    public void compactionTest() throws Exception {
+        File directory = directory("compaction");
+        String state = "x".repeat(1000);
+        try (LogStructuredStore store = new LogStructuredStore(directory, "test", 1024 * 1024)) {
+            store.put("kept", "kept");
+            for (int i = 0; i < 100; i++) {
+                store.put("state", state + i);
+            }
+            store.put("removed", "removed");
+            store.remove("removed");
+            long before = store.size();
+            store.compact();
+            Assertions.assertTrue(store.size() < before / 10, store.size() + " bytes");
+            Assertions.assertEquals(state + 99, store.get("state"));
+            // writes go on in a new segment, after the compacted one
+            store.put("state", "last");
+        }
+        String[] segments = directory.list();
+        Assertions.assertEquals(2, segments.length, String.join(",", segments));
+        try (LogStructuredStore store = new LogStructuredStore(directory, "test", 1024 * 1024)) {
+            Assertions.assertEquals(Set.of("kept", "state"), store.keys());
+            Assertions.assertEquals("last", store.get("state"));
+            Assertions.assertEquals("kept", store.get("kept"));
+        }
+    }
+
+    @Test
+    public void concurrentTest() throws Exception {
+        File directory = directory("concurrent");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        // a small threshold, compacting in the background while writing
+        try (LogStructuredStore store = new LogStructuredStore(directory, "test", 16 * 1024)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                String service = "service-" + t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        store.put(service + "__plugin__state", service + "-" + i + "-" + "y".repeat(100));
+                        Assertions.assertTrue(store.get(service + "__plugin__state").startsWith(service + "-" + i + "-"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        try (LogStructuredStore store = new LogStructuredStore(directory, "test", 16 * 1024)) {
+            for (int t = 0; t < 8; t++) {
+                Assertions.assertTrue(store.get("service-" + t + "__plugin__state").startsWith("service-" + t + "-199-"));
+            }
+        }
+    }
+
+    @Test
+    public void importTest() throws Exception {
+        File directory = directory("import");
+        directory.mkdirs();
+        File file = new File(directory, "orchestrator.properties");
+        Properties properties = new Properties();
+        properties.put("service", "service");
+        properties.put("service__plugin__key", "value");
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            properties.store(stream, null);
+        }
+        try (LogStructuredStore store = LogStructuredStore.open(file)) {
+            Assertions.assertEquals("value", store.get("service__plugin__key"));
+            store.remove("service__plugin__key");
+        }
+        // imported once only
+        try (LogStructuredStore store = LogStructuredStore.open(file)) {
+            Assertions.assertEquals(Set.of("service"), store.keys());
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package org.eclipse.osc.orchestrator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ManagedServiceLocksTest {
+
+    @Test
+    public void lockTest() {
+        StateCacheTest.CountingStorage storage = new StateCacheTest.CountingStorage();
+        storage.store(Lease.LEASE_SID);
+        ManagedServiceLocks first = new ManagedServiceLocks(storage, "first", 60000);
+        ManagedServiceLocks second = new ManagedServiceLocks(storage, "second", 60000);
+
+        long token = first.call("test", lock -> {
+            // exclusive across replicas
+            Assertions.assertThrows(IllegalStateException.class, () -> second.call("test", other -> null));
+            // but not between managed services
+            Assertions.assertEquals(1L, (long) second.call("other", ManagedServiceLocks.Lock::getToken));
+            Assertions.assertDoesNotThrow(lock::fence);
+            return lock.getToken();
+        });
+        Assertions.assertEquals(1, token);
+
+        // released: available right away, with a greater fencing token
+        Assertions.assertEquals(2L, (long) second.call("test", ManagedServiceLocks.Lock::getToken));
+
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void fenceTest() {
+        StateCacheTest.CountingStorage storage = new StateCacheTest.CountingStorage();
+        storage.store(Lease.LEASE_SID);
+        ManagedServiceLocks locks = new ManagedServiceLocks(storage, "first", 60000);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> locks.call("test", lock -> {
+            // the lease expired while the operation was paused, and another replica took it over
+            Lease expired = storage.updateLease("test", current -> {
+                Lease lease = Lease.acquire(current, "test", "first", 0);
+                lease.setExpiry(0);
+                return lease;
+            });
+            Assertions.assertNotNull(storage.acquireLease("test", "second", 60000));
+            Assertions.assertEquals(expired.getToken() + 1, Lease.parse(storage.getKey(Lease.LEASE_SID, Lease.LEASE_STORAGE, "test")).getToken());
+            lock.fence();
+            return null;
+        }));
+        // the other replica keeps its lease
+        Assertions.assertEquals("second", Lease.parse(storage.getKey(Lease.LEASE_SID, Lease.LEASE_STORAGE, "test")).getOwner());
+
+        locks.close();
+    }
+
+    @Test
+    public void fenceFailureTest() {
+        AtomicBoolean failing = new AtomicBoolean();
+        StateCacheTest.CountingStorage storage = new StateCacheTest.CountingStorage() {
+            @Override
+            public Lease renewLease(Lease lease, long ttlMillis) {
+                if (failing.get()) {
+                    throw new IllegalStateException("Storage unavailable");
+                }
+                return super.renewLease(lease, ttlMillis);
+            }
+        };
+        storage.store(Lease.LEASE_SID);
+        ManagedServiceLocks locks = new ManagedServiceLocks(storage, "first", 60000);
+
+        // the lease may have been taken over meanwhile, the operation must not commit
+        Assertions.assertThrows(IllegalStateException.class, () -> locks.call("test", lock -> {
+            failing.set(true);
+            lock.fence();
+            return null;
+        }));
+
+        locks.close();
+    }
+
+}
@@ -0,0 +1,57 @@
+package org.eclipse.osc.orchestrator;
+
+import org.eclipse.osc.modules.ocl.loader.Ocl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class ManagedServiceRestorerTest {
+
+    @Test
+    public void restoreTest() throws Exception {
+        StateCacheTest.CountingStorage storage = new StateCacheTest.CountingStorage();
+        PluginFanOut pluginFanOut = new PluginFanOut();
+
+        Ocl ocl = new Ocl();
+        ocl.setName("test");
+        ocl.setCategory("middleware");
+        storage.store("test");
+        new ManagedServiceRestorer(storage, "osc-orchestrator", pluginFanOut, List::of).registered(ocl);
+        storage.store("unknown");
+
+        // restart: restored in the background
+        PluginTest plugin = new PluginTest();
+        ManagedServiceRestorer restorer = new ManagedServiceRestorer(storage, "osc-orchestrator", pluginFanOut, () -> List.of(plugin));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            restorer.restoreAll(executor).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(ocl, plugin.getOcl());
+        Assertions.assertEquals(2, restorer.size());
+
+        // restart: restored lazily, once
+        PluginTest lazy = new PluginTest();
+        restorer = new ManagedServiceRestorer(storage, "osc-orchestrator", pluginFanOut, () -> List.of(lazy));
+        restorer.restore("test");
+        Assertions.assertEquals(ocl, lazy.getOcl());
+        lazy.unregisterManagedService("test");
+        restorer.restore("test");
+        Assertions.assertNull(lazy.getOcl());
+
+        restorer.unregistered("test");
+        Assertions.assertEquals(0, restorer.size());
+
+        // no namespace: read once, not on each operation
+        Assertions.assertNull(restorer.getNamespace("unknown"));
+        int reads = storage.reads.get();
+        Assertions.assertNull(restorer.getNamespace("unknown"));
+        Assertions.assertEquals(reads, storage.reads.get());
+    }
+
+}
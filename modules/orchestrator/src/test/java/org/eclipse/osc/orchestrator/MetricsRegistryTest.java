@@ -0,0 +1,44 @@
+package org.eclipse.osc.orchestrator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void writeTest() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Counter counter = registry.counter("test_total", "Test counter.", "type");
+        counter.inc("a");
+        counter.inc("a");
+        counter.inc("b\"");
+        Assertions.assertSame(counter, registry.counter("test_total", "Test counter.", "type"));
+        Assertions.assertEquals(2, counter.get("a"));
+
+        MetricsRegistry.Histogram histogram = registry.histogram("test_seconds", "Test histogram.", "plugin");
+        histogram.observeNanos(TimeUnit.MILLISECONDS.toNanos(3), "p");
+        histogram.observe(0.01, "p");
+        histogram.observe(4000, "p");
+        Assertions.assertEquals(3, histogram.count("p"));
+
+        StringWriter writer = new StringWriter();
+        registry.write(writer);
+        String text = writer.toString();
+        Assertions.assertTrue(text.contains("# TYPE test_total counter\n"));
+        Assertions.assertTrue(text.contains("test_total{type=\"a\"} 2\n"));
+        Assertions.assertTrue(text.contains("test_total{type=\"b\\\"\"} 1\n"));
+        Assertions.assertTrue(text.contains("# TYPE test_seconds histogram\n"));
+        Assertions.assertTrue(text.contains("test_seconds_bucket{plugin=\"p\",le=\"0.005\"} 1\n"));
+        // the upper bound is inclusive
+        Assertions.assertTrue(text.contains("test_seconds_bucket{plugin=\"p\",le=\"0.01\"} 2\n"));
+        Assertions.assertTrue(text.contains("test_seconds_bucket{plugin=\"p\",le=\"1800.0\"} 2\n"));
+        Assertions.assertTrue(text.contains("test_seconds_bucket{plugin=\"p\",le=\"+Inf\"} 3\n"));
+        Assertions.assertTrue(text.contains("test_seconds_count{plugin=\"p\"} 3\n"));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> counter.inc("a", "b"));
+    }
+
+}
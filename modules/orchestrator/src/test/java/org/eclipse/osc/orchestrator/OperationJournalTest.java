@@ -0,0 +1,62 @@
+package org.eclipse.osc.orchestrator;
+
+import org.eclipse.osc.modules.ocl.loader.Ocl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.List;
+
+public class OperationJournalTest {
+
+    @Test
+    public void recoverTest() throws Exception {
+        File file = new File("target/test-classes/recover.journal");
+        file.delete();
+
+        OperationJournal journal = new OperationJournal(file);
+        Assertions.assertTrue(journal.recover().isEmpty());
+
+        Ocl ocl = new Ocl();
+        ocl.setName("test");
+        Operation register = new Operation(Operation.Type.REGISTER, "test");
+        register.setPayload(ocl);
+        Operation start = new Operation(Operation.Type.START, "other");
+        Operation stop = new Operation(Operation.Type.STOP, "other");
+
+        journal.record(register);
+        journal.record(start);
+        journal.record(stop);
+        start.running();
+        journal.record(start);
+        start.completed(new PluginFanOut.FanOutResult("startManagedService"));
+        journal.record(start);
+        Assertions.assertEquals(2, journal.size());
+
+        // crash: journal not closed, last record truncated
+        try (FileWriter writer = new FileWriter(file, true)) {
+            writer.write("{\"id\":\"trunc");
+        }
+
+        journal = new OperationJournal(file);
+        List<OperationJournal.Entry> interrupted = journal.recover();
+        Assertions.assertEquals(2, interrupted.size());
+        Assertions.assertEquals(register.getId(), interrupted.get(0).getId());
+        Assertions.assertEquals(Operation.Type.REGISTER, interrupted.get(0).getType());
+        Assertions.assertEquals("test", interrupted.get(0).getOcl().getName());
+        Assertions.assertEquals(stop.getId(), interrupted.get(1).getId());
+        Assertions.assertEquals("other", interrupted.get(1).getManagedServiceName());
+
+        // recovered operations stay open until replayed
+        journal.complete(register.getId());
+        journal.close();
+        journal = new OperationJournal(file);
+        interrupted = journal.recover();
+        Assertions.assertEquals(1, interrupted.size());
+        Assertions.assertEquals(stop.getId(), interrupted.get(0).getId());
+        journal.complete(stop.getId());
+        journal.close();
+    }
+
+}
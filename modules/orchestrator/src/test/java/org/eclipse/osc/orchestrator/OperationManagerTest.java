@@ -0,0 +1,142 @@
+package org.eclipse.osc.orchestrator;
+
+import org.eclipse.osc.modules.ocl.loader.Ocl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class OperationManagerTest {
+
+    @Test
+    public void coalesceTest() throws Exception {
+        try (OperationManager manager = new OperationManager(4, 16, 60000)) {
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger starts = new AtomicInteger();
+
+            Operation stop = manager.submit(Operation.Type.STOP, "test", () -> {
+                release.await();
+                return new PluginFanOut.FanOutResult("stopManagedService");
+            });
+            Operation start = manager.submit(Operation.Type.START, "test", () -> {
+                starts.incrementAndGet();
+                return new PluginFanOut.FanOutResult("startManagedService");
+            });
+            Operation duplicate = manager.submit(Operation.Type.START, "test", () -> {
+                starts.incrementAndGet();
+                return new PluginFanOut.FanOutResult("startManagedService");
+            });
+            Operation other = manager.submit(Operation.Type.START, "other", () -> new PluginFanOut.FanOutResult("startManagedService"));
+
+            Assertions.assertNotSame(stop, start);
+            Assertions.assertSame(start, duplicate);
+            Assertions.assertEquals(2, start.getCallers());
+            Assertions.assertNotSame(start, other);
+
+            release.countDown();
+            start.getFuture().get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(1, starts.get());
+
+            // once completed, the same request is a new operation
+            Operation again = manager.submit(Operation.Type.START, "test", () -> new PluginFanOut.FanOutResult("startManagedService"));
+            Assertions.assertNotSame(start, again);
+        }
+    }
+
+    @Test
+    public void coalescePayloadTest() throws Exception {
+        try (OperationManager manager = new OperationManager(1, 16, 60000)) {
+            CountDownLatch release = new CountDownLatch(1);
+            manager.submit(Operation.Type.STOP, "test", () -> {
+                release.await();
+                return new PluginFanOut.FanOutResult("stopManagedService");
+            });
+
+            Ocl ocl = new Ocl();
+            ocl.setName("test");
+            Ocl same = new Ocl();
+            same.setName("test");
+            Ocl different = new Ocl();
+            different.setName("test");
+            different.setCategory("middleware");
+
+            Operation update = manager.submit(Operation.Type.UPDATE, "test", ocl, () -> new PluginFanOut.FanOutResult("updateManagedService"));
+            Assertions.assertSame(update, manager.submit(Operation.Type.UPDATE, "test", same, () -> new PluginFanOut.FanOutResult("updateManagedService")));
+            Assertions.assertNotSame(update, manager.submit(Operation.Type.UPDATE, "test", different, () -> new PluginFanOut.FanOutResult("updateManagedService")));
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void admissionTest() throws Exception {
+        try (OperationManager manager = new OperationManager(4, 16, 60000, new AdmissionControl(3, 1, 10))) {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch building = new CountDownLatch(1);
+
+            Operation first = manager.submit(Operation.Type.REGISTER, "first", () -> {
+                building.countDown();
+                release.await();
+                return new PluginFanOut.FanOutResult("registerManagedService");
+            });
+            Assertions.assertTrue(building.await(5, TimeUnit.SECONDS));
+            Operation second = manager.submit(Operation.Type.REGISTER, "second", () -> new PluginFanOut.FanOutResult("registerManagedService"));
+            Operation start = manager.submit(Operation.Type.START, "third", () -> new PluginFanOut.FanOutResult("startManagedService"));
+
+            // only one build at a time, other operations are not blocked by builds
+            start.getFuture().get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(Operation.Status.QUEUED, second.getStatus());
+
+            manager.submit(Operation.Type.STOP, "fourth", () -> {
+                release.await();
+                return new PluginFanOut.FanOutResult("stopManagedService");
+            });
+            OrchestratorBusyException busy = Assertions.assertThrows(OrchestratorBusyException.class,
+                    () -> manager.submit(Operation.Type.START, "fifth", () -> new PluginFanOut.FanOutResult("startManagedService")));
+            Assertions.assertEquals(10, busy.getRetryAfter());
+
+            release.countDown();
+            first.getFuture().get(5, TimeUnit.SECONDS);
+            second.getFuture().get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(Operation.Status.SUCCEEDED, second.getStatus());
+            for (int i = 0; i < 100 && manager.getAdmission().getPending() > 0; i++) {
+                Thread.sleep(20);
+            }
+            Assertions.assertEquals(0, manager.getAdmission().getPending());
+        }
+    }
+
+    @Test
+    public void pendingBuildsTest() throws Exception {
+        try (OperationManager manager = new OperationManager(2, 16, 60000, new AdmissionControl(16, 1, 10))) {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch building = new CountDownLatch(1);
+            List<Operation> builds = new ArrayList<>();
+            builds.add(manager.submit(Operation.Type.REGISTER, "build-0", () -> {
+                building.countDown();
+                release.await();
+                return new PluginFanOut.FanOutResult("registerManagedService");
+            }));
+            Assertions.assertTrue(building.await(5, TimeUnit.SECONDS));
+            // as many builds waiting for a slot as workers
+            for (int i = 1; i <= 2; i++) {
+                builds.add(manager.submit(Operation.Type.REGISTER, "build-" + i, () -> new PluginFanOut.FanOutResult("registerManagedService")));
+            }
+
+            Operation start = manager.submit(Operation.Type.START, "service", () -> new PluginFanOut.FanOutResult("startManagedService"));
+            start.getFuture().get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(Operation.Status.QUEUED, builds.get(1).getStatus());
+            Assertions.assertEquals(Operation.Status.QUEUED, builds.get(2).getStatus());
+
+            release.countDown();
+            for (Operation build : builds) {
+                build.getFuture().get(5, TimeUnit.SECONDS);
+                Assertions.assertEquals(Operation.Status.SUCCEEDED, build.getStatus());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package org.eclipse.osc.orchestrator;
+
+import org.eclipse.osc.modules.ocl.loader.Ocl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class OperationSchedulerTest {
+
+    private static Task task(String name, Operation.Type type, String namespace, long submitted) {
+        return new Task(name, type.getPriority(), namespace, submitted);
+    }
+
+    @Test
+    public void priorityTest() {
+        long now = System.currentTimeMillis();
+        OperationScheduler scheduler = new OperationScheduler(16);
+        scheduler.offer(task("register", Operation.Type.REGISTER, null, now - 2));
+        scheduler.offer(task("start", Operation.Type.START, null, now - 1));
+        scheduler.offer(task("stop", Operation.Type.STOP, null, now));
+        scheduler.offer(task("update", Operation.Type.UPDATE, null, now - 1));
+
+        Assertions.assertEquals("stop", scheduler.peek().toString());
+        Assertions.assertEquals("stop", scheduler.poll().toString());
+        Assertions.assertEquals("start", scheduler.poll().toString());
+        // oldest first within a class
+        Assertions.assertEquals("register", scheduler.poll().toString());
+        Assertions.assertEquals("update", scheduler.poll().toString());
+        Assertions.assertNull(scheduler.poll());
+
+        Assertions.assertTrue(new OperationScheduler(1).offer(task("stop", Operation.Type.STOP, null, now)));
+        OperationScheduler full = new OperationScheduler(1);
+        full.offer(task("stop", Operation.Type.STOP, null, now));
+        Assertions.assertFalse(full.offer(task("start", Operation.Type.START, null, now)));
+        Assertions.assertEquals(0, full.remainingCapacity());
+    }
+
+    @Test
+    public void agingTest() {
+        long now = System.currentTimeMillis();
+        OperationScheduler scheduler = new OperationScheduler(16, 1000, Map.of());
+        // waiting for two aging periods, promoted to the stop class and older
+        scheduler.offer(task("stop", Operation.Type.STOP, null, now));
+        scheduler.offer(task("register", Operation.Type.REGISTER, null, now - 2500));
+        scheduler.offer(task("start", Operation.Type.START, null, now - 500));
+
+        Assertions.assertEquals("register", scheduler.poll().toString());
+        Assertions.assertEquals("stop", scheduler.poll().toString());
+        Assertions.assertEquals("start", scheduler.poll().toString());
+    }
+
+    @Test
+    public void fairShareTest() {
+        long now = System.currentTimeMillis();
+        OperationScheduler scheduler = new OperationScheduler(64, 3600000, OperationScheduler.parseWeights("heavy=3, light=1"));
+        // a backlog from one namespace queued before the others
+        for (int i = 0; i < 20; i++) {
+            scheduler.offer(task("busy", Operation.Type.REGISTER, "busy", now - 100 + i));
+        }
+        for (int i = 0; i < 8; i++) {
+            scheduler.offer(task("heavy", Operation.Type.REGISTER, "heavy", now + i));
+            scheduler.offer(task("light", Operation.Type.REGISTER, "light", now + i));
+        }
+
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            order.add(scheduler.poll().toString());
+        }
+        Assertions.assertEquals(2, Collections.frequency(order, "busy"), order.toString());
+        Assertions.assertEquals(6, Collections.frequency(order, "heavy"), order.toString());
+        Assertions.assertEquals(2, Collections.frequency(order, "light"), order.toString());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> OperationScheduler.parseWeights("heavy=0"));
+        Assertions.assertTrue(OperationScheduler.parseWeights(" ").isEmpty());
+    }
+
+    @Test
+    public void operationManagerTest() throws Exception {
+        try (OperationManager manager = new OperationManager(1, 16, 60000)) {
+            CountDownLatch release = new CountDownLatch(1);
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+            manager.submit(Operation.Type.START, "blocker", () -> {
+                release.await();
+                return new PluginFanOut.FanOutResult("startManagedService");
+            });
+            Ocl ocl = new Ocl();
+            ocl.setNamespace("team");
+            Operation register = manager.submit(Operation.Type.REGISTER, "first", ocl, () -> {
+                order.add("register");
+                return new PluginFanOut.FanOutResult("registerManagedService");
+            });
+            Operation stop = manager.submit(Operation.Type.STOP, "second", () -> {
+                order.add("stop");
+                return new PluginFanOut.FanOutResult("stopManagedService");
+            });
+            Assertions.assertEquals("team", register.getNamespace());
+            Assertions.assertEquals(OperationScheduler.DEFAULT_NAMESPACE, stop.getNamespace());
+
+            release.countDown();
+            register.getFuture().get(5, TimeUnit.SECONDS);
+            stop.getFuture().get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(List.of("stop", "register"), order);
+        }
+    }
+
+    private static class Task implements Runnable, OperationScheduler.Schedulable {
+
+        private final String name;
+        private final int priority;
+        private final String namespace;
+        private final long submitted;
+
+        Task(String name, int priority, String namespace, long submitted) {
+            this.name = name;
+            this.priority = priority;
+            this.namespace = namespace;
+            this.submitted = submitted;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public String getNamespace() {
+            return namespace;
+        }
+
+        @Override
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+}
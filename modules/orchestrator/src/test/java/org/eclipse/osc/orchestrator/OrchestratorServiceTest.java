@@ -5,11 +5,15 @@ import org.apache.karaf.minho.boot.service.ConfigService;
 import org.apache.karaf.minho.boot.service.LifeCycleService;
 import org.apache.karaf.minho.boot.service.ServiceRegistry;
 import org.apache.karaf.minho.boot.spi.Service;
+import org.eclipse.osc.modules.ocl.loader.Ocl;
 import org.eclipse.osc.modules.ocl.loader.OclLoader;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.stream.Stream;
 
 public class OrchestratorServiceTest {
@@ -59,11 +63,12 @@ public class OrchestratorServiceTest {
     @Test
     public void loadWithCustomStorageTest() throws Exception {
         Set<String> services = new HashSet<>();
+        OrchestratorStorageTest storage = new OrchestratorStorageTest(services);
 
         Minho minho = Minho.builder().loader(() -> Stream.of(
                 new LifeCycleService(),
                 new OclLoader(),
-                new OrchestratorStorageTest(services),
+                storage,
                 new OrchestratorService(),
                 new PluginTest())).build().start();
 
@@ -73,6 +78,194 @@ public class OrchestratorServiceTest {
         orchestratorService.registerManagedService("file:./target/test-classes/test.json");
 
         Assertions.assertEquals(1, services.size());
+        // the plugins get the storage decorated by the orchestrator, only metered by default
+        OrchestratorStorage pluginStorage = ((PluginTest) orchestratorService.getPlugins().get(0)).getStorage();
+        Assertions.assertTrue(pluginStorage instanceof MeteredOrchestratorStorage);
+        Assertions.assertSame(storage, ((MeteredOrchestratorStorage) pluginStorage).getStorage());
+    }
+
+    @Test
+    public void asyncOperationTest() throws Exception {
+        Set<String> services = new HashSet<>();
+
+        Minho minho = Minho.builder().loader(() -> Stream.of(
+                new LifeCycleService(),
+                new OclLoader(),
+                new OrchestratorStorageTest(services),
+                new OrchestratorService(),
+                new PluginTest())).build().start();
+
+        OrchestratorService orchestratorService = minho.getServiceRegistry().get(OrchestratorService.class);
+
+        Operation register = orchestratorService.registerManagedServiceAsync("file:./target/test-classes/test.json");
+        Assertions.assertEquals(Operation.Type.REGISTER, register.getType());
+        Assertions.assertEquals("test-service", register.getManagedServiceName());
+        Assertions.assertSame(register, orchestratorService.getOperation(register.getId()));
+        waitFor(register);
+        Assertions.assertEquals(Operation.Status.SUCCEEDED, register.getStatus());
+        Assertions.assertEquals(1, register.getPlugins().size());
+        Assertions.assertTrue(services.contains("test-service"));
+
+        Operation start = orchestratorService.startManagedServiceAsync("test-service");
+        waitFor(start);
+        Assertions.assertEquals(Operation.Status.SUCCEEDED, start.getStatus());
+        Assertions.assertTrue(start.getFinished() >= start.getStarted());
+
+        Operation failed = orchestratorService.startManagedServiceAsync("unknown");
+        waitFor(failed);
+        Assertions.assertEquals(Operation.Status.FAILED, failed.getStatus());
+        Assertions.assertEquals("Managed service unknown not found", failed.getError());
+
+        Assertions.assertEquals(3, orchestratorService.getOperations().size());
+    }
+
+    @Test
+    public void bulkTest() throws Exception {
+        Set<String> services = ConcurrentHashMap.newKeySet();
+
+        Minho minho = Minho.builder().loader(() -> Stream.of(
+                new LifeCycleService(),
+                new OclLoader(),
+                new OrchestratorStorageTest(services),
+                new OrchestratorService(),
+                new PluginTest())).build().start();
+
+        OrchestratorService orchestratorService = minho.getServiceRegistry().get(OrchestratorService.class);
+
+        List<Ocl> ocls = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Ocl ocl = new Ocl();
+            ocl.setName("bulk-" + i);
+            ocls.add(ocl);
+        }
+        ocls.add(new Ocl());
+        Ocl separator = new Ocl();
+        separator.setName("bulk__0");
+        ocls.add(separator);
+
+        List<BulkItem> items = orchestratorService.registerManagedServicesAsync(ocls, true);
+        Assertions.assertEquals(12, items.size());
+        for (int i = 0; i < 10; i++) {
+            BulkItem item = items.get(i);
+            Assertions.assertTrue(item.isAccepted());
+            Assertions.assertEquals("bulk-" + i, item.getManagedServiceName());
+            Assertions.assertEquals(2, item.getOperations().size());
+            Assertions.assertEquals(Operation.Type.REGISTER, item.getOperations().get(0).getType());
+            Operation start = item.getOperations().get(1);
+            Assertions.assertEquals(Operation.Type.START, start.getType());
+            waitFor(start);
+            Assertions.assertEquals(Operation.Status.SUCCEEDED, start.getStatus());
+        }
+        Assertions.assertFalse(items.get(10).isAccepted());
+        Assertions.assertEquals("Managed service name is required", items.get(10).getError());
+        Assertions.assertFalse(items.get(11).isAccepted());
+        Assertions.assertEquals("Managed service name bulk__0 can't contain __", items.get(11).getError());
+        Assertions.assertEquals(10, services.size());
+
+        items = orchestratorService.fetchManagedServicesAsync(Arrays.asList("file:./target/test-classes/test.json", "file:./target/test-classes/missing.json"), false);
+        Assertions.assertEquals(2, items.size());
+        Assertions.assertTrue(items.get(0).isAccepted());
+        Assertions.assertEquals("test-service", items.get(0).getManagedServiceName());
+        Assertions.assertEquals(1, items.get(0).getOperations().size());
+        Assertions.assertFalse(items.get(1).isAccepted());
+        Assertions.assertNotNull(items.get(1).getError());
+        waitFor(items.get(0).getOperations().get(0));
+
+        items = orchestratorService.startManagedServicesAsync(Arrays.asList("test-service", "bulk-0"));
+        for (BulkItem item : items) {
+            Assertions.assertTrue(item.isAccepted());
+            waitFor(item.getOperations().get(0));
+            Assertions.assertEquals(Operation.Status.SUCCEEDED, item.getOperations().get(0).getStatus());
+        }
+    }
+
+    @Test
+    public void bulkStartRejectedTest() throws Exception {
+        ConfigService configService = new ConfigService();
+        Map<String, String> properties = new HashMap<>();
+        properties.put(OrchestratorService.ADMISSION_PENDING, "1");
+        properties.put(OrchestratorService.JOURNAL_FILENAME, "target/test-classes/bulk-rejected.journal");
+        configService.setProperties(properties);
+        Set<String> services = ConcurrentHashMap.newKeySet();
+        CountDownLatch release = new CountDownLatch(1);
+
+        Minho minho = Minho.builder().loader(() -> Stream.of(
+                configService,
+                new LifeCycleService(),
+                new OclLoader(),
+                new OrchestratorStorageTest(services),
+                new OrchestratorService(),
+                new PluginTest() {
+                    @Override
+                    public void registerManagedService(Ocl ocl) {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        super.registerManagedService(ocl);
+                    }
+                })).build().start();
+
+        OrchestratorService orchestratorService = minho.getServiceRegistry().get(OrchestratorService.class);
+        Ocl ocl = new Ocl();
+        ocl.setName("bulk-rejected");
+        BulkItem item = orchestratorService.registerManagedServicesAsync(List.of(ocl), true).get(0);
+        release.countDown();
+
+        // the register is queued, only the start is rejected
+        Assertions.assertTrue(item.isAccepted());
+        Assertions.assertNull(item.getError());
+        Assertions.assertEquals(1, item.getOperations().size());
+        Assertions.assertEquals(Operation.Type.REGISTER, item.getOperations().get(0).getType());
+        Assertions.assertEquals(Set.of(Operation.Type.START), item.getRejectedOperations().keySet());
+        waitFor(item.getOperations().get(0));
+        Assertions.assertEquals(Operation.Status.SUCCEEDED, item.getOperations().get(0).getStatus());
+        Assertions.assertTrue(services.contains("bulk-rejected"));
+        minho.close();
+    }
+
+    @Test
+    public void replayTest() throws Exception {
+        File file = new File("target/test-classes/replay.journal");
+        file.delete();
+        Operation interrupted = new Operation(Operation.Type.START, "test-service");
+        OperationJournal journal = new OperationJournal(file);
+        journal.recover();
+        journal.record(interrupted);
+
+        ConfigService configService = new ConfigService();
+        Map<String, String> properties = new HashMap<>();
+        properties.put(OrchestratorService.JOURNAL_FILENAME, file.getPath());
+        configService.setProperties(properties);
+        Set<String> services = ConcurrentHashMap.newKeySet();
+        services.add("test-service");
+
+        Minho minho = Minho.builder().loader(() -> Stream.of(
+                configService,
+                new LifeCycleService(),
+                new OclLoader(),
+                new OrchestratorStorageTest(services),
+                new OrchestratorService(),
+                new PluginTest())).build().start();
+
+        OrchestratorService orchestratorService = minho.getServiceRegistry().get(OrchestratorService.class);
+        Assertions.assertEquals(1, orchestratorService.getOperations().size());
+        Operation replayed = orchestratorService.getOperations().iterator().next();
+        Assertions.assertNotEquals(interrupted.getId(), replayed.getId());
+        Assertions.assertEquals(Operation.Type.START, replayed.getType());
+        Assertions.assertEquals("test-service", replayed.getManagedServiceName());
+        waitFor(replayed);
+        Assertions.assertEquals(Operation.Status.SUCCEEDED, replayed.getStatus());
+        Assertions.assertEquals(0, orchestratorService.getJournal().size());
+        minho.close();
+    }
+
+    private static void waitFor(Operation operation) throws InterruptedException {
+        for (int i = 0; i < 100 && !operation.isDone(); i++) {
+            Thread.sleep(50);
+        }
+        Assertions.assertTrue(operation.isDone());
     }
 
     class OrchestratorStorageTest implements OrchestratorStorage, Service {
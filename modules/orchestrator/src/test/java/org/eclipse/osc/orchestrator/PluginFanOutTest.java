@@ -0,0 +1,122 @@
+package org.eclipse.osc.orchestrator;
+
+import org.eclipse.osc.modules.ocl.loader.Ocl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+public class PluginFanOutTest {
+
+    @Test
+    public void parallelTest() throws Exception {
+        try (PluginFanOut fanOut = new PluginFanOut(4, 0)) {
+            long start = System.currentTimeMillis();
+            PluginFanOut.FanOutResult result = fanOut.invoke("startManagedService",
+                    List.of(new SlowPlugin(500), new SlowPlugin(500), new SlowPlugin(500)),
+                    plugin -> plugin.startManagedService("test"));
+            long duration = System.currentTimeMillis() - start;
+
+            Assertions.assertTrue(result.isSuccess());
+            Assertions.assertEquals(3, result.getResults().size());
+            Assertions.assertTrue(duration < 1400, "plugins should be called concurrently, took " + duration + " ms");
+            result.throwIfFailed();
+        }
+    }
+
+    @Test
+    public void deadlineTest() throws Exception {
+        try (PluginFanOut fanOut = new PluginFanOut(4, 200)) {
+            PluginFanOut.FanOutResult result = fanOut.invoke("startManagedService",
+                    List.of(new SlowPlugin(0), new SlowPlugin(5000)),
+                    plugin -> plugin.startManagedService("test"));
+
+            Assertions.assertFalse(result.isSuccess());
+            Assertions.assertTrue(result.getResults().get(0).isSuccess());
+            Assertions.assertFalse(result.getResults().get(1).isSuccess());
+            Assertions.assertTrue(result.getResults().get(1).getCause() instanceof TimeoutException);
+            Assertions.assertThrows(TimeoutException.class, result::throwIfFailed);
+        }
+    }
+
+    @Test
+    public void queuedDeadlineTest() throws Exception {
+        try (PluginFanOut fanOut = new PluginFanOut(1, 400)) {
+            PluginFanOut.FanOutResult result = fanOut.invoke("startManagedService",
+                    List.of(new SlowPlugin(300), new SlowPlugin(300), new SlowPlugin(300)),
+                    plugin -> plugin.startManagedService("test"));
+
+            Assertions.assertTrue(result.isSuccess(), "waiting for a pool thread should not count in the deadline");
+            Assertions.assertEquals(3, result.getResults().size());
+        }
+    }
+
+    @Test
+    public void sequentialFailureTest() {
+        PluginFanOut fanOut = new PluginFanOut();
+        PluginFanOut.FanOutResult result = fanOut.invoke("stopManagedService",
+                List.of(new SlowPlugin(0), new FailingPlugin(), new FailingPlugin()),
+                plugin -> plugin.stopManagedService("test"));
+
+        Assertions.assertEquals(2, result.getResults().size());
+        Assertions.assertTrue(result.getResults().get(0).isSuccess());
+        Assertions.assertEquals("failure", result.getResults().get(1).getError());
+        Assertions.assertThrows(IllegalArgumentException.class, result::throwIfFailed);
+    }
+
+    static class SlowPlugin implements OrchestratorPlugin {
+
+        private final long delay;
+
+        SlowPlugin(long delay) {
+            this.delay = delay;
+        }
+
+        private void sleep() {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void registerManagedService(Ocl ocl) {
+            sleep();
+        }
+
+        @Override
+        public void updateManagedService(String managedServiceName, Ocl ocl) {
+            sleep();
+        }
+
+        @Override
+        public void startManagedService(String managedServiceName) {
+            sleep();
+        }
+
+        @Override
+        public void stopManagedService(String managedServiceName) {
+            sleep();
+        }
+
+        @Override
+        public void unregisterManagedService(String managedServiceName) {
+            sleep();
+        }
+    }
+
+    static class FailingPlugin extends SlowPlugin {
+
+        FailingPlugin() {
+            super(0);
+        }
+
+        @Override
+        public void stopManagedService(String managedServiceName) {
+            throw new IllegalArgumentException("failure");
+        }
+    }
+
+}
@@ -8,6 +8,7 @@ import org.eclipse.osc.modules.ocl.loader.Ocl;
 public class PluginTest implements OrchestratorPlugin, Service {
 
     private Ocl ocl;
+    private OrchestratorStorage storage;
 
     @Override
     public String name() {
@@ -20,6 +21,12 @@ public class PluginTest implements OrchestratorPlugin, Service {
         this.ocl = ocl;
     }
 
+    @Override
+    public void restoreManagedService(Ocl ocl) {
+        log.info("OSC Test Plugin :: Restoring managed service " + ocl.getName());
+        this.ocl = ocl;
+    }
+
     public void updateManagedService(String managedServiceName, Ocl ocl) {
         log.info("OSC Test Plugin :: Updating managed service " + managedServiceName);
     }
@@ -44,4 +51,13 @@ public class PluginTest implements OrchestratorPlugin, Service {
         return this.ocl;
     }
 
+    @Override
+    public void setStorage(OrchestratorStorage storage) {
+        this.storage = storage;
+    }
+
+    public OrchestratorStorage getStorage() {
+        return this.storage;
+    }
+
 }
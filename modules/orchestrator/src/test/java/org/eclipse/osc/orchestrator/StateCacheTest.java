@@ -0,0 +1,107 @@
+package org.eclipse.osc.orchestrator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StateCacheTest {
+
+    @Test
+    public void cacheTest() {
+        CountingStorage storage = new CountingStorage();
+        storage.store("test");
+        storage.store("test", "plugin", "state", "{ \"vms\": 2 }");
+        storage.store("test", "other", "state", "running");
+        StateCache cache = new StateCache(storage, () -> List.of("plugin", "other", "missing"));
+
+        Assertions.assertNull(cache.get("unknown"));
+
+        // cold start: loaded from the storage once, then served from memory
+        ServiceState state = cache.get("test");
+        Assertions.assertNull(state.getState());
+        Assertions.assertEquals(2, state.getPlugins().get("plugin").get("vms").asInt());
+        Assertions.assertEquals("running", state.getPlugins().get("other").asText());
+        Assertions.assertFalse(state.getPlugins().containsKey("missing"));
+        int reads = storage.reads.get();
+        Assertions.assertSame(state, cache.get("test"));
+        Assertions.assertEquals(reads, storage.reads.get());
+
+        // running operation: new version, plugins state unchanged
+        Operation start = new Operation(Operation.Type.START, "test");
+        start.running();
+        cache.update(start);
+        ServiceState starting = cache.get("test");
+        Assertions.assertEquals(ManagedServiceState.STARTING, starting.getState());
+        Assertions.assertTrue(starting.getVersion() > state.getVersion());
+        Assertions.assertNotEquals(state.getEtag(), starting.getEtag());
+        Assertions.assertEquals(reads, storage.reads.get());
+
+        // completed operation: plugins state reloaded
+        storage.store("test", "other", "state", "stopped");
+        start.completed(new PluginFanOut.FanOutResult("startManagedService"));
+        cache.update(start);
+        ServiceState active = cache.get("test");
+        Assertions.assertEquals(ManagedServiceState.ACTIVE, active.getState());
+        Assertions.assertEquals("stopped", active.getPlugins().get("other").asText());
+
+        // an operation on an unknown managed service is not cached
+        Operation unknown = new Operation(Operation.Type.START, "unknown");
+        unknown.running();
+        cache.update(unknown);
+        unknown.failed(new IllegalStateException("Managed service unknown not found"));
+        cache.update(unknown);
+        Assertions.assertNull(cache.get("unknown"));
+        Assertions.assertEquals(1, cache.size());
+
+        Operation unregister = new Operation(Operation.Type.UNREGISTER, "test");
+        unregister.running();
+        unregister.completed(new PluginFanOut.FanOutResult("unregisterManagedService"));
+        storage.remove("test");
+        cache.update(unregister);
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertNull(cache.get("test"));
+    }
+
+    static class CountingStorage implements OrchestratorStorage {
+
+        private final Map<String, Map<String, String>> services = new HashMap<>();
+        final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public void store(String sid) {
+            services.putIfAbsent(sid, new HashMap<>());
+        }
+
+        @Override
+        public void store(String sid, String pluginName, String key, String value) {
+            services.get(sid).put(pluginName + "." + key, value);
+        }
+
+        @Override
+        public String getKey(String sid, String pluginName, String key) {
+            reads.incrementAndGet();
+            return services.get(sid).get(pluginName + "." + key);
+        }
+
+        @Override
+        public boolean exists(String sid) {
+            return services.containsKey(sid);
+        }
+
+        @Override
+        public Set<String> services() {
+            return services.keySet();
+        }
+
+        @Override
+        public void remove(String sid) {
+            services.remove(sid);
+        }
+    }
+
+}
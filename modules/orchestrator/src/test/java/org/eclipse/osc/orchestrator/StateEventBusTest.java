@@ -0,0 +1,55 @@
+package org.eclipse.osc.orchestrator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class StateEventBusTest {
+
+    @Test
+    public void publishTest() throws Exception {
+        try (StateEventBus bus = new StateEventBus(16); OperationManager manager = new OperationManager(2, 16, 60000)) {
+            manager.addListener(bus::publish);
+            StateEventBus.Subscription all = bus.subscribe(null);
+            StateEventBus.Subscription other = bus.subscribe("other");
+
+            manager.submit(Operation.Type.START, "test", () -> new PluginFanOut.FanOutResult("startManagedService"));
+
+            StateEvent starting = all.poll(5, TimeUnit.SECONDS);
+            Assertions.assertEquals("test", starting.getManagedServiceName());
+            Assertions.assertEquals(ManagedServiceState.STARTING, starting.getState());
+            StateEvent active = all.poll(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(ManagedServiceState.ACTIVE, active.getState());
+            Assertions.assertTrue(active.getId() > starting.getId());
+            Assertions.assertNull(other.poll(100, TimeUnit.MILLISECONDS));
+
+            manager.submit(Operation.Type.STOP, "other", () -> {
+                throw new IllegalStateException("boom");
+            });
+            Assertions.assertEquals(ManagedServiceState.STOPPING, other.poll(5, TimeUnit.SECONDS).getState());
+            StateEvent failed = other.poll(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(ManagedServiceState.FAILED, failed.getState());
+            Assertions.assertEquals("boom", failed.getError());
+
+            other.close();
+            Assertions.assertEquals(1, bus.size());
+        }
+    }
+
+    @Test
+    public void slowSubscriberTest() {
+        StateEventBus bus = new StateEventBus(2);
+        StateEventBus.Subscription subscription = bus.subscribe(null);
+        for (int i = 0; i < 5; i++) {
+            Operation operation = new Operation(Operation.Type.STOP, "test");
+            operation.running();
+            bus.publish(operation);
+        }
+        Assertions.assertEquals(3, subscription.getDropped());
+        bus.close();
+        Assertions.assertTrue(subscription.isClosed());
+        Assertions.assertEquals(0, bus.size());
+    }
+
+}
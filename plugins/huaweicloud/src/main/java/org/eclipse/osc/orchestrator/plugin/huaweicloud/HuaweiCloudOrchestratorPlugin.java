@@ -4,19 +4,29 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.karaf.minho.boot.service.ConfigService;
 import org.apache.karaf.minho.boot.service.ServiceRegistry;
 import org.apache.karaf.minho.boot.spi.Service;
 import org.eclipse.osc.modules.ocl.loader.Ocl;
+import org.eclipse.osc.modules.ocl.loader.OclChangeSet;
+import org.eclipse.osc.modules.ocl.loader.OclDiff;
+import org.eclipse.osc.modules.ocl.loader.OclResource;
 import org.eclipse.osc.modules.ocl.loader.OclResources;
 import org.eclipse.osc.orchestrator.OrchestratorPlugin;
 import org.eclipse.osc.orchestrator.OrchestratorStorage;
+import org.eclipse.osc.orchestrator.plugin.huaweicloud.builders.HuaweiImageBuilder;
 
 @Slf4j
 public class HuaweiCloudOrchestratorPlugin implements OrchestratorPlugin, Service {
 
-    private final Map<String, Ocl> managedOcl = new HashMap<>();
+    /**
+     * Storage key of the OCL last built, the next start only rebuilds what changed since.
+     */
+    private static final String APPLIED_KEY = "applied";
+
+    private final Map<String, Ocl> managedOcl = new ConcurrentHashMap<>();
     OrchestratorStorage storage;
     ObjectMapper objectMapper = new ObjectMapper();
     private ConfigService config;
@@ -37,11 +47,17 @@ public class HuaweiCloudOrchestratorPlugin implements OrchestratorPlugin, Servic
             throw new IllegalStateException("Config service is not present in the registry");
         }
 
+        // replaced by the orchestrator storage on start, see setStorage
         storage = serviceRegistry.get(OrchestratorStorage.class);
 
         config = configService;
     }
 
+    @Override
+    public void setStorage(OrchestratorStorage storage) {
+        this.storage = storage;
+    }
+
     @Override
     public void registerManagedService(Ocl ocl) {
         log.info("Register managed service, creating  Huawei Cloud resource");
@@ -51,19 +67,31 @@ public class HuaweiCloudOrchestratorPlugin implements OrchestratorPlugin, Servic
         managedOcl.put(ocl.getName(), ocl);
     }
 
+    @Override
+    public void restoreManagedService(Ocl ocl) {
+        log.info("Restoring managed service {}", ocl.getName());
+        managedOcl.put(ocl.getName(), ocl);
+    }
+
     @Override
     public void updateManagedService(String managedServiceName, Ocl ocl) {
         log.info("Updating managed service {} on Huawei Cloud", managedServiceName);
         if (ocl == null) {
             throw new IllegalArgumentException("Invalid ocl. ocl = null");
         }
-        managedOcl.put(managedServiceName, ocl);
+        Ocl previous = managedOcl.put(managedServiceName, ocl);
+        OclChangeSet changeSet = OclDiff.diff(previous, ocl);
+        if (changeSet.isEmpty()) {
+            log.info("Managed service {} resources are unchanged", managedServiceName);
+        } else {
+            log.info("Managed service {} changes: {}", managedServiceName, changeSet);
+        }
     }
 
     @Override
     public void startManagedService(String managedServiceName) {
         log.info("Start managed service {} on Huawei Cloud", managedServiceName);
-        if (!managedOcl.containsKey(managedServiceName)) {
+        if (managedServiceName == null || !managedOcl.containsKey(managedServiceName)) {
             throw new IllegalArgumentException("Service:" + managedServiceName + "not registered.");
         }
 
@@ -83,10 +111,26 @@ public class HuaweiCloudOrchestratorPlugin implements OrchestratorPlugin, Servic
             BuilderFactory.BASIC_BUILDER, ocl);
 
         OclResources oclResources = getOclResources(managedServiceName);
-        if (oclResources != null && oclResources.getState().equals("active")) {
-            log.info("Managed service {} already in active.", managedServiceName);
+        Ocl appliedOcl = getAppliedOcl(managedServiceName);
+        if (oclResources != null && oclResources.getState().equals("active") && appliedOcl == null) {
+            // started before the applied OCL was stored: considered up to date, as it was, rather than rebuilt
+            log.info("Managed service {} already in active, recording its applied OCL.", managedServiceName);
+            storeOclResources(managedServiceName, oclResources, managedOcl.get(managedServiceName));
             return;
         }
+        OclChangeSet changeSet = OclDiff.diff(appliedOcl, ocl);
+        if (oclResources != null && oclResources.getState().equals("active")) {
+            if (changeSet.isEmpty()) {
+                log.info("Managed service {} already in active.", managedServiceName);
+                return;
+            }
+            log.info("Applying managed service {} changes: {}", managedServiceName, changeSet);
+        }
+        // images of unchanged artifacts are reused, the image builder only builds the others
+        Map<String, String> images = reusableImages(oclResources, changeSet);
+        if (!images.isEmpty()) {
+            ctx.put(new HuaweiImageBuilder(ocl).name(), images);
+        }
 
         ctx.getOclResources().setState("building");
         storeOclResources(managedServiceName, ctx.getOclResources());
@@ -100,13 +144,14 @@ public class HuaweiCloudOrchestratorPlugin implements OrchestratorPlugin, Servic
             throw ex;
         }
         ctx.getOclResources().setState("active");
-        storeOclResources(managedServiceName, ctx.getOclResources());
+        // the state and the applied OCL are written together
+        storeOclResources(managedServiceName, ctx.getOclResources(), managedOcl.get(managedServiceName));
     }
 
     @Override
     public void stopManagedService(String managedServiceName) {
         log.info("Stop managed service {} on Huawei Cloud", managedServiceName);
-        if (!managedOcl.containsKey(managedServiceName)) {
+        if (managedServiceName == null || !managedOcl.containsKey(managedServiceName)) {
             throw new IllegalArgumentException("Service:" + managedServiceName + "not registered.");
         }
 
@@ -129,13 +174,17 @@ public class HuaweiCloudOrchestratorPlugin implements OrchestratorPlugin, Servic
     @Override
     public void unregisterManagedService(String managedServiceName) {
         log.info("Destroy managed service {} from Huawei Cloud", managedServiceName);
-        if (!managedOcl.containsKey(managedServiceName)) {
+        if (managedServiceName == null || !managedOcl.containsKey(managedServiceName)) {
             throw new IllegalArgumentException("Service:" + managedServiceName + "not registered.");
         }
         managedOcl.remove(managedServiceName);
     }
 
     private void storeOclResources(String managedServiceName, OclResources oclResources) {
+        storeOclResources(managedServiceName, oclResources, null);
+    }
+
+    private void storeOclResources(String managedServiceName, OclResources oclResources, Ocl appliedOcl) {
         String oclResourceStr;
         try {
             oclResourceStr = objectMapper.writerWithDefaultPrettyPrinter()
@@ -144,10 +193,53 @@ public class HuaweiCloudOrchestratorPlugin implements OrchestratorPlugin, Servic
             throw new IllegalStateException("Serial OCL object to json failed.", ex);
         }
 
-        if (storage != null) {
-            storage.store(managedServiceName, name(), "state", oclResourceStr);
-        } else {
+        if (storage == null) {
             log.warn("storage is null.");
+            return;
+        }
+        Map<String, String> values = new HashMap<>();
+        values.put("state", oclResourceStr);
+        if (appliedOcl != null) {
+            try {
+                values.put(APPLIED_KEY, objectMapper.writeValueAsString(appliedOcl));
+            } catch (JsonProcessingException ex) {
+                log.warn("Can't store the OCL applied to {}, the next start rebuilds everything.",
+                    managedServiceName, ex);
+            }
+        }
+        storage.storeAll(managedServiceName, name(), values);
+    }
+
+    private Map<String, String> reusableImages(OclResources oclResources, OclChangeSet changeSet) {
+        Map<String, String> images = new HashMap<>();
+        if (oclResources == null || oclResources.getResources() == null) {
+            return images;
+        }
+        for (OclResource resource : oclResources.getResources()) {
+            if ("image".equals(resource.getType())
+                && !resource.getId().isEmpty()
+                && !changeSet.getArtifacts().getAdded().contains(resource.getName())
+                && !changeSet.getArtifacts().getModified().contains(resource.getName())
+                && !changeSet.getArtifacts().getRemoved().contains(resource.getName())) {
+                images.put(resource.getName(), resource.getId());
+            }
+        }
+        return images;
+    }
+
+    private Ocl getAppliedOcl(String managedServiceName) {
+        if (storage == null) {
+            return null;
+        }
+        String oclStr = storage.getKey(managedServiceName, name(), APPLIED_KEY);
+        if (oclStr == null || oclStr.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(oclStr, Ocl.class);
+        } catch (JsonProcessingException ex) {
+            log.warn("Invalid OCL applied to {}, the next start rebuilds everything.", managedServiceName, ex);
+            return null;
         }
     }
 
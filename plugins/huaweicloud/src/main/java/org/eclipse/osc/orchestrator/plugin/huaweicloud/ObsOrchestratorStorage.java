@@ -2,12 +2,25 @@ package org.eclipse.osc.orchestrator.plugin.huaweicloud;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import com.obs.services.ObsClient;
+import com.obs.services.ObsConfiguration;
 import com.obs.services.exception.ObsException;
 
 import com.obs.services.model.*;
@@ -15,7 +28,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.karaf.minho.boot.service.ConfigService;
 import org.apache.karaf.minho.boot.service.ServiceRegistry;
 import org.apache.karaf.minho.boot.spi.Service;
+import org.eclipse.osc.orchestrator.Lease;
 import org.eclipse.osc.orchestrator.OrchestratorStorage;
+import org.eclipse.osc.orchestrator.VersionedValue;
 
 @Slf4j
 public class ObsOrchestratorStorage implements OrchestratorStorage, Service {
@@ -25,9 +40,26 @@ public class ObsOrchestratorStorage implements OrchestratorStorage, Service {
     private static final String LOCATION = "HW_REGION_NAME";
     private static final String BUCKET_NAME = "huaweicloud-obs-storage-bucket";
     private static final String ENTERPRISE_PROJECT_ID = "HW_ENTERPRISE_PROJECT_ID";
+    private static final String BATCH_THREADS = "HW_OBS_BATCH_THREADS";
+    private static final String ENDPOINT = "HW_OBS_ENDPOINT";
+    private static final String MULTIPART_THRESHOLD = "HW_OBS_MULTIPART_THRESHOLD";
+    private static final String PART_SIZE = "HW_OBS_PART_SIZE";
+    private static final int MAX_DELETE_KEYS = 1000;
+    private static final int MAX_LIST_KEYS = 1000;
+    private static final String SEPARATOR = "__";
+    private static final String CAS_LEASE = "cas-";
+    private static final long CAS_LEASE_TTL = 30000;
+    private static final int LEASE_RECORDS = 64;
+    private static final String LEASE_GENERATION = "/";
+    private static final ThreadLocal<char[]> BUFFERS = ThreadLocal.withInitial(() -> new char[8192]);
 
-    private static ObsClient obsClient;
-    private static ObsBucket obsBucket;
+    private ObsClient obsClient;
+    private ObsBucket obsBucket;
+    private long multipartThreshold;
+    private int partSize;
+
+    private ExecutorService batchExecutor;
+    private final Map<String, Long> leaseGenerations = new ConcurrentHashMap<>();
 
     @Override
     public String name() {
@@ -50,13 +82,30 @@ public class ObsOrchestratorStorage implements OrchestratorStorage, Service {
         String secretKey = configService.getProperty(SECRET_KEY, "obsobs");
         String location = configService.getProperty(LOCATION, "cn-east-3");
         String enterpriseProjectId = configService.getProperty(ENTERPRISE_PROJECT_ID, "0");
+        int batchThreads = Integer.parseInt(configService.getProperty(BATCH_THREADS, "8"));
+        multipartThreshold = Long.parseLong(configService.getProperty(MULTIPART_THRESHOLD, String.valueOf(16 * 1024 * 1024)));
+        partSize = Integer.parseInt(configService.getProperty(PART_SIZE, String.valueOf(8 * 1024 * 1024)));
+        batchExecutor = Executors.newFixedThreadPool(batchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "osc-obs-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
         String endpoint = "";
         if (location != null && location.length() != 0) {
             endpoint = "obs." + location + ".myhuaweicloud.com";
         }
+        // another endpoint, such as a local S3 compatible storage
+        String customEndpoint = configService.getProperty(ENDPOINT, null);
         try {
             log.info("Start to create OBS Client and OBS Bucket.");
-            obsClient = new ObsClient(accessKey, secretKey, endpoint);
+            if (customEndpoint != null && !customEndpoint.isEmpty()) {
+                ObsConfiguration configuration = new ObsConfiguration();
+                configuration.setEndPoint(customEndpoint);
+                configuration.setPathStyle(true);
+                obsClient = new ObsClient(accessKey, secretKey, configuration);
+            } else {
+                obsClient = new ObsClient(accessKey, secretKey, endpoint);
+            }
             obsBucket = createBucket(obsClient, location, enterpriseProjectId);
         } catch (Exception e) {
             log.error("Create OBS Client and OBS Bucket Error.",e);
@@ -99,32 +148,252 @@ public class ObsOrchestratorStorage implements OrchestratorStorage, Service {
         }
     }
 
+    /**
+     * Values larger than the multipart threshold, such as large terraform states, are uploaded in parts.
+     */
     @Override
     public void store(String sid, String pluginName, String key, String value) {
         String objectKey = getObjectKey(sid, pluginName, key);
-        try (ByteArrayInputStream input = new ByteArrayInputStream(value.getBytes(
-            StandardCharsets.UTF_8))) {
-            obsClient.putObject(obsBucket.getBucketName(), objectKey, input);
+        byte[] content = value.getBytes(StandardCharsets.UTF_8);
+        if (content.length > multipartThreshold) {
+            storeMultipart(objectKey, content);
+            return;
+        }
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength((long) content.length);
+        PutObjectRequest request = new PutObjectRequest(obsBucket.getBucketName(), objectKey,
+            new ByteArrayInputStream(content));
+        request.setMetadata(metadata);
+        try {
+            obsClient.putObject(request);
         } catch (Exception e) {
             throw new IllegalStateException("Can't store " + objectKey + " in Obs", e);
         }
     }
 
+    private void storeMultipart(String objectKey, byte[] content) {
+        String bucketName = obsBucket.getBucketName();
+        String uploadId;
+        try {
+            uploadId = obsClient.initiateMultipartUpload(
+                new InitiateMultipartUploadRequest(bucketName, objectKey)).getUploadId();
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't store " + objectKey + " in Obs", e);
+        }
+        try {
+            List<PartEtag> parts = new ArrayList<>();
+            for (int offset = 0, number = 1; offset < content.length; offset += partSize, number++) {
+                int size = Math.min(partSize, content.length - offset);
+                UploadPartRequest request = new UploadPartRequest(bucketName, objectKey);
+                request.setUploadId(uploadId);
+                request.setPartNumber(number);
+                request.setPartSize((long) size);
+                request.setInput(new ByteArrayInputStream(content, offset, size));
+                parts.add(new PartEtag(obsClient.uploadPart(request).getEtag(), number));
+            }
+            obsClient.completeMultipartUpload(
+                new CompleteMultipartUploadRequest(bucketName, objectKey, uploadId, parts));
+        } catch (Exception e) {
+            try {
+                obsClient.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, objectKey, uploadId));
+            } catch (Exception abort) {
+                e.addSuppressed(abort);
+            }
+            throw new IllegalStateException("Can't store " + objectKey + " in Obs", e);
+        }
+    }
+
+    /**
+     * A single GET request, a missing value being read as empty.
+     */
     @Override
     public String getKey(String sid, String pluginName, String key) {
         String objectKey = getObjectKey(sid, pluginName, key);
-        String value = "";
-        if (exists(objectKey)) {
+        try {
+            return read(obsClient.getObject(obsBucket.getBucketName(), objectKey));
+        } catch (ObsException e) {
+            if (e.getResponseCode() == 404) {
+                return "";
+            }
+            throw new IllegalStateException("Can't get " + objectKey + " from Obs", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't get " + objectKey + " from Obs", e);
+        }
+    }
+
+    /**
+     * Decode the object content as it's received, into a buffer reused by the thread.
+     */
+    private static String read(ObsObject object) throws IOException {
+        Long length = object.getMetadata() == null ? null : object.getMetadata().getContentLength();
+        // never more chars than bytes in UTF-8
+        StringBuilder value = new StringBuilder(length == null || length <= 0 ? 1024 : (int) Math.min(length, Integer.MAX_VALUE - 8));
+        char[] buffer = BUFFERS.get();
+        try (Reader reader = new InputStreamReader(object.getObjectContent(), StandardCharsets.UTF_8)) {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                value.append(buffer, 0, read);
+            }
+        }
+        return value.toString();
+    }
+
+    @Override
+    public String getETag(String sid, String pluginName, String key) {
+        String objectKey = getObjectKey(sid, pluginName, key);
+        try {
+            return obsClient.getObjectMetadata(obsBucket.getBucketName(), objectKey).getEtag();
+        } catch (ObsException e) {
+            if (e.getResponseCode() == 404) {
+                return null;
+            }
+            throw new IllegalStateException("Can't get " + objectKey + " metadata from Obs", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't get " + objectKey + " metadata from Obs", e);
+        }
+    }
+
+    /**
+     * A single GET request, the entity tag being the version.
+     */
+    @Override
+    public VersionedValue getWithVersion(String sid, String pluginName, String key) {
+        String objectKey = getObjectKey(sid, pluginName, key);
+        try {
+            ObsObject object = obsClient.getObject(obsBucket.getBucketName(), objectKey);
+            String etag = object.getMetadata() == null ? null : object.getMetadata().getEtag();
+            return new VersionedValue(read(object), etag);
+        } catch (ObsException e) {
+            if (e.getResponseCode() == 404) {
+                return new VersionedValue("", null);
+            }
+            throw new IllegalStateException("Can't get " + objectKey + " from Obs", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't get " + objectKey + " from Obs", e);
+        }
+    }
+
+    /**
+     * Obs has no conditional puts: the entity tag is compared and the value stored while holding a lease on the key,
+     * so the compare and set calls of several replicas on a key are serialized. A key being updated by another
+     * replica is reported as changed.
+     */
+    @Override
+    public boolean compareAndSet(String sid, String pluginName, String key, String expectedVersion, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Can't store a null value for " + key);
+        }
+        Lease lease = acquireLease(CAS_LEASE + getObjectKey(sid, pluginName, key), UUID.randomUUID().toString(), CAS_LEASE_TTL);
+        if (lease == null) {
+            return false;
+        }
+        try {
+            if (!Objects.equals(getETag(sid, pluginName, key), expectedVersion)) {
+                return false;
+            }
+            store(sid, pluginName, key, value);
+            return true;
+        } finally {
+            releaseLease(lease);
+        }
+    }
+
+    /**
+     * Store the keys with concurrent requests.
+     */
+    @Override
+    public void storeAll(String sid, String pluginName, Map<String, String> values) {
+        List<CompletableFuture<Void>> requests = new ArrayList<>();
+        values.forEach((key, value) -> requests.add(CompletableFuture.runAsync(() ->
+            store(sid, pluginName, key, value), batchExecutor)));
+        join(requests);
+    }
+
+    /**
+     * Get the keys with concurrent requests.
+     */
+    @Override
+    public Map<String, String> getAll(String sid, String pluginName, Collection<String> keys) {
+        Map<String, CompletableFuture<String>> requests = new HashMap<>();
+        for (String key : keys) {
+            requests.put(key, CompletableFuture.supplyAsync(() -> getKey(sid, pluginName, key), batchExecutor));
+        }
+        join(requests.values());
+        Map<String, String> values = new HashMap<>();
+        requests.forEach((key, request) -> values.put(key, request.join()));
+        return values;
+    }
+
+    /**
+     * Remove the keys with multi-object delete requests, up to 1000 keys each.
+     */
+    @Override
+    public void removeAll(String sid, String pluginName, Collection<String> keys) {
+        deleteObjects(keys.stream().map(key -> getObjectKey(sid, pluginName, key)).collect(Collectors.toList()),
+            pluginName + " keys of " + sid);
+    }
+
+    /**
+     * List the keys by prefix, page by page.
+     */
+    @Override
+    public Set<String> listKeys(String sid, String pluginName) {
+        String prefix = getObjectKey(sid, pluginName, "");
+        try {
+            return listObjects(prefix, null).stream().map(key -> key.substring(prefix.length()))
+                .collect(Collectors.toSet());
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't list " + pluginName + " keys of " + sid + " in Obs", e);
+        }
+    }
+
+    /**
+     * Remove the service, its keys and the compare and set leases of its keys with multi-object delete requests, the
+     * service last so a failed removal can be retried. The lock of the service is kept, for its fencing token.
+     */
+    @Override
+    public void removeService(String sid) {
+        List<String> objectKeys;
+        String casLeasePrefix = CAS_LEASE + sid + SEPARATOR;
+        try {
+            objectKeys = listObjects(sid + SEPARATOR, null);
+            objectKeys.addAll(listObjects(getObjectKey(Lease.LEASE_SID, Lease.LEASE_STORAGE, casLeasePrefix), null));
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't list the keys of " + sid + " in Obs", e);
+        }
+        deleteObjects(objectKeys, "keys of " + sid);
+        leaseGenerations.keySet().removeIf(name -> name.startsWith(casLeasePrefix));
+        remove(sid);
+    }
+
+    private void deleteObjects(List<String> objectKeys, String description) {
+        for (int from = 0; from < objectKeys.size(); from += MAX_DELETE_KEYS) {
+            DeleteObjectsRequest request = new DeleteObjectsRequest(obsBucket.getBucketName());
+            request.setQuiet(true);
+            objectKeys.subList(from, Math.min(from + MAX_DELETE_KEYS, objectKeys.size()))
+                .forEach(request::addKeyAndVersion);
+            DeleteObjectsResult result;
             try {
-                ObsObject object = obsClient.getObject(obsBucket.getBucketName(), objectKey);
-                InputStream objectContent = object.getObjectContent();
-                value = new BufferedReader(new InputStreamReader(objectContent)).lines()
-                    .parallel().collect(Collectors.joining("\n"));
+                result = obsClient.deleteObjects(request);
             } catch (Exception e) {
-                throw new IllegalStateException("Can't get " + objectKey + " from Obs", e);
+                throw new IllegalStateException("Can't remove " + description + " from Obs", e);
+            }
+            if (!result.getErrorResults().isEmpty()) {
+                throw new IllegalStateException("Can't remove " + result.getErrorResults().size() + " "
+                    + description + " from Obs");
+            }
+        }
+    }
+
+    private static void join(Collection<? extends CompletableFuture<?>> requests) {
+        try {
+            CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw e;
         }
-        return value;
     }
 
     @Override
@@ -138,22 +407,42 @@ public class ObsOrchestratorStorage implements OrchestratorStorage, Service {
         }
     }
 
+    /**
+     * Only the service objects are listed: the plugin keys are grouped in one common prefix per service.
+     */
     @Override
     public Set<String> services() {
-        Set<String> services = new HashSet<>();
         try {
-            ObjectListing objectListing = obsClient.listObjects(obsBucket.getBucketName());
-            List<ObsObject> obsObjects = objectListing.getObjects();
-            if (obsObjects == null || obsObjects.size() == 0) {
-                return services;
-            }
-            for (ObsObject result : obsObjects) {
-                services.add(result.getObjectKey());
-            }
+            return new HashSet<>(listObjects(null, SEPARATOR));
         } catch (Exception e) {
             throw new IllegalStateException("Can't get the services list from Obs", e);
         }
-        return services;
+    }
+
+    /**
+     * List the object keys page by page.
+     *
+     * @param prefix the key prefix, null for all keys.
+     * @param delimiter the keys containing the delimiter after the prefix are grouped instead of listed, may be null.
+     * @return the object keys.
+     */
+    private List<String> listObjects(String prefix, String delimiter) {
+        List<String> keys = new ArrayList<>();
+        String marker = null;
+        ObjectListing listing;
+        do {
+            ListObjectsRequest request = new ListObjectsRequest(obsBucket.getBucketName());
+            request.setPrefix(prefix);
+            request.setDelimiter(delimiter);
+            request.setMarker(marker);
+            request.setMaxKeys(MAX_LIST_KEYS);
+            listing = obsClient.listObjects(request);
+            if (listing.getObjects() != null) {
+                listing.getObjects().forEach(object -> keys.add(object.getObjectKey()));
+            }
+            marker = listing.getNextMarker();
+        } while (listing.isTruncated() && marker != null);
+        return keys;
     }
 
     @Override
@@ -165,7 +454,108 @@ public class ObsOrchestratorStorage implements OrchestratorStorage, Service {
         }
     }
 
+    /**
+     * Leases are stored in appendable objects, one lease per line, the last one being current. An append only
+     * succeeds at the current length of the object, so when several replicas update a lease concurrently, only
+     * one succeeds.
+     * <p>
+     * So the objects don't grow with each renewal, a lease object holds {@link #LEASE_RECORDS} leases at most: once
+     * full, the lease goes on in a new generation object, created the same way (an append at position 0 only
+     * succeeds if the object doesn't exist), and the full one is removed. The first generation is the lease object
+     * key itself, the next ones have the generation number as suffix.
+     */
+    @Override
+    public Lease updateLease(String name, UnaryOperator<Lease> update) {
+        String objectKey = getObjectKey(Lease.LEASE_SID, Lease.LEASE_STORAGE, name);
+        long generation = leaseGenerations.getOrDefault(name, 0L);
+        long position = 0;
+        Lease current = null;
+        while (true) {
+            byte[] leases = readLeases(getLeaseObjectKey(objectKey, generation));
+            if (leases == null) {
+                // removed once full, or not created yet
+                long latest = getLatestLeaseGeneration(objectKey);
+                if (latest > generation) {
+                    generation = latest;
+                    continue;
+                }
+                if (current == null) {
+                    generation = 0;
+                }
+                position = 0;
+                break;
+            }
+            String[] lines = new String(leases, StandardCharsets.UTF_8).split("\n");
+            current = Lease.parse(lines[lines.length - 1]);
+            if (lines.length < LEASE_RECORDS) {
+                position = leases.length;
+                break;
+            }
+            generation++;
+        }
+        leaseGenerations.put(name, generation);
+        Lease lease = update.apply(current);
+        if (lease == null) {
+            return null;
+        }
+        String leaseObjectKey = getLeaseObjectKey(objectKey, generation);
+        AppendObjectRequest request = new AppendObjectRequest();
+        request.setBucketName(obsBucket.getBucketName());
+        request.setObjectKey(leaseObjectKey);
+        request.setPosition(position);
+        request.setInput(new ByteArrayInputStream((lease.format() + "\n").getBytes(StandardCharsets.UTF_8)));
+        try {
+            obsClient.appendObject(request);
+        } catch (ObsException e) {
+            if (e.getResponseCode() == 409) {
+                // the lease has been updated since we read it
+                return null;
+            }
+            throw new IllegalStateException("Can't store " + leaseObjectKey + " in Obs", e);
+        }
+        if (position == 0 && generation > 0) {
+            try {
+                obsClient.deleteObject(obsBucket.getBucketName(), getLeaseObjectKey(objectKey, generation - 1));
+            } catch (Exception e) {
+                log.warn("Can't remove the full lease object {} from Obs", getLeaseObjectKey(objectKey, generation - 1), e);
+            }
+        }
+        return lease;
+    }
+
+    /**
+     * @return the lease object content, or null if the object doesn't exist.
+     */
+    private byte[] readLeases(String leaseObjectKey) {
+        try (InputStream content = obsClient.getObject(obsBucket.getBucketName(), leaseObjectKey).getObjectContent()) {
+            return content.readAllBytes();
+        } catch (ObsException e) {
+            if (e.getResponseCode() != 404) {
+                throw new IllegalStateException("Can't get " + leaseObjectKey + " from Obs", e);
+            }
+            return null;
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't get " + leaseObjectKey + " from Obs", e);
+        }
+    }
+
+    private long getLatestLeaseGeneration(String objectKey) {
+        String prefix = objectKey + LEASE_GENERATION;
+        long latest = 0;
+        for (String key : listObjects(prefix, null)) {
+            String generation = key.substring(prefix.length());
+            if (!generation.isEmpty() && generation.chars().allMatch(Character::isDigit)) {
+                latest = Math.max(latest, Long.parseLong(generation));
+            }
+        }
+        return latest;
+    }
+
+    private static String getLeaseObjectKey(String objectKey, long generation) {
+        return generation == 0 ? objectKey : objectKey + LEASE_GENERATION + generation;
+    }
+
     private String getObjectKey(String sid, String pluginName, String key) {
-        return sid + "__" + pluginName + "__" + key;
+        return sid + SEPARATOR + pluginName + SEPARATOR + key;
     }
 }
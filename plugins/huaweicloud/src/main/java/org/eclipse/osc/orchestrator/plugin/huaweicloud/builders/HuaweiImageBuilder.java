@@ -1,10 +1,13 @@
 package org.eclipse.osc.orchestrator.plugin.huaweicloud.builders;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.osc.modules.ocl.loader.Artifact;
 import org.eclipse.osc.modules.ocl.loader.Ocl;
 import org.eclipse.osc.modules.ocl.loader.OclResource;
 import org.eclipse.osc.orchestrator.plugin.huaweicloud.AtomBuilder;
@@ -54,13 +57,31 @@ public class HuaweiImageBuilder extends AtomBuilder {
             return true;
         }
 
+        // images already built for unchanged artifacts, put in the context by the plugin
+        Map<String, String> imageCtx = new HashMap<>();
+        if (ctx.get(name()) != null) {
+            imageCtx.putAll(ctx.get(name()));
+        }
+        List<Artifact> artifacts = new ArrayList<>();
+        for (var artifact : ocl.getImage().getArtifacts()) {
+            if (imageCtx.containsKey(artifact.getName())) {
+                log.info("Reusing image {} for unchanged artifact {}.",
+                    imageCtx.get(artifact.getName()), artifact.getName());
+                addImageToCtx(ctx, artifact.getName(), imageCtx.get(artifact.getName()));
+            } else {
+                artifacts.add(artifact);
+            }
+        }
+        if (artifacts.isEmpty()) {
+            ctx.put(name(), imageCtx);
+            return true;
+        }
+
         TFExecutor tfExecutor = prepareExecutor(ctx);
         // Create resources for packer through terraform
         PackerVars packerVars = prepareEnv(tfExecutor);
 
-        Map<String, String> imageCtx = new HashMap<>();
-
-        for (var artifact : ocl.getImage().getArtifacts()) {
+        for (var artifact : artifacts) {
             PackerExecutor packerExecutor =
                 new PackerExecutor(ocl, artifact, ctx.get(new HuaweiEnvBuilder(ocl).name()));
 
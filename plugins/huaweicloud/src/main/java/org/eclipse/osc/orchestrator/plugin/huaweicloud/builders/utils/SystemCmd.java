@@ -10,10 +10,14 @@ import java.util.concurrent.TimeUnit;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.osc.orchestrator.MetricsRegistry;
 
 @Slf4j
 public class SystemCmd {
 
+    private static final MetricsRegistry.Histogram COMMANDS = MetricsRegistry.getDefault().histogram(
+        "osc_system_command_seconds", "Duration of external commands.", "command", "outcome");
+
     @Setter
     @Getter
     private Map<String, String> env = null;
@@ -27,6 +31,18 @@ public class SystemCmd {
     }
 
     public boolean execute(String cmd, StringBuilder stdErrOut, long waitSecond) {
+        long start = System.nanoTime();
+        String outcome = "failure";
+        try {
+            boolean result = doExecute(cmd, stdErrOut, waitSecond);
+            outcome = "success";
+            return result;
+        } finally {
+            COMMANDS.observeNanos(System.nanoTime() - start, new File(cmd.trim().split(" +")[0]).getName(), outcome);
+        }
+    }
+
+    private boolean doExecute(String cmd, StringBuilder stdErrOut, long waitSecond) {
         log.info("SystemCmd executing cmd: " + String.join(" ", cmd));
         try {
             String line;
@@ -7,7 +7,10 @@ import org.eclipse.osc.modules.ocl.loader.OclLoader;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
 
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 public class ObsOrchestratorStorageTest {
@@ -42,6 +45,9 @@ public class ObsOrchestratorStorageTest {
 
         storage.store("kafka-service", "osc-orchestrator-huaweicloud", "state", value);
 
+        // plugin keys are not services
+        Assertions.assertEquals(0, storage.services().size());
+        storage.store("kafka-service");
         Assertions.assertEquals(1, storage.services().size());
 
         Assertions.assertTrue(
@@ -52,10 +58,44 @@ public class ObsOrchestratorStorageTest {
         Assertions.assertEquals("{\"name\":\"test\",\"pwd\":123456}", state);
 
         storage.remove("kafka-service__osc-orchestrator-huaweicloud__state");
+        storage.remove("kafka-service");
 
         Assertions.assertEquals(0, storage.services().size());
 
         Assertions.assertFalse(
             storage.exists("kafka-service__osc-orchestrator-huaweicloud__state"));
     }
+
+    /**
+     * Run against a local S3 compatible storage, such as MinIO, with HW_OBS_ENDPOINT=http://localhost:9000.
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "HW_OBS_ENDPOINT", matches = ".+")
+    public void localStorageTest() {
+        ConfigService configService = new ConfigService();
+        configService.setProperties(Map.of(
+            "HW_OBS_ENDPOINT", System.getenv("HW_OBS_ENDPOINT"),
+            "HW_ACCESS_KEY", System.getenv().getOrDefault("HW_ACCESS_KEY", "minioadmin"),
+            "HW_SECRET_KEY", System.getenv().getOrDefault("HW_SECRET_KEY", "minioadmin"),
+            "HW_OBS_MULTIPART_THRESHOLD", String.valueOf(6 * 1024 * 1024),
+            "HW_OBS_PART_SIZE", String.valueOf(5 * 1024 * 1024)));
+        ServiceRegistry serviceRegistry = new ServiceRegistry();
+        serviceRegistry.add(configService);
+        ObsOrchestratorStorage storage = new ObsOrchestratorStorage();
+        storage.onRegister(serviceRegistry);
+
+        // read back as stored, line endings included
+        String state = "{\r\n  \"version\": 4\r\n}\n";
+        storage.store("local-service", "plugin", "state", state);
+        Assertions.assertEquals(state, storage.getKey("local-service", "plugin", "state"));
+        Assertions.assertEquals("", storage.getKey("local-service", "plugin", "unknown"));
+
+        // uploaded in two parts
+        String tfState = "x".repeat(7 * 1024 * 1024);
+        storage.store("local-service", "plugin", "tfstate", tfState);
+        Assertions.assertEquals(tfState, storage.getKey("local-service", "plugin", "tfstate"));
+
+        storage.removeAll("local-service", "plugin", List.of("state", "tfstate"));
+        Assertions.assertEquals("", storage.getKey("local-service", "plugin", "state"));
+    }
 }
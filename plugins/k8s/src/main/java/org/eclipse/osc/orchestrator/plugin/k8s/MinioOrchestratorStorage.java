@@ -2,16 +2,28 @@ package org.eclipse.osc.orchestrator.plugin.k8s;
 
 import io.minio.*;
 import io.minio.errors.ErrorResponseException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.karaf.minho.boot.service.ConfigService;
 import org.apache.karaf.minho.boot.service.ServiceRegistry;
 import org.apache.karaf.minho.boot.spi.Service;
+import org.eclipse.osc.orchestrator.Lease;
 import org.eclipse.osc.orchestrator.OrchestratorStorage;
+import org.eclipse.osc.orchestrator.VersionedValue;
 
 import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 @Slf4j
 public class MinioOrchestratorStorage implements OrchestratorStorage, Service {
@@ -46,6 +58,31 @@ public class MinioOrchestratorStorage implements OrchestratorStorage, Service {
         } catch (Exception e) {
             throw new IllegalStateException("Can't create " + BUCKET_NAME + " bucket in Minio", e);
         }
+        if (!supportsConditionalWrites()) {
+            throw new IllegalStateException("Minio server " + minioEndpoint + " ignores If-Match and If-None-Match on put, "
+                    + "required by the leases and compare and set, upgrade it to a release supporting conditional writes");
+        }
+    }
+
+    /**
+     * Check that conditional puts are honoured, as older Minio servers ignore the conditions and overwrite the object.
+     * The check uses an object of its own, so replicas starting together don't interfere.
+     */
+    private boolean supportsConditionalWrites() {
+        String objectName = Lease.LEASE_SID + "__" + Lease.LEASE_STORAGE + "__check-" + UUID.randomUUID();
+        byte[] content = objectName.getBytes(StandardCharsets.UTF_8);
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(content)) {
+            minioClient.putObject(PutObjectArgs.builder().bucket(BUCKET_NAME).object(objectName)
+                .stream(bais, content.length, -1).build());
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't store " + objectName + " in Minio", e);
+        }
+        try {
+            // both must be rejected, the object exists with another entity tag
+            return !conditionalPut(objectName, content, null) && !conditionalPut(objectName, content, "\"" + UUID.randomUUID() + "\"");
+        } finally {
+            remove(objectName);
+        }
     }
 
 
@@ -61,14 +98,30 @@ public class MinioOrchestratorStorage implements OrchestratorStorage, Service {
         }
     }
 
+    /**
+     * One object per key, grouped by service prefix like the keys listed and removed.
+     */
     @Override
     public void store(String sid, String pluginName, String key, String value) {
-
+        if (value == null) {
+            throw new IllegalArgumentException("Can't store a null value for " + key);
+        }
+        String objectName = sid + "__" + pluginName + "__" + key;
+        byte[] content = value.getBytes(StandardCharsets.UTF_8);
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(content)) {
+            minioClient.putObject(PutObjectArgs.builder().bucket(BUCKET_NAME).object(objectName)
+                .stream(bais, content.length, -1).build());
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't store " + objectName + " in Minio", e);
+        }
     }
 
+    /**
+     * A single GET request, a missing value being read as empty.
+     */
     @Override
     public String getKey(String sid, String pluginName, String key) {
-        return "";
+        return getWithVersion(sid, pluginName, key).getValue();
     }
 
     @Override
@@ -87,10 +140,14 @@ public class MinioOrchestratorStorage implements OrchestratorStorage, Service {
     public Set<String> services() {
         Set<String> services = new HashSet<>();
         try {
-            Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder().bucket(BUCKET_NAME).build());
+            // the plugin keys are grouped in one prefix per service, only the service objects are listed, which holds
+            // as the managed service names can't contain the separator
+            Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder().bucket(BUCKET_NAME).delimiter("__").build());
             for (Result<Item> result : results) {
                 Item item = result.get();
-                services.add(item.objectName());
+                if (!item.isDir()) {
+                    services.add(item.objectName());
+                }
             }
         } catch (Exception e) {
             throw new IllegalStateException("Can't get the services list from Minio", e);
@@ -107,4 +164,147 @@ public class MinioOrchestratorStorage implements OrchestratorStorage, Service {
         }
     }
 
+    /**
+     * Remove the keys with a single multi-object delete request.
+     */
+    @Override
+    public void removeAll(String sid, String pluginName, Collection<String> keys) {
+        removeObjects(keys.stream().map(key -> sid + "__" + pluginName + "__" + key).collect(Collectors.toList()),
+                pluginName + " keys of " + sid);
+    }
+
+    @Override
+    public Set<String> listKeys(String sid, String pluginName) {
+        String prefix = sid + "__" + pluginName + "__";
+        try {
+            return listObjects(prefix).stream().map(name -> name.substring(prefix.length())).collect(Collectors.toSet());
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't list " + pluginName + " keys of " + sid + " in Minio", e);
+        }
+    }
+
+    /**
+     * Remove the service and its keys with a multi-object delete request, the service last so a failed removal can
+     * be retried.
+     */
+    @Override
+    public void removeService(String sid) {
+        List<String> names;
+        try {
+            names = listObjects(sid + "__");
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't list the keys of " + sid + " in Minio", e);
+        }
+        removeObjects(names, "keys of " + sid);
+        remove(sid);
+    }
+
+    private List<String> listObjects(String prefix) throws Exception {
+        List<String> names = new ArrayList<>();
+        // the client requests the following pages while iterating
+        for (Result<Item> result : minioClient.listObjects(ListObjectsArgs.builder().bucket(BUCKET_NAME).prefix(prefix).recursive(true).build())) {
+            names.add(result.get().objectName());
+        }
+        return names;
+    }
+
+    private void removeObjects(List<String> names, String description) {
+        if (names.isEmpty()) {
+            return;
+        }
+        List<DeleteObject> objects = names.stream().map(DeleteObject::new).collect(Collectors.toList());
+        try {
+            // the deletion runs while iterating over the errors
+            for (Result<DeleteError> result : minioClient.removeObjects(RemoveObjectsArgs.builder().bucket(BUCKET_NAME).objects(objects).build())) {
+                DeleteError error = result.get();
+                throw new IllegalStateException("Can't remove " + error.objectName() + " from Minio: " + error.message());
+            }
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't remove " + description + " from Minio", e);
+        }
+    }
+
+    /**
+     * The entity tag is the version.
+     */
+    @Override
+    public VersionedValue getWithVersion(String sid, String pluginName, String key) {
+        String objectName = sid + "__" + pluginName + "__" + key;
+        try (GetObjectResponse response = minioClient.getObject(GetObjectArgs.builder().bucket(BUCKET_NAME).object(objectName).build())) {
+            return new VersionedValue(new String(response.readAllBytes(), StandardCharsets.UTF_8), response.headers().get("ETag"));
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return new VersionedValue("", null);
+            }
+            throw new IllegalStateException("Can't get " + objectName + " from Minio", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't get " + objectName + " from Minio", e);
+        }
+    }
+
+    /**
+     * A conditional put, like the leases: If-None-Match if the key is expected to be missing, If-Match with the
+     * expected entity tag else.
+     */
+    @Override
+    public boolean compareAndSet(String sid, String pluginName, String key, String expectedVersion, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Can't store a null value for " + key);
+        }
+        return conditionalPut(sid + "__" + pluginName + "__" + key, value.getBytes(StandardCharsets.UTF_8), expectedVersion);
+    }
+
+    /**
+     * Leases are written with conditional puts: If-None-Match to create a lease, If-Match with the ETag read to
+     * update it, so when several replicas update a lease concurrently, only one succeeds.
+     */
+    @Override
+    public Lease updateLease(String name, UnaryOperator<Lease> update) {
+        String objectName = Lease.LEASE_SID + "__" + Lease.LEASE_STORAGE + "__" + name;
+        Lease current = null;
+        String etag = null;
+        try (GetObjectResponse response = minioClient.getObject(GetObjectArgs.builder().bucket(BUCKET_NAME).object(objectName).build())) {
+            current = Lease.parse(new String(response.readAllBytes(), StandardCharsets.UTF_8));
+            etag = response.headers().get("ETag");
+        } catch (ErrorResponseException e) {
+            if (!"NoSuchKey".equals(e.errorResponse().code())) {
+                throw new IllegalStateException("Can't get " + objectName + " from Minio", e);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't get " + objectName + " from Minio", e);
+        }
+        Lease lease = update.apply(current);
+        if (lease == null) {
+            return null;
+        }
+        // rejected if the lease has been updated since we read it
+        return conditionalPut(objectName, lease.format().getBytes(StandardCharsets.UTF_8), etag) ? lease : null;
+    }
+
+    /**
+     * Put an object only if its entity tag is the expected one.
+     *
+     * @param objectName the object name.
+     * @param content the object content.
+     * @param etag the expected entity tag, null if the object is expected to be missing.
+     * @return true if the object has been stored, false if the condition failed.
+     */
+    private boolean conditionalPut(String objectName, byte[] content, String etag) {
+        Map<String, String> condition = etag == null ? Map.of("If-None-Match", "*") : Map.of("If-Match", etag);
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(content)) {
+            minioClient.putObject(PutObjectArgs.builder().bucket(BUCKET_NAME).object(objectName)
+                .headers(condition).stream(bais, content.length, -1).build());
+            return true;
+        } catch (ErrorResponseException e) {
+            if ("PreconditionFailed".equals(e.errorResponse().code())) {
+                return false;
+            }
+            throw new IllegalStateException("Can't store " + objectName + " in Minio", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't store " + objectName + " in Minio", e);
+        }
+    }
+
 }
@@ -2,9 +2,16 @@ package org.eclipse.osc.orchestrator.plugin.k8s;
 
 import org.apache.karaf.minho.boot.service.ConfigService;
 import org.apache.karaf.minho.boot.service.ServiceRegistry;
+import org.eclipse.osc.orchestrator.Lease;
+import org.eclipse.osc.orchestrator.VersionedValue;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class MinioOrchestratorStorageTest {
 
@@ -33,4 +40,61 @@ public class MinioOrchestratorStorageTest {
         Assertions.assertFalse(storage.exists("test"));
     }
 
+    /**
+     * Run against a local MinIO with MINIO_ENDPOINT=http://localhost:9000, the registration failing if the server
+     * ignores conditional writes.
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "MINIO_ENDPOINT", matches = ".+")
+    public void localStorageTest() {
+        ConfigService configService = new ConfigService();
+        configService.setProperties(Map.of(
+            "osc.minio.endpoint", System.getenv("MINIO_ENDPOINT"),
+            "osc.minio.accessKey", System.getenv().getOrDefault("MINIO_ACCESS_KEY", "minioadmin"),
+            "osc.minio.secretKey", System.getenv().getOrDefault("MINIO_SECRET_KEY", "minioadmin")));
+        ServiceRegistry serviceRegistry = new ServiceRegistry();
+        serviceRegistry.add(configService);
+        MinioOrchestratorStorage storage = new MinioOrchestratorStorage();
+        storage.onRegister(serviceRegistry);
+
+        storage.store("local-service");
+        VersionedValue missing = storage.getWithVersion("local-service", "plugin", "count");
+        Assertions.assertEquals("", missing.getValue());
+        Assertions.assertNull(missing.getVersion());
+
+        Assertions.assertTrue(storage.compareAndSet("local-service", "plugin", "count", null, "0"));
+        Assertions.assertFalse(storage.compareAndSet("local-service", "plugin", "count", null, "0"));
+        VersionedValue count = storage.getWithVersion("local-service", "plugin", "count");
+        Assertions.assertEquals("0", count.getValue());
+        Assertions.assertTrue(storage.compareAndSet("local-service", "plugin", "count", count.getVersion(), "1"));
+        Assertions.assertFalse(storage.compareAndSet("local-service", "plugin", "count", count.getVersion(), "2"));
+        Assertions.assertEquals("1", storage.getKey("local-service", "plugin", "count"));
+
+        storage.store("local-service", "plugin", "state", "{}");
+        Assertions.assertEquals(Set.of("count", "state"), storage.listKeys("local-service", "plugin"));
+        storage.removeAll("local-service", "plugin", List.of("count"));
+        Assertions.assertEquals(Set.of("state"), storage.listKeys("local-service", "plugin"));
+
+        // a service with the same name prefix keeps its keys
+        storage.store("local-service-2");
+        storage.store("local-service-2", "plugin", "state", "{}");
+        storage.removeService("local-service");
+        Assertions.assertFalse(storage.exists("local-service"));
+        Assertions.assertTrue(storage.listKeys("local-service", "plugin").isEmpty());
+        Assertions.assertTrue(storage.services().contains("local-service-2"));
+        Assertions.assertEquals(Set.of("state"), storage.listKeys("local-service-2", "plugin"));
+        storage.removeService("local-service-2");
+
+        Lease lease = storage.updateLease("local-lease", current -> Lease.acquire(current, "local-lease", "replica-1", 60000));
+        Assertions.assertNotNull(lease);
+        Assertions.assertNull(storage.updateLease("local-lease", current -> Lease.acquire(current, "local-lease", "replica-2", 60000)));
+        // another update between the read and the conditional put wins
+        Assertions.assertNull(storage.updateLease("local-lease", current -> {
+            Assertions.assertNotNull(storage.updateLease("local-lease", other -> Lease.renew(other, lease, 60000)));
+            return Lease.renew(current, lease, 60000);
+        }));
+        Assertions.assertNotNull(storage.updateLease("local-lease", current -> Lease.release(current, lease)));
+        storage.removeService(Lease.LEASE_SID);
+    }
+
 }